@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Adds units to a `Clazzpath` in the background. Progress is reported to
+ * a `ProgressListener` or a `Console`, and a run stops at the next clazz
+ * when its future is cancelled.
+ *
+ * Every unit is parsed aside first and added in one go when complete, so
+ * a cancelled or failed run leaves only whole units in the clazzpath,
+ * also in its `MemberGraph`.
+ * Clazz visitors and resource handlers may have seen parts of the unit
+ * that was stopped. Units are added while holding the lock of the
+ * clazzpath, which is also how to wait for a unit that was just being
+ * added when cancelling.
+ *
+ *     final CompletableFuture<List<ClazzpathUnit>> done = new AsyncClazzpath(clazzpath)
+ *         .setConsole(System.out::println)
+ *         .addClazzpathUnits(paths);
+ *     ...
+ *     done.cancel(false);
+ */
+public final class AsyncClazzpath {
+
+    private final Clazzpath clazzpath;
+    private final Executor executor;
+    private ProgressListener listener = new ProgressListener() {};
+
+    /**
+     * Runs on `ForkJoinPool.commonPool()`. Reading units blocks on I/O and
+     * holds a thread of that pool for the whole run, so long runs, or many
+     * at a time, are better given an executor of their own.
+     */
+    public AsyncClazzpath( final Clazzpath pClazzpath ) {
+        this(pClazzpath, ForkJoinPool.commonPool());
+    }
+
+    public AsyncClazzpath( final Clazzpath pClazzpath, final Executor pExecutor ) {
+        clazzpath = pClazzpath;
+        executor = pExecutor;
+    }
+
+    public AsyncClazzpath setProgressListener( final ProgressListener pListener ) {
+        listener = pListener;
+        return this;
+    }
+
+    /**
+     * Reports a line per added unit.
+     */
+    public AsyncClazzpath setConsole( final Console pConsole ) {
+        listener = new ProgressListener() {
+            public void unitAdded( final ClazzpathUnit pUnit, final int pUnits, final int pTotalUnits, final long pClazzes, final long pBytes ) {
+                pConsole.println("added " + pUnit + " (" + pUnits + "/" + pTotalUnits + " units, " + pClazzes + " clazzes, " + pBytes + " bytes)");
+            }
+        };
+        return this;
+    }
+
+    public CompletableFuture<ClazzpathUnit> addClazzpathUnit( final Path pPath, final String pId ) {
+        return start(Collections.singletonList(pPath), Collections.singletonList(pId)).thenApply(units -> units.get(0));
+    }
+
+    /**
+     * @return the units in the order of the paths, each with its path as id
+     */
+    public CompletableFuture<List<ClazzpathUnit>> addClazzpathUnits( final List<Path> pPaths ) {
+        final List<String> ids = new ArrayList<>();
+        for (Path path : pPaths) {
+            ids.add(path.toString());
+        }
+        return start(pPaths, ids);
+    }
+
+    private CompletableFuture<List<ClazzpathUnit>> start( final List<Path> pPaths, final List<String> pIds ) {
+        final CompletableFuture<List<ClazzpathUnit>> future = new CompletableFuture<>();
+        final ProgressListener progress = listener;
+        executor.execute(() -> {
+            try {
+                future.complete(run(pPaths, pIds, progress, future));
+            } catch (CancellationException e) {
+                // stopped as asked
+            } catch (Throwable e) {
+                // also errors, or the future would never complete
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private List<ClazzpathUnit> run( final List<Path> pPaths, final List<String> pIds, final ProgressListener pListener,
+                                     final CompletableFuture<?> pFuture ) throws IOException {
+
+        final List<ClazzpathUnit> added = new ArrayList<>();
+        // clazzes and bytes of the added units
+        final long[] totals = new long[2];
+
+        for (int i = 0; i < pPaths.size(); i++) {
+            final String id = pIds.get(i);
+
+            // within the unit being read
+            final long[] read = new long[2];
+            final UnitTemplate.Builder builder = new UnitTemplate.Builder((name, size) -> {
+                if (pFuture.isDone()) {
+                    throw new CancellationException();
+                }
+                read[0]++;
+                read[1] += size;
+                pListener.clazzRead(id, totals[0] + read[0], totals[1] + read[1]);
+            });
+
+            final UnitTemplate template = clazzpath.read(pPaths.get(i), id, builder);
+
+            final ClazzpathUnit unit;
+            synchronized (clazzpath) {
+                if (pFuture.isDone()) {
+                    throw new CancellationException();
+                }
+                unit = clazzpath.addClazzpathUnit(template, id);
+            }
+            added.add(unit);
+
+            totals[0] += template.size();
+            totals[1] += template.getBytes();
+            pListener.unitAdded(unit, added.size(), pPaths.size(), totals[0], totals[1]);
+        }
+
+        return added;
+    }
+}
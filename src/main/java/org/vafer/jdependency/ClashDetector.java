@@ -0,0 +1,272 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds duplicate clazzes across units without parsing any bytecode.
+ * Jars only contribute the names, sizes and CRC32s of their central
+ * directory, directories only their file names and sizes. The content of
+ * a clazz is only looked at for names that clash and can't be told apart
+ * by size and CRC32 alone.
+ */
+public final class ClashDetector {
+
+    private static final class Entry {
+
+        final int unit;
+        final long size;
+        final long crc;
+        final Entry next;
+
+        byte[] digest;
+
+        Entry( final int pUnit, final long pSize, final long pCrc, final Entry pNext ) {
+            unit = pUnit;
+            size = pSize;
+            crc = pCrc;
+            next = pNext;
+        }
+    }
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<Path> paths = new ArrayList<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final boolean verify;
+
+    public ClashDetector() {
+        this(false);
+    }
+
+    /**
+     * @param pVerify whether clazzes with the same size and CRC32 are also
+     *                compared by digest before being reported as the same version
+     */
+    public ClashDetector( final boolean pVerify ) {
+        verify = pVerify;
+    }
+
+    public void addUnit( final File pFile ) throws IOException {
+        addUnit(pFile.toPath());
+    }
+
+    public void addUnit( final File pFile, final String pId ) throws IOException {
+        addUnit(pFile.toPath(), pId);
+    }
+
+    public void addUnit( final Path pPath ) throws IOException {
+        addUnit(pPath, pPath.toString());
+    }
+
+    public void addUnit( final Path pPath, final String pId ) throws IOException {
+
+        final Path path = pPath.toAbsolutePath();
+        final int unit = ids.size();
+
+        if (Files.isRegularFile(path)) {
+
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                final Enumeration<? extends ZipEntry> all = zip.entries();
+                while (all.hasMoreElements()) {
+                    final ZipEntry entry = all.nextElement();
+                    if (!entry.isDirectory() && Clazzpath.isValidResourceName(entry.getName())) {
+                        add(entry.getName(), unit, entry.getSize(), entry.getCrc());
+                    }
+                }
+            }
+
+        } else if (Files.isDirectory(path)) {
+
+            final UnitDirectory directory = new UnitDirectory(path);
+            for (Path p : directory.getClazzFiles()) {
+                add(directory.getName(p), unit, Files.size(p), -1);
+            }
+
+        } else {
+            throw new IllegalArgumentException("neither file nor directory");
+        }
+
+        ids.add(pId);
+        paths.add(path);
+    }
+
+    private void add( final String pResourceName, final int pUnit, final long pSize, final long pCrc ) {
+        final String name = Clazzpath.toClazzName(pResourceName);
+        entries.put(name, new Entry(pUnit, pSize, pCrc, entries.get(name)));
+    }
+
+    /**
+     * @return the ids of all units added so far
+     */
+    public List<String> getUnits() {
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * @return the names of the clazzes found in more than one unit mapped to
+     *         the ids of those units, sorted by clazz name
+     */
+    public Map<String, Set<String>> getClashes() {
+        final Map<String, Set<String>> all = new TreeMap<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().next != null) {
+                all.put(e.getKey(), unitIds(e.getValue()));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Like `getClashes()` but only reports clazzes whose units don't all
+     * contain the same version.
+     */
+    public Map<String, Set<String>> getVersionClashes() throws IOException {
+
+        // group the entries that need a digest by unit so every unit is only opened once
+        final Map<Integer, Map<String, Entry>> pending = new HashMap<>();
+
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            final Entry first = e.getValue();
+            if (first.next == null || differs(first)) {
+                continue;
+            }
+            if (!verify && !withoutCrc(first)) {
+                // same size and CRC32 everywhere
+                continue;
+            }
+            for (Entry entry = first; entry != null; entry = entry.next) {
+                if (entry.digest == null) {
+                    pending.computeIfAbsent(entry.unit, u -> new HashMap<>()).put(e.getKey(), entry);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Map<String, Entry>> e : pending.entrySet()) {
+            digest(paths.get(e.getKey()), e.getValue());
+        }
+
+        final Map<String, Set<String>> all = new TreeMap<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            final Entry first = e.getValue();
+            if (first.next != null && (differs(first) || differsByDigest(first))) {
+                all.put(e.getKey(), unitIds(first));
+            }
+        }
+        return all;
+    }
+
+    private Set<String> unitIds( final Entry pFirst ) {
+        // the entries are chained from the last unit added to the first one
+        final List<String> reversed = new ArrayList<>();
+        for (Entry entry = pFirst; entry != null; entry = entry.next) {
+            reversed.add(ids.get(entry.unit));
+        }
+        final Set<String> units = new LinkedHashSet<>();
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            units.add(reversed.get(i));
+        }
+        return units;
+    }
+
+    private static boolean differs( final Entry pFirst ) {
+        for (Entry entry = pFirst.next; entry != null; entry = entry.next) {
+            if (entry.size != pFirst.size) {
+                return true;
+            }
+            if (entry.crc >= 0 && pFirst.crc >= 0 && entry.crc != pFirst.crc) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean withoutCrc( final Entry pFirst ) {
+        for (Entry entry = pFirst; entry != null; entry = entry.next) {
+            if (entry.crc < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean differsByDigest( final Entry pFirst ) {
+        for (Entry entry = pFirst.next; entry != null; entry = entry.next) {
+            if (entry.digest != null && pFirst.digest != null && !MessageDigest.isEqual(entry.digest, pFirst.digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void digest( final Path pPath, final Map<String, Entry> pEntries ) throws IOException {
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final byte[] buffer = new byte[8192];
+
+        if (Files.isDirectory(pPath)) {
+            for (Map.Entry<String, Entry> e : pEntries.entrySet()) {
+                try (InputStream inputStream = Files.newInputStream(pPath.resolve(Clazzpath.toResourceName(e.getKey())))) {
+                    e.getValue().digest = digest(digest, inputStream, buffer);
+                }
+            }
+            return;
+        }
+
+        try (ZipFile zip = new ZipFile(pPath.toFile())) {
+            for (Map.Entry<String, Entry> e : pEntries.entrySet()) {
+                final ZipEntry entry = zip.getEntry(Clazzpath.toResourceName(e.getKey()));
+                if (entry == null) {
+                    continue;
+                }
+                try (InputStream inputStream = zip.getInputStream(entry)) {
+                    e.getValue().digest = digest(digest, inputStream, buffer);
+                }
+            }
+        }
+    }
+
+    private static byte[] digest( final MessageDigest pDigest, final InputStream pInputStream, final byte[] pBuffer ) throws IOException {
+        pDigest.reset();
+        int n;
+        while ((n = pInputStream.read(pBuffer)) >= 0) {
+            pDigest.update(pBuffer, 0, n);
+        }
+        return pDigest.digest();
+    }
+}
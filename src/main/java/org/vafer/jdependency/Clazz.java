@@ -15,22 +15,40 @@
  */
 package org.vafer.jdependency;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.vafer.jdependency.utils.CompactTable;
 
 /**
  * A `Clazz` represents the single class identifier inside a classpath.
  * There is only one `Clazz` per classname. It has incoming and outgoing
  * edges defining references and dependencies. If there are different
  * versions found, it collects their sources as ClazzpathUnits.
+ * Every dependency records the `DependencyKind`s it is made of. The weak
+ * ones, only guessed from service files and string constants, are kept
+ * apart and left out of the plain dependencies and references.
  */
 public final class Clazz implements Comparable<Clazz> {
 
-    private final Set<Clazz> dependencies = new HashSet<>();
-    private final Set<Clazz> references = new HashSet<>();
-    private final Map<ClazzpathUnit, String> units = new HashMap<>();
+    private final CompactTable<Clazz> dependencies = new CompactTable<>();
+    private final CompactTable<Clazz> references = new CompactTable<>();
+
+    // only created for the few clazzes with weak edges
+    private CompactTable<Clazz> weakDependencies;
+    private CompactTable<Clazz> weakReferences;
+
+    // almost all clazzes come from a single unit, only clashes need the map
+    private ClazzpathUnit unit;
+    private String digest;
+    private Map<ClazzpathUnit, String> units;
+    private int size;
+    private int compressedSize;
 
     private final String name;
 
@@ -43,59 +61,240 @@ public final class Clazz implements Comparable<Clazz> {
     }
 
     public void addClazzpathUnit( final ClazzpathUnit pUnit, final String pDigest ) {
-        units.put(pUnit, pDigest);
+        if (units != null) {
+            units.put(pUnit, pDigest);
+        } else if (unit == null || unit.equals(pUnit)) {
+            unit = pUnit;
+            digest = pDigest;
+        } else {
+            units = new HashMap<>(4);
+            units.put(unit, digest);
+            units.put(pUnit, pDigest);
+            unit = null;
+            digest = null;
+        }
     }
 
     public void removeClazzpathUnit( final ClazzpathUnit pUnit ) {
-        units.remove(pUnit);
+        if (units != null) {
+            units.remove(pUnit);
+            if (units.size() == 1) {
+                final Map.Entry<ClazzpathUnit, String> last = units.entrySet().iterator().next();
+                unit = last.getKey();
+                digest = last.getValue();
+                units = null;
+            }
+        } else if (unit != null && unit.equals(pUnit)) {
+            unit = null;
+            digest = null;
+        }
+    }
+
+    void setSize( final int pSize, final int pCompressedSize ) {
+        if (pSize > size) {
+            size = pSize;
+            compressedSize = pCompressedSize;
+        }
+    }
+
+    /**
+     * @return the size of the class file in bytes, the largest one if there
+     *     are several versions, 0 if it is missing or was never read
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the size of the class file as stored in its jar, the same as
+     *     the size for class files in directories
+     */
+    public int getCompressedSize() {
+        return compressedSize;
     }
 
     public Set<ClazzpathUnit> getClazzpathUnits() {
-        return units.keySet();
+        if (units != null) {
+            return units.keySet();
+        }
+        return unit == null ? Collections.emptySet() : Collections.singleton(unit);
+    }
+
+    /**
+     * @return the digest of the clazz in the given unit, null if it is not in there
+     */
+    String getDigest( final ClazzpathUnit pUnit ) {
+        if (units != null) {
+            return units.get(pUnit);
+        }
+        return pUnit.equals(unit) ? digest : null;
     }
 
     public Set<String> getVersions() {
         // System.out.println("clazz:" + name + " units:" + units);
-        return new HashSet<>(units.values());
+        if (units == null) {
+            return digest == null ? Collections.emptySet() : Collections.singleton(digest);
+        }
+        String version = null;
+        for (String d : units.values()) {
+            if (version == null) {
+                version = d;
+            } else if (!version.equals(d)) {
+                return new HashSet<>(units.values());
+            }
+        }
+        return Collections.singleton(version);
     }
 
 
     public void addDependency( final Clazz pClazz ) {
-        pClazz.references.add(this);
-        dependencies.add(pClazz);
+        addDependency(pClazz, DependencyKind.STRONG);
+    }
+
+    public void addDependency( final Clazz pClazz, final Set<DependencyKind> pKinds ) {
+        addDependency(pClazz, DependencyKind.mask(pKinds));
+    }
+
+    void addDependency( final Clazz pClazz, final int pKinds ) {
+        final int weak = pKinds & DependencyKind.WEAK;
+        if (weak != pKinds || pKinds == 0) {
+            if (dependencies.add(pClazz, pKinds & DependencyKind.STRONG)) {
+                pClazz.references.add(this, 0);
+            }
+        }
+        if (weak != 0) {
+            if (weakDependencies == null) {
+                weakDependencies = new CompactTable<>();
+            }
+            if (weakDependencies.add(pClazz, weak)) {
+                if (pClazz.weakReferences == null) {
+                    pClazz.weakReferences = new CompactTable<>();
+                }
+                pClazz.weakReferences.add(this, 0);
+            }
+        }
     }
 
     public void removeDependency( final Clazz pClazz ) {
         pClazz.references.remove(this);
         dependencies.remove(pClazz);
+        if (weakDependencies != null && weakDependencies.remove(pClazz)) {
+            pClazz.weakReferences.remove(this);
+        }
     }
 
+    /**
+     * @return a read only view of the dependencies, without the weak ones
+     */
     public Set<Clazz> getDependencies() {
-        return dependencies;
+        return dependencies.keys();
+    }
+
+    /**
+     * @return a read only view of the dependencies of only weak kinds
+     */
+    public Set<Clazz> getWeakDependencies() {
+        return weakDependencies == null ? Collections.emptySet() : weakDependencies.keys();
+    }
+
+    /**
+     * @return the dependencies that may be of one of the kinds
+     */
+    Iterable<Clazz> getDependencies( final int pKinds ) {
+        return edges(dependencies, weakDependencies, pKinds);
+    }
+
+    /**
+     * @return the references that may be of one of the kinds
+     */
+    Iterable<Clazz> getReferences( final int pKinds ) {
+        return edges(references, weakReferences, pKinds);
+    }
+
+    private static Iterable<Clazz> edges( final CompactTable<Clazz> pStrong, final CompactTable<Clazz> pWeak, final int pKinds ) {
+        final boolean strong = (pKinds & DependencyKind.STRONG) != 0;
+        if (pWeak == null || (pKinds & DependencyKind.WEAK) == 0) {
+            return strong ? pStrong.keys() : Collections.emptySet();
+        }
+        if (!strong) {
+            return pWeak.keys();
+        }
+        return () -> Stream.concat(pStrong.keys().stream(), pWeak.keys().stream()).iterator();
+    }
+
+    /**
+     * @return the kinds of the dependency on the given clazz, empty if there is none
+     */
+    public Set<DependencyKind> getDependencyKinds( final Clazz pClazz ) {
+        return DependencyKind.of(getDependencyMask(pClazz));
+    }
+
+    int getDependencyMask( final Clazz pClazz ) {
+        final int strong = dependencies.get(pClazz);
+        return weakDependencies == null ? strong : strong | weakDependencies.get(pClazz);
     }
 
 
 
+    /**
+     * @return a read only view of the references, without the weak ones
+     */
     public Set<Clazz> getReferences() {
-        return references;
+        return references.keys();
+    }
+
+    /**
+     * @return a read only view of the references of only weak kinds
+     */
+    public Set<Clazz> getWeakReferences() {
+        return weakReferences == null ? Collections.emptySet() : weakReferences.keys();
     }
 
 
     public Set<Clazz> getTransitiveDependencies() {
+        return getTransitiveDependencies(DependencyKind.STRONG);
+    }
+
+    /**
+     * @param pKinds only follow dependencies of at least one of these kinds
+     * @return all clazzes this clazz directly or indirectly depends on
+     */
+    public Set<Clazz> getTransitiveDependencies( final Set<DependencyKind> pKinds ) {
+        return getTransitiveDependencies(DependencyKind.mask(pKinds));
+    }
+
+    private Set<Clazz> getTransitiveDependencies( final int pKinds ) {
         final Set<Clazz> all = new HashSet<>();
-        findTransitiveDependencies(all);
+        Traversal.walk(Collections.singleton(this), false, Traversal.UNBOUNDED, null, pKinds, all);
         return all;
     }
 
+    /**
+     * @return all clazzes that directly or indirectly depend on this clazz
+     */
+    public Set<Clazz> getTransitiveReferences() {
+        return getTransitiveReferences(Traversal.UNBOUNDED, null);
+    }
 
-    void findTransitiveDependencies( final Set<? super Clazz> pAll ) {
+    /**
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @return all clazzes that depend on this clazz within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter ) {
+        return getTransitiveReferences(pMaxDepth, pUnitFilter, DependencyKind.of(DependencyKind.STRONG));
+    }
 
-        for (Clazz clazz : dependencies) {
-            if (!pAll.contains(clazz)) {
-                pAll.add(clazz);
-                clazz.findTransitiveDependencies(pAll);
-            }
-        }
+    /**
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @param pKinds only follow references of at least one of these kinds
+     * @return all clazzes that depend on this clazz within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter, final Set<DependencyKind> pKinds ) {
+        final Set<Clazz> all = new HashSet<>();
+        Traversal.walk(Collections.singleton(this), true, pMaxDepth, Traversal.inUnits(pUnitFilter), DependencyKind.mask(pKinds), all);
+        return all;
     }
 
 
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Creates additional visitors for the clazzes a `Clazzpath` ingests. They
+ * see the same `ClassReader` pass as the dependency analysis, so extra
+ * analyses don't cost another read and parse of the bytes. The class is
+ * read with `ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG`.
+ */
+public interface ClazzVisitorFactory {
+
+    /**
+     * @param pUnitId the id of the unit being added
+     * @param pClazzName the name of the clazz, like `com.acme.Foo`
+     * @return the visitor for the clazz or null to not visit it
+     */
+    ClassVisitor create( String pUnitId, String pClazzName );
+}
@@ -15,78 +15,298 @@
  */
 package org.vafer.jdependency;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.Base64;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.input.MessageDigestCalculatingInputStream;
-import static org.apache.commons.io.FilenameUtils.normalize;
 import static org.apache.commons.io.FilenameUtils.separatorsToUnix;
 
 import org.vafer.jdependency.asm.DependenciesClassAdapter;
+import org.vafer.jdependency.asm.MembersClassAdapter;
+import org.vafer.jdependency.asm.TeeClassVisitor;
+import org.vafer.jdependency.utils.JfrEvents;
+import org.vafer.jdependency.utils.ReadAhead;
 import static org.vafer.jdependency.utils.StreamUtils.asStream;
 
 
 
 public final class Clazzpath {
 
+    private static final int EXT = ".class".length();
+
+    // digest of the empty input, recorded for every clazz when versions are not tracked
+    private static final String NO_DIGEST = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+
+    private static final ThreadLocal<DependenciesClassAdapter> adapters = ThreadLocal.withInitial(DependenciesClassAdapter::new);
+
     private final Set<ClazzpathUnit> units = new HashSet<>();
     private final Map<String, Clazz> missing = new HashMap<>();
     private final Map<String, Clazz> clazzes = new HashMap<>();
+    private final Set<Clazz> clashed = new HashSet<>();
+    private final NameIndex index = new NameIndex();
+    private final NameIndex missingIndex = new NameIndex();
     private final boolean versions;
+    private final MemberGraph members;
+    private final MembersClassAdapter membersAdapter;
+    private final List<ClazzVisitorFactory> visitorFactories = new ArrayList<>();
+    private final List<ResourceHandler> resourceHandlers = new ArrayList<>();
+    private UnitCache cache;
+    private PlatformClazzes platform;
+    private ClazzpathUnit platformUnit;
+    private Map<String, Clazz> platformClazzes;
+
+    // the number of clazzes per unit in each package and the packages and
+    // module names shared by several units, kept up to date on add and remove
+    private final Map<String, Map<ClazzpathUnit, Integer>> packages = new HashMap<>();
+    private final Set<String> splitPackages = new HashSet<>();
+    private final Map<String, Set<ClazzpathUnit>> modules = new HashMap<>();
+    private final Set<String> conflictingModules = new HashSet<>();
+
+    // services and providers waiting for one of their ends, by the name of that end
+    private final Map<String, List<WeakDependency>> pendingWeak = new HashMap<>();
+
+    // guesses from string constants of the unit being added, linked once all its clazzes are there
+    private final List<WeakDependency> unitWeak = new ArrayList<>();
+
+    private static final class WeakDependency {
+
+        final String from;
+        final String to;
+        final int kinds;
+        final ClazzpathUnit unit;
+
+        WeakDependency( final String pFrom, final String pTo, final int pKinds, final ClazzpathUnit pUnit ) {
+            from = pFrom;
+            to = pTo;
+            kinds = pKinds;
+            unit = pUnit;
+        }
+    }
 
-    private abstract static class Resource {
+    static final String SERVICES = "META-INF/services/";
+    static final String MODULE_INFO = "module-info.class";
+    private static final String AUTOMATIC_MODULE_NAME = "Automatic-Module-Name";
+    private static final Pattern VERSIONED_MODULE_INFO = Pattern.compile("META-INF/versions/[0-9]+/module-info\\.class");
 
-        private static final int ext = ".class".length();
+    abstract static class Resource {
 
         public final String name;
 
         Resource( final String pName ) {
             super();
 
-            final int all = pName.length();
-
-            // foo/bar/Foo.class -> // foo.bar.Foo
-            this.name = separatorsToUnix(pName)
-                .substring(0, all - ext)
-                .replace('/', '.');
+            this.name = toClazzName(pName);
         }
 
         abstract InputStream getInputStream() throws IOException;
+
+        /**
+         * @return the compressed size once the input stream is read, -1 if it is not compressed
+         */
+        long getCompressedSize() {
+            return -1;
+        }
     }
 
-    private static boolean isValidResourceName( final String pName ) {
+    static boolean isValidResourceName( final String pName ) {
         return pName != null
             && pName.endsWith(".class")
             && !pName.contains( "-" );
     }
 
+    static String toClazzName( final String pResourceName ) {
+        // foo/bar/Foo.class -> // foo.bar.Foo
+        return separatorsToUnix(pResourceName)
+            .substring(0, pResourceName.length() - EXT)
+            .replace('/', '.');
+    }
+
+    static String toResourceName( final String pClazzName ) {
+        return pClazzName.replace('.', '/') + ".class";
+    }
+
     public Clazzpath() {
         this(false);
     }
 
     public Clazzpath( final boolean pVersions ) {
+        this(pVersions, false);
+    }
+
+    /**
+     * @param pVersions whether to record a digest per clazz and unit to tell versions apart
+     * @param pMembers whether to also build the field and method level `MemberGraph`
+     */
+    public Clazzpath( final boolean pVersions, final boolean pMembers ) {
         versions = pVersions;
+        members = pMembers ? new MemberGraph() : null;
+        membersAdapter = pMembers ? new MembersClassAdapter(members.getTable()) : null;
+    }
+
+    /**
+     * A scratch clazzpath parsing for the given one, with its other analyses.
+     * Members go into a table of its own, merged when the unit is added.
+     */
+    private Clazzpath( final Clazzpath pOwner ) {
+        versions = false;
+        members = pOwner.members != null ? new MemberGraph() : null;
+        membersAdapter = members != null ? new MembersClassAdapter(members.getTable()) : null;
+        visitorFactories.addAll(pOwner.visitorFactories);
+        resourceHandlers.addAll(pOwner.resourceHandlers);
+    }
+
+    /**
+     * Shares parsed jars with other clazzpaths using the same cache. Units
+     * added from files or streams are then hashed and only parsed if the
+     * cache doesn't know them yet. The cache is bypassed while member
+     * analysis, clazz visitors or resource handlers need the bytes.
+     */
+    public void setUnitCache( final UnitCache pCache ) {
+        cache = pCache;
+    }
+
+    /**
+     * Lets another analysis visit the clazzes of the units added from now on,
+     * in the same pass over their bytes as the dependency analysis.
+     */
+    public void addClazzVisitorFactory( final ClazzVisitorFactory pFactory ) {
+        visitorFactories.add(pFactory);
+    }
+
+    /**
+     * Passes the entries that are not clazzes of the units added from now on
+     * to the handler, while they are read anyway.
+     */
+    public void addResourceHandler( final ResourceHandler pHandler ) {
+        resourceHandlers.add(pHandler);
+    }
+
+    /**
+     * Resolves references to the classes of the platform through a unit
+     * holding just the referenced ones. They are present without being
+     * parsed, so they neither show up as missing nor have dependencies.
+     * Clazzes already recorded as missing are resolved right away. Clazzes
+     * of other units that the platform has as well clash with it, whether
+     * their unit was added before or after the platform unit.
+     *
+     * @throws IllegalStateException if there already is a platform unit
+     */
+    public ClazzpathUnit addPlatformUnit( final PlatformClazzes pPlatform ) {
+
+        if (platformUnit != null) {
+            throw new IllegalStateException("there already is a platform unit");
+        }
+
+        platform = pPlatform;
+        platformClazzes = new HashMap<>();
+        platformUnit = new ClazzpathUnit(pPlatform.toString(), platformClazzes, new HashMap<>());
+        units.add(platformUnit);
+
+        for (Clazz clazz : new ArrayList<>(clazzes.values())) {
+            if (platform.contains(clazz.getName())) {
+                platformClazzes.put(clazz.getName(), define(clazz.getName(), platformUnit, NO_DIGEST, 0, 0));
+            }
+        }
+        for (Clazz clazz : new ArrayList<>(missing.values())) {
+            if (platform.contains(clazz.getName())) {
+                platformClazzes.put(clazz.getName(), define(clazz.getName(), platformUnit, NO_DIGEST, 0, 0));
+            }
+        }
+
+        return platformUnit;
     }
 
     public boolean removeClazzpathUnit( final ClazzpathUnit pUnit ) {
 
+        if (pUnit == platformUnit) {
+            platform = null;
+            platformUnit = null;
+            platformClazzes = null;
+        }
+
         final Set<Clazz> unitClazzes = pUnit.getClazzes();
+        final Set<String> removed = new HashSet<>();
 
         for (Clazz clazz : unitClazzes) {
+            if (clazz.getClazzpathUnits().contains(pUnit)) {
+                final String packageName = packageName(clazz.getName());
+                final Map<ClazzpathUnit, Integer> packageUnits = packages.get(packageName);
+                if (packageUnits.merge(pUnit, -1, Integer::sum) == 0) {
+                    packageUnits.remove(pUnit);
+                }
+                if (packageUnits.size() < 2) {
+                    splitPackages.remove(packageName);
+                }
+                if (packageUnits.isEmpty()) {
+                    packages.remove(packageName);
+                }
+            }
             clazz.removeClazzpathUnit(pUnit);
+            if (clazz.getClazzpathUnits().size() < 2) {
+                clashed.remove(clazz);
+            }
             if (clazz.getClazzpathUnits().size() == 0) {
                 clazzes.remove(clazz.toString());
+                index.remove(clazz);
+                removed.add(clazz.getName());
+                if (members != null) {
+                    members.forget(clazz.getName());
+                }
+            }
+        }
+
+        // the providers of the unit and those of its clazzes no longer wait
+        final Iterator<List<WeakDependency>> pending = pendingWeak.values().iterator();
+        while (pending.hasNext()) {
+            final List<WeakDependency> waiting = pending.next();
+            waiting.removeIf(weak -> weak.unit == pUnit || removed.contains(weak.from) || removed.contains(weak.to));
+            if (waiting.isEmpty()) {
+                pending.remove();
+            }
+        }
+
+        if (pUnit.getModuleName() != null) {
+            final Set<ClazzpathUnit> declaring = modules.get(pUnit.getModuleName());
+            if (declaring != null && declaring.remove(pUnit)) {
+                if (declaring.size() < 2) {
+                    conflictingModules.remove(pUnit.getModuleName());
+                }
+                if (declaring.isEmpty()) {
+                    modules.remove(pUnit.getModuleName());
+                }
             }
         }
 
@@ -107,27 +327,109 @@ public final class Clazzpath {
     }
 
     public ClazzpathUnit addClazzpathUnit( final Path pPath, final String pId ) throws IOException {
+        return addClazzpathUnit(pPath, pId, null);
+    }
+
+    /**
+     * Parses a unit into a template without keeping a graph.
+     */
+    static UnitTemplate parse( final Path pPath ) throws IOException {
+        final UnitTemplate.Builder builder = new UnitTemplate.Builder();
+        new Clazzpath().addClazzpathUnit(pPath, pPath.toString(), builder);
+        return builder.build();
+    }
+
+    static UnitTemplate parse( final InputStream pInputStream, final String pId ) throws IOException {
+        final UnitTemplate.Builder builder = new UnitTemplate.Builder();
+        new Clazzpath().addClazzpathUnit(pInputStream, pId, builder);
+        return builder.build();
+    }
+
+    /**
+     * Parses a unit like `addClazzpathUnit`, running the other analyses and
+     * using the cache, but into a template instead of the graph. Replaying
+     * the template then adds the unit in one go.
+     */
+    UnitTemplate read( final Path pPath, final String pId, final UnitTemplate.Builder pBuilder ) throws IOException {
+        if (isCaching() && Files.isRegularFile(pPath)) {
+            return cachedTemplate(Files.readAllBytes(pPath), pId, pBuilder);
+        }
+        final Clazzpath scratch = new Clazzpath(this);
+        scratch.addClazzpathUnit(pPath, pId, pBuilder);
+        if (scratch.members != null) {
+            pBuilder.setMembers(scratch.members.getTable());
+        }
+        return pBuilder.build();
+    }
+
+    private ClazzpathUnit addClazzpathUnit( final Path pPath, final String pId, final UnitTemplate.Builder pTemplate ) throws IOException {
 
         final Path path = pPath.toAbsolutePath();
 
         if (Files.isRegularFile(path)) {
 
-            return addClazzpathUnit(Files.newInputStream(path), pId);
+            if (pTemplate == null && isCaching()) {
+                return addCachedClazzpathUnit(Files.readAllBytes(path), pId);
+            }
+
+            return addClazzpathUnit(Files.newInputStream(path), pId, pTemplate);
 
         } else if (Files.isDirectory(path)) {
 
-            final String prefix = separatorsToUnix(normalize(path.toString() + '/'));
+            final UnitDirectory directory = new UnitDirectory(path);
 
-            Iterable<Resource> resources = Files.walk(path)
-                .filter(p -> Files.isRegularFile(p))
-                .filter(p -> isValidResourceName(p.getFileName().toString()))
-                .map(p -> (Resource) new Resource(p.toString().substring(prefix.length())) {
-                    InputStream getInputStream() throws IOException {
-                        return Files.newInputStream(p);
+            final ClazzpathUnit unit;
+
+            // read the files concurrently while parsing on this thread
+            try (ReadAhead<Path> reads = directory.readClazzFiles()) {
+
+                Iterable<Resource> resources = () -> new Iterator<Resource>() {
+
+                    public boolean hasNext() {
+                        return reads.hasNext();
                     }
-                })::iterator;
 
-            return addClazzpathUnit(resources, pId, true);
+                    public Resource next() {
+                        final ReadAhead.Read<Path> read = reads.next();
+                        return new Resource(directory.getName(read.getSource())) {
+                            InputStream getInputStream() throws IOException {
+                                return new ByteArrayInputStream(read.getBytes());
+                            }
+                        };
+                    }
+                };
+
+                unit = addClazzpathUnit(resources, pId, true, pTemplate);
+            }
+
+            int resourceCount = 0;
+            long resourceSize = 0;
+            final Map<String, byte[]> descriptors = new LinkedHashMap<>();
+            String automaticModuleName = null;
+            for (Path file : directory.getOtherFiles()) {
+                final String name = directory.getName(file);
+                if (!JarFile.MANIFEST_NAME.equals(name)) {
+                    // like in jars, where it is not an entry of its own
+                    resourceCount++;
+                    resourceSize += Files.size(file);
+                } else {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        automaticModuleName = new Manifest(in).getMainAttributes().getValue(AUTOMATIC_MODULE_NAME);
+                    }
+                }
+                if (isDescriptor(name)) {
+                    descriptors.put(name, Files.readAllBytes(file));
+                }
+                if (!resourceHandlers.isEmpty()) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        handle(pId, name, in);
+                    }
+                }
+            }
+            addResources(unit, pTemplate, resourceCount, resourceSize, resourceSize);
+            describe(unit, pTemplate, descriptors, automaticModuleName);
+
+            return unit;
         }
 
         throw new IllegalArgumentException("neither file nor directory");
@@ -135,94 +437,481 @@ public final class Clazzpath {
 
     public ClazzpathUnit addClazzpathUnit( final InputStream pInputStream, final String pId ) throws IOException {
 
+        if (isCaching()) {
+            try {
+                return addCachedClazzpathUnit(IOUtils.toByteArray(pInputStream), pId);
+            } finally {
+                pInputStream.close();
+            }
+        }
+
+        return addClazzpathUnit(pInputStream, pId, null);
+    }
+
+    private boolean isCaching() {
+        // other analyses need the bytes
+        return cache != null && membersAdapter == null && visitorFactories.isEmpty() && resourceHandlers.isEmpty();
+    }
+
+    private ClazzpathUnit addCachedClazzpathUnit( final byte[] pBytes, final String pId ) throws IOException {
+        return addClazzpathUnit(cachedTemplate(pBytes, pId, new UnitTemplate.Builder()), pId);
+    }
+
+    private UnitTemplate cachedTemplate( final byte[] pBytes, final String pId, final UnitTemplate.Builder pBuilder ) throws IOException {
+
+        String key = null;
+        try {
+            key = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(pBytes));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            // parse without the cache
+        }
+
+        final UnitTemplate cached = key == null ? null : cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        new Clazzpath().addClazzpathUnit(new ByteArrayInputStream(pBytes), pId, pBuilder);
+        final UnitTemplate template = pBuilder.build();
+        if (key != null) {
+            cache.put(key, template);
+        }
+        return template;
+    }
+
+    private ClazzpathUnit addClazzpathUnit( final InputStream pInputStream, final String pId, final UnitTemplate.Builder pTemplate ) throws IOException {
+
         final JarInputStream inputStream = new JarInputStream(pInputStream);
 
         try {
 
+            if (!resourceHandlers.isEmpty() && inputStream.getManifest() != null) {
+                // already consumed by the JarInputStream
+                final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+                inputStream.getManifest().write(manifest);
+                handle(pId, JarFile.MANIFEST_NAME, new ByteArrayInputStream(manifest.toByteArray()));
+            }
+
+            // count, size and compressed size of the other entries
+            final long[] other = new long[3];
+            final Map<String, byte[]> descriptors = new LinkedHashMap<>();
+
             Iterable<Resource> resources = asStream(inputStream)
-                .map(e -> e.getName())
-                .filter(name -> isValidResourceName(name))
-                .map(name -> (Resource) new Resource(name) {
+                .filter(e -> isClazzEntry(e, pId, inputStream, other, descriptors))
+                .map(e -> (Resource) new Resource(e.getName()) {
                     InputStream getInputStream() throws IOException {
                         return inputStream;
                     }
+
+                    long getCompressedSize() {
+                        return e.getCompressedSize();
+                    }
                 })::iterator;
 
-           return addClazzpathUnit(resources, pId, false);
+            final ClazzpathUnit unit = addClazzpathUnit(resources, pId, false, pTemplate);
+            addResources(unit, pTemplate, (int) other[0], other[1], other[2]);
+            final Manifest manifest = inputStream.getManifest();
+            describe(unit, pTemplate, descriptors, manifest == null ? null : manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME));
+            return unit;
 
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         } finally {
             inputStream.close();
         }
     }
 
-    private ClazzpathUnit addClazzpathUnit( final Iterable<Resource> resources, final String pId, boolean shouldCloseResourceStream ) throws IOException {
+    /**
+     * Passes other entries on to the resource handlers while the stream is at them,
+     * keeps the service files and module descriptors and reads the others to the
+     * end, which tells their sizes.
+     */
+    private boolean isClazzEntry( final JarEntry pEntry, final String pId, final InputStream pInputStream, final long[] pOther, final Map<String, byte[]> pDescriptors ) {
+        if (isValidResourceName(pEntry.getName())) {
+            return true;
+        }
+        if (!pEntry.isDirectory()) {
+            try {
+                if (isDescriptor(pEntry.getName())) {
+                    final byte[] bytes = IOUtils.toByteArray(pInputStream);
+                    pDescriptors.put(pEntry.getName(), bytes);
+                    handle(pId, pEntry.getName(), new ByteArrayInputStream(bytes));
+                } else {
+                    handle(pId, pEntry.getName(), pInputStream);
+                }
+                IOUtils.consume(pInputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pOther[0]++;
+            pOther[1] += Math.max(0, pEntry.getSize());
+            pOther[2] += Math.max(0, pEntry.getCompressedSize());
+        }
+        return false;
+    }
+
+    private static void addResources( final ClazzpathUnit pUnit, final UnitTemplate.Builder pTemplate, final int pCount, final long pSize, final long pCompressedSize ) {
+        pUnit.addResources(pCount, pSize, pCompressedSize);
+        if (pTemplate != null) {
+            pTemplate.addResources(pCount, pSize, pCompressedSize);
+        }
+    }
+
+    private void handle( final String pId, final String pName, final InputStream pInputStream ) throws IOException {
+        for (ResourceHandler handler : resourceHandlers) {
+            handler.handle(pId, pName, CloseShieldInputStream.wrap(pInputStream));
+        }
+    }
+
+    /**
+     * All analyses of a clazz share one pass over its bytes.
+     */
+    private ClassVisitor visitor( final DependenciesClassAdapter pDependencies, final String pId, final String pClazzName ) {
+        if (membersAdapter == null && visitorFactories.isEmpty()) {
+            return pDependencies;
+        }
+        final ClassVisitor[] all = new ClassVisitor[2 + visitorFactories.size()];
+        all[0] = pDependencies;
+        all[1] = membersAdapter;
+        for (int i = 0; i < visitorFactories.size(); i++) {
+            all[2 + i] = visitorFactories.get(i).create(pId, pClazzName);
+        }
+        return TeeClassVisitor.of(all);
+    }
+
+    /**
+     * Adds a unit of clazzes known by name only, without any dependencies.
+     */
+    ClazzpathUnit addClazzpathUnit( final Collection<String> pClazzNames, final String pId ) {
+
+        final Map<String, Clazz> unitClazzes = new HashMap<>();
+        final ClazzpathUnit unit = new ClazzpathUnit(pId, unitClazzes, new HashMap<>());
+
+        for (String clazzName : pClazzNames) {
+            unitClazzes.put(clazzName, define(clazzName, unit, NO_DIGEST, 0, 0));
+        }
+
+        units.add(unit);
+
+        return unit;
+    }
+
+    private Clazz define( final String pClazzName, final ClazzpathUnit pUnit, final String pDigest, final int pSize, final int pCompressedSize ) {
+
+        // get or create clazz
+        Clazz clazz = getClazz(pClazzName);
+        if (clazz == null) {
+            clazz = missing.remove(pClazzName);
+
+            if (clazz != null) {
+                // was marked missing
+                missingIndex.remove(clazz);
+            } else {
+                clazz = new Clazz(pClazzName);
+            }
+        }
+        if (!clazz.getClazzpathUnits().contains(pUnit)) {
+            final Map<ClazzpathUnit, Integer> packageUnits = packages.computeIfAbsent(packageName(pClazzName), k -> new HashMap<>());
+            packageUnits.merge(pUnit, 1, Integer::sum);
+            if (packageUnits.size() > 1) {
+                splitPackages.add(packageName(pClazzName));
+            }
+        }
+        clazz.addClazzpathUnit(pUnit, pDigest);
+        if (pUnit != platformUnit) {
+            // the platform knows no sizes
+            clazz.setSize(pSize, pCompressedSize);
+        }
+        pUnit.addClazzSize(pSize, pCompressedSize);
+        if (clazz.getClazzpathUnits().size() > 1) {
+            clashed.add(clazz);
+        }
+
+        /// add to classpath
+        if (clazzes.put(pClazzName, clazz) == null) {
+            index.add(clazz);
+            resolveWeak(pClazzName);
+        }
+
+        if (pUnit != platformUnit && platform != null && !clazz.getClazzpathUnits().contains(platformUnit)
+            && platform.contains(pClazzName)) {
+            // shadows a clazz of the platform that was not referenced yet
+            platformClazzes.put(pClazzName, define(pClazzName, platformUnit, NO_DIGEST, 0, 0));
+        }
+
+        return clazz;
+    }
+
+    ClazzpathUnit addClazzpathUnit( final Iterable<Resource> resources, final String pId, boolean shouldCloseResourceStream ) throws IOException {
+        return addClazzpathUnit(resources, pId, shouldCloseResourceStream, null);
+    }
+
+    /**
+     * Replays a cached unit without parsing anything.
+     */
+    ClazzpathUnit addClazzpathUnit( final UnitTemplate pTemplate, final String pId ) {
 
         final Map<String, Clazz> unitClazzes = new HashMap<>();
         final Map<String, Clazz> unitDependencies = new HashMap<>();
 
         final ClazzpathUnit unit = new ClazzpathUnit(pId, unitClazzes, unitDependencies);
 
+        final Object unitEvent = JfrEvents.beginUnit();
+
+        if (members != null && pTemplate.getMembers() != null) {
+            members.getTable().addAll(pTemplate.getMembers());
+        }
+
+        for (int c = 0; c < pTemplate.size(); c++) {
+            final String clazzName = pTemplate.getName(c);
+            final Clazz clazz = define(clazzName, unit, versions ? pTemplate.getDigest(c) : NO_DIGEST, pTemplate.getSize(c), pTemplate.getCompressedSize(c));
+            unitClazzes.put(clazzName, clazz);
+            for (int i = 0; i < pTemplate.getDependencyCount(c); i++) {
+                depend(clazz, pTemplate.getDependency(c, i), pTemplate.getDependencyKinds(c, i), unitDependencies);
+            }
+        }
+
+        linkWeak();
+
+        for (int i = 0; i < pTemplate.getServiceCount(); i++) {
+            provide(unit, pTemplate.getService(i), pTemplate.getProvider(i));
+        }
+        if (pTemplate.getModuleName() != null) {
+            declareModule(unit, pTemplate.getModuleName());
+        }
+        unit.addResources(pTemplate.getResourceCount(), pTemplate.getResourceSize(), pTemplate.getCompressedResourceSize());
+
+        units.add(unit);
+
+        JfrEvents.commitUnit(unitEvent, pId, unitClazzes.size(), pTemplate.getBytes(), unitDependencies.size());
+
+        return unit;
+    }
+
+    /**
+     * @return the present, platform or missing clazz of that name, or null if there is none
+     */
+    private Clazz existing( final String pClazzName ) {
+
+        Clazz clazz = getClazz(pClazzName);
+
+        if (clazz == null) {
+            // there is no such clazz yet
+            clazz = missing.get(pClazzName);
+        }
+
+        if (clazz == null && platform != null && platform.contains(pClazzName)) {
+            // provided by the platform
+            clazz = define(pClazzName, platformUnit, NO_DIGEST, 0, 0);
+            platformClazzes.put(pClazzName, clazz);
+        }
+
+        return clazz;
+    }
+
+    private void depend( final Clazz pClazz, final String pDepName, final int pKinds, final Map<String, Clazz> pUnitDependencies ) {
+
+        if ((pKinds & ~DependencyKind.WEAK) == 0) {
+            unitWeak.add(new WeakDependency(pClazz.getName(), pDepName, pKinds, null));
+            return;
+        }
+
+        Clazz dep = existing(pDepName);
+
+        if (dep == null) {
+            // it is also not recorded to be missing
+            dep = new Clazz(pDepName);
+            // add as missing
+            missing.put(pDepName, dep);
+            missingIndex.add(dep);
+            resolveWeak(pDepName);
+        }
+
+        if (dep != pClazz) {
+            // unit depends on dep
+            pUnitDependencies.put(pDepName, dep);
+            // clazz depends on dep
+            pClazz.addDependency(dep, pKinds);
+        }
+    }
+
+    /**
+     * Links the guesses of the unit just added to the clazzes known by now
+     * and drops the others, most strings only look like clazz names.
+     */
+    private void linkWeak() {
+        for (WeakDependency weak : unitWeak) {
+            final Clazz from = existing(weak.from);
+            final Clazz to = existing(weak.to);
+            if (from != null && to != null && from != to) {
+                from.addDependency(to, weak.kinds);
+            }
+        }
+        unitWeak.clear();
+    }
+
+    /**
+     * Links the two clazzes once both are known, without ever making one missing.
+     */
+    private void dependWeakly( final WeakDependency pWeak ) {
+        final Clazz from = existing(pWeak.from);
+        final Clazz to = from == null ? null : existing(pWeak.to);
+        if (from == null || to == null) {
+            pendingWeak.computeIfAbsent(from == null ? pWeak.from : pWeak.to, k -> new ArrayList<>()).add(pWeak);
+        } else if (from != to) {
+            from.addDependency(to, pWeak.kinds);
+        }
+    }
+
+    private void resolveWeak( final String pClazzName ) {
+        final List<WeakDependency> waiting = pendingWeak.remove(pClazzName);
+        if (waiting != null) {
+            for (WeakDependency weak : waiting) {
+                dependWeakly(weak);
+            }
+        }
+    }
+
+    private static String packageName( final String pClazzName ) {
+        final int dot = pClazzName.lastIndexOf('.');
+        return dot < 0 ? "" : pClazzName.substring(0, dot);
+    }
+
+    private static boolean isDescriptor( final String pName ) {
+        return pName.startsWith(SERVICES) || MODULE_INFO.equals(pName) || VERSIONED_MODULE_INFO.matcher(pName).matches();
+    }
+
+    /**
+     * Adds the providers of the service files and the name of the module,
+     * declared by a module descriptor, a versioned one or the manifest.
+     */
+    private void describe( final ClazzpathUnit pUnit, final UnitTemplate.Builder pTemplate, final Map<String, byte[]> pDescriptors, final String pAutomaticModuleName ) {
+        String module = null;
+        for (Map.Entry<String, byte[]> descriptor : pDescriptors.entrySet()) {
+            if (descriptor.getKey().startsWith(SERVICES)) {
+                provide(pUnit, pTemplate, descriptor.getKey(), descriptor.getValue());
+            } else if (module == null || MODULE_INFO.equals(descriptor.getKey())) {
+                module = moduleName(descriptor.getValue());
+            }
+        }
+        if (module == null && pAutomaticModuleName != null && !pAutomaticModuleName.trim().isEmpty()) {
+            module = pAutomaticModuleName.trim();
+        }
+        if (module != null) {
+            declareModule(pUnit, module);
+            if (pTemplate != null) {
+                pTemplate.setModuleName(module);
+            }
+        }
+    }
+
+    private static String moduleName( final byte[] pModuleInfo ) {
+        final String[] name = new String[1];
+        new ClassReader(pModuleInfo).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public ModuleVisitor visitModule( final String pName, final int pAccess, final String pVersion ) {
+                name[0] = pName;
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return name[0];
+    }
+
+    private void declareModule( final ClazzpathUnit pUnit, final String pModule ) {
+        pUnit.setModuleName(pModule);
+        final Set<ClazzpathUnit> declaring = modules.computeIfAbsent(pModule, k -> new HashSet<>());
+        declaring.add(pUnit);
+        if (declaring.size() > 1) {
+            conflictingModules.add(pModule);
+        }
+    }
+
+    /**
+     * Links a service to a provider listed in a service file of the unit.
+     */
+    private void provide( final ClazzpathUnit pUnit, final String pService, final String pProvider ) {
+        pUnit.addService(pService, pProvider);
+        dependWeakly(new WeakDependency(pService, pProvider, DependencyKind.SERVICE.mask(), pUnit));
+    }
+
+    /**
+     * Adds the providers of a service file, one clazz name per line and `#` comments.
+     */
+    private void provide( final ClazzpathUnit pUnit, final UnitTemplate.Builder pTemplate, final String pName, final byte[] pBytes ) {
+        final String service = pName.substring(SERVICES.length());
+        if (service.isEmpty() || service.indexOf('/') >= 0) {
+            return;
+        }
+        for (String line : new String(pBytes, StandardCharsets.UTF_8).split("\\r?\\n")) {
+            final int comment = line.indexOf('#');
+            final String provider = (comment < 0 ? line : line.substring(0, comment)).trim();
+            if (!provider.isEmpty()) {
+                provide(pUnit, service, provider);
+                if (pTemplate != null) {
+                    pTemplate.addService(service, provider);
+                }
+            }
+        }
+    }
+
+    private ClazzpathUnit addClazzpathUnit( final Iterable<Resource> resources, final String pId, boolean shouldCloseResourceStream, final UnitTemplate.Builder pTemplate ) throws IOException {
+
+        final Map<String, Clazz> unitClazzes = new HashMap<>();
+        final Map<String, Clazz> unitDependencies = new HashMap<>();
+
+        final ClazzpathUnit unit = new ClazzpathUnit(pId, unitClazzes, unitDependencies);
+
+        final Object unitEvent = JfrEvents.beginUnit();
+        long unitBytes = 0;
+
+        // left over if adding the last unit failed
+        unitWeak.clear();
+
         for (Resource resource : resources) {
 
             // extract dependencies of clazz
             InputStream inputStream = resource.getInputStream();
             try {
-                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-                final MessageDigestCalculatingInputStream calculatingInputStream = new MessageDigestCalculatingInputStream(inputStream, digest);
+                // a template may be replayed with versions later
+                final boolean digesting = versions || pTemplate != null;
+                final MessageDigest digest = digesting ? MessageDigest.getInstance("SHA-256") : null;
 
-                if (versions) {
-                    inputStream = calculatingInputStream;
+                if (digesting) {
+                    inputStream = new MessageDigestCalculatingInputStream(inputStream, digest);
                 }
 
-                final DependenciesClassAdapter v = new DependenciesClassAdapter();
-                new ClassReader(inputStream).accept(v, ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG);
+                // the buffer of the reader may be larger than the class file
+                final CountingInputStream counting = new CountingInputStream(inputStream);
+                inputStream = counting;
 
-                // get or create clazz
-                final String clazzName = resource.name;
-                Clazz clazz = getClazz(clazzName);
-                if (clazz == null) {
-                    clazz = missing.get(clazzName);
-
-                    if (clazz != null) {
-                        // already marked missing
-                        clazz = missing.remove(clazzName);
-                    } else {
-                        clazz = new Clazz(clazzName);
-                    }
-                }
-                final String d = Base64.getEncoder().encodeToString(digest.digest());
-                clazz.addClazzpathUnit(unit, d);
+                final ClassReader reader = new ClassReader(inputStream);
+                final int size = (int) counting.getByteCount();
+                unitBytes += size;
+
+                final Object classEvent = JfrEvents.beginClass();
+                final DependenciesClassAdapter v = adapters.get();
+                reader.accept(visitor(v, pId, resource.name), ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG);
+                JfrEvents.commitClass(classEvent, resource.name, pId, size, v.getDependencyCount());
 
-                /// add to classpath
-                clazzes.put(clazzName, clazz);
+                final String clazzName = resource.name;
+                final String d = digesting ? Base64.getEncoder().encodeToString(digest.digest()) : NO_DIGEST;
+                final long stored = resource.getCompressedSize();
+                final int compressedSize = stored < 0 ? size : (int) stored;
+                final Clazz clazz = define(clazzName, unit, versions ? d : NO_DIGEST, size, compressedSize);
 
                 // add to classpath unit
                 unitClazzes.put(clazzName, clazz);
 
 
-                // iterate through all dependencies
-                final Set<String> depNames = v.getDependencies();
-                for (String depName : depNames) {
-
-                    Clazz dep = getClazz(depName);
-
-                    if (dep == null) {
-                        // there is no such clazz yet
-                        dep = missing.get(depName);
-                    }
-
-                    if (dep == null) {
-                        // it is also not recorded to be missing
-                        dep = new Clazz(depName);
-                        // add as missing
-                        missing.put(depName, dep);
-                    }
+                if (pTemplate != null) {
+                    pTemplate.addClazz(clazzName, d, size, compressedSize);
+                }
 
-                    if (dep != clazz) {
-                        // unit depends on dep
-                        unitDependencies.put(depName, dep);
-                        // clazz depends on dep
-                        clazz.addDependency(dep);
+                // iterate through all dependencies
+                for (int i = 0; i < v.getDependencyCount(); i++) {
+                    depend(clazz, v.getDependency(i), v.getDependencyKinds(i), unitDependencies);
+                    if (pTemplate != null) {
+                        pTemplate.addDependency(v.getDependency(i), v.getDependencyKinds(i));
                     }
                 }
             } catch(java.security.NoSuchAlgorithmException e) {
@@ -234,8 +923,12 @@ public final class Clazzpath {
             }
         }
 
+        linkWeak();
+
         units.add(unit);
 
+        JfrEvents.commitUnit(unitEvent, pId, unitClazzes.size(), unitBytes, unitDependencies.size());
+
         return unit;
     }
 
@@ -244,23 +937,257 @@ public final class Clazzpath {
     }
 
     public Set<Clazz> getClashedClazzes() {
+        return new HashSet<>(clashed);
+    }
+
+    public Set<Clazz> getMissingClazzes() {
+        return new HashSet<>(missing.values());
+    }
+
+    /**
+     * @return the units with clazzes in the given package, the default package being ""
+     */
+    public Set<ClazzpathUnit> getPackageUnits( final String pPackage ) {
+        final Map<ClazzpathUnit, Integer> packageUnits = packages.get(pPackage);
+        return packageUnits == null ? new HashSet<>() : new HashSet<>(packageUnits.keySet());
+    }
+
+    /**
+     * Packages spread across several units, which the module system does not allow.
+     *
+     * @return the units by package, sorted by package name
+     */
+    public Map<String, Set<ClazzpathUnit>> getSplitPackages() {
+        final Map<String, Set<ClazzpathUnit>> split = new TreeMap<>();
+        for (String packageName : splitPackages) {
+            split.put(packageName, new HashSet<>(packages.get(packageName).keySet()));
+        }
+        return split;
+    }
+
+    /**
+     * Module names declared by several units.
+     *
+     * @return the declaring units by module name, sorted by module name
+     */
+    public Map<String, Set<ClazzpathUnit>> getModuleConflicts() {
+        final Map<String, Set<ClazzpathUnit>> conflicts = new TreeMap<>();
+        for (String module : conflictingModules) {
+            conflicts.put(module, new HashSet<>(modules.get(module)));
+        }
+        return conflicts;
+    }
+
+    /**
+     * Impact query: which clazzes break when the given clazzes are removed
+     * or changed.
+     *
+     * @return all clazzes that directly or indirectly depend on one of the given clazzes
+     */
+    public Set<Clazz> getTransitiveReferences( final Collection<Clazz> pClazzes ) {
+        return getTransitiveReferences(pClazzes, Traversal.UNBOUNDED, null);
+    }
+
+    /**
+     * @param pClazzes the clazzes to start from
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @return all clazzes that depend on one of the given clazzes within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final Collection<Clazz> pClazzes, final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter ) {
+        return getTransitiveReferences(pClazzes, pMaxDepth, pUnitFilter, DependencyKind.of(DependencyKind.STRONG));
+    }
+
+    /**
+     * @param pClazzes the clazzes to start from
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @param pKinds only follow references of at least one of these kinds
+     * @return all clazzes that depend on one of the given clazzes within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final Collection<Clazz> pClazzes, final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter, final Set<DependencyKind> pKinds ) {
         final Set<Clazz> all = new HashSet<>();
-        for (Clazz clazz : clazzes.values()) {
-            if (clazz.getClazzpathUnits().size() > 1) {
-                all.add(clazz);
+        Traversal.walk(pClazzes, true, pMaxDepth, Traversal.inUnits(pUnitFilter), DependencyKind.mask(pKinds), all);
+        return all;
+    }
+
+    /**
+     * Explains why a clazz is reachable.
+     *
+     * @return a shortest chain of dependencies from one of the roots to the target,
+     *     both included, or an empty list if the target is not reachable
+     */
+    public List<Clazz> getShortestPath( final Collection<Clazz> pRoots, final Clazz pTarget ) {
+        return getShortestPath(pRoots, pTarget, DependencyKind.of(DependencyKind.STRONG));
+    }
+
+    /**
+     * @param pKinds only follow dependencies of at least one of these kinds
+     */
+    public List<Clazz> getShortestPath( final Collection<Clazz> pRoots, final Clazz pTarget, final Set<DependencyKind> pKinds ) {
+        return new PathFinder(DependencyKind.mask(pKinds)).shortest(pRoots, pTarget);
+    }
+
+    /**
+     * @return up to the given number of loop free chains of dependencies from
+     *     one of the roots to the target, shortest first
+     */
+    public List<List<Clazz>> getShortestPaths( final Collection<Clazz> pRoots, final Clazz pTarget, final int pCount ) {
+        return getShortestPaths(pRoots, pTarget, pCount, DependencyKind.of(DependencyKind.STRONG));
+    }
+
+    /**
+     * @param pKinds only follow dependencies of at least one of these kinds
+     */
+    public List<List<Clazz>> getShortestPaths( final Collection<Clazz> pRoots, final Clazz pTarget, final int pCount, final Set<DependencyKind> pKinds ) {
+        return new PathFinder(DependencyKind.mask(pKinds)).shortest(pRoots, pTarget, pCount);
+    }
+
+    /**
+     * @return whether one of the roots directly or indirectly depends on the target,
+     *     without walking further than needed to tell
+     */
+    public boolean reaches( final Collection<Clazz> pRoots, final Clazz pTarget ) {
+        return new PathFinder(DependencyKind.STRONG).reaches(pRoots, pTarget);
+    }
+
+    /**
+     * @param pCompressed whether to sum up the sizes as stored in the jars
+     * @return the summed up class file sizes of the roots and everything they
+     *     directly or indirectly depend on, missing clazzes counting 0
+     */
+    public long getTransitiveSize( final Collection<Clazz> pRoots, final boolean pCompressed ) {
+        long size = 0;
+        for (Clazz clazz : reachable(pRoots)) {
+            size += pCompressed ? clazz.getCompressedSize() : clazz.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * @param pCompressed whether to sum up the sizes as stored in the jars
+     * @return for every unit the summed up class file sizes of its clazzes
+     *     that are not reachable from the roots
+     */
+    public Map<ClazzpathUnit, Long> getUnusedSizes( final Collection<Clazz> pRoots, final boolean pCompressed ) {
+        final Set<Clazz> used = reachable(pRoots);
+        final Map<ClazzpathUnit, Long> sizes = new HashMap<>();
+        for (ClazzpathUnit unit : units) {
+            long size = 0;
+            for (Clazz clazz : unit.clazzes()) {
+                if (!used.contains(clazz)) {
+                    size += pCompressed ? clazz.getCompressedSize() : clazz.getSize();
+                }
             }
+            sizes.put(unit, size);
         }
+        return sizes;
+    }
+
+    private static Set<Clazz> reachable( final Collection<Clazz> pRoots ) {
+        final Set<Clazz> all = new HashSet<>(pRoots);
+        Traversal.walk(pRoots, false, Traversal.UNBOUNDED, null, DependencyKind.STRONG, all);
         return all;
     }
 
-    public Set<Clazz> getMissingClazzes() {
-        return new HashSet<>(missing.values());
+    /**
+     * @return the dominators of everything reachable from the roots, with the
+     *     retained clazz counts and sizes per clazz and per unit
+     */
+    public DominatorTree getDominatorTree( final Collection<Clazz> pRoots ) {
+        return new DominatorTree(pRoots);
+    }
+
+    /**
+     * Copies the graph into a new clazzpath with every clazz name mapped,
+     * unit by unit through templates. Members are not copied.
+     */
+    Clazzpath rename( final UnaryOperator<String> pNames ) {
+
+        final Clazzpath renamed = new Clazzpath(versions);
+        if (platform != null) {
+            renamed.addPlatformUnit(platform);
+        }
+
+        for (ClazzpathUnit unit : units) {
+            if (unit == platformUnit) {
+                continue;
+            }
+            final UnitTemplate.Builder builder = new UnitTemplate.Builder();
+            for (Clazz clazz : unit.clazzes()) {
+                builder.addClazz(pNames.apply(clazz.getName()), clazz.getDigest(unit), clazz.getSize(), clazz.getCompressedSize());
+                for (Clazz dependency : clazz.getDependencies()) {
+                    builder.addDependency(pNames.apply(dependency.getName()), clazz.getDependencyMask(dependency));
+                }
+                for (Clazz dependency : clazz.getWeakDependencies()) {
+                    builder.addDependency(pNames.apply(dependency.getName()), clazz.getDependencyMask(dependency) & DependencyKind.WEAK);
+                }
+            }
+            for (Map.Entry<String, Set<String>> service : unit.getServices().entrySet()) {
+                for (String provider : service.getValue()) {
+                    builder.addService(pNames.apply(service.getKey()), pNames.apply(provider));
+                }
+            }
+            builder.setModuleName(unit.getModuleName());
+            builder.addResources(unit.getResourceCount(), unit.getResourceSize(), unit.getCompressedResourceSize());
+            renamed.addClazzpathUnit(builder.build(), unit.toString());
+        }
+
+        return renamed;
+    }
+
+    /**
+     * @return a sorted, immutable copy of the current state
+     */
+    public ClazzpathSnapshot getSnapshot() {
+        return new ClazzpathSnapshot(clazzes.values(), missing.values(), getUnits());
+    }
+
+    /**
+     * @return a new query over this clazzpath
+     */
+    public ClazzpathQuery query() {
+        return new ClazzpathQuery(this);
+    }
+
+    // live views without copying, for exporting and querying
+    Collection<Clazz> clazzes() {
+        return clazzes.values();
+    }
+
+    Collection<Clazz> missing() {
+        return missing.values();
+    }
+
+    /**
+     * @return the present clazzes sorted by name, for prefix, package and glob lookups
+     */
+    public NameIndex getNameIndex() {
+        return index;
+    }
+
+    /**
+     * @return the missing clazzes sorted by name, for prefix, package and glob lookups
+     */
+    public NameIndex getMissingNameIndex() {
+        return missingIndex;
     }
 
     public Clazz getClazz( final String pClazzName ) {
         return clazzes.get(pClazzName);
     }
 
+    /**
+     * @return the member level graph
+     * @throws IllegalStateException if the clazzpath was created without member analysis
+     */
+    public MemberGraph getMemberGraph() {
+        if (members == null) {
+            throw new IllegalStateException("member analysis is not enabled");
+        }
+        return members;
+    }
+
     public ClazzpathUnit[] getUnits() {
         return units.toArray(new ClazzpathUnit[units.size()]);
     }
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A composable query over a `Clazzpath`, created by `Clazzpath.query()`.
+ *
+ *     // all classes in com.acme.internal referenced from outside of it
+ *     cp.query()
+ *       .prefix("com.acme.internal.")
+ *       .referencedFrom(c -> !c.getName().startsWith("com.acme.internal."))
+ *       .execute();
+ *
+ *     // missing classes reachable from a unit, not walking into javax
+ *     cp.query()
+ *       .from(unit)
+ *       .dependencies()
+ *       .excludePrefix("javax.")
+ *       .missing()
+ *       .execute();
+ *
+ * Without `dependencies()` or `references()` the query selects from all
+ * clazzes (or the given ones) and a prefix only touches the matching range
+ * of the sorted name index. With a traversal, exclusions, unit and kind
+ * restrictions prune the walk itself while the other filters only apply
+ * to the clazzes that are reported.
+ */
+public final class ClazzpathQuery {
+
+    private enum State { ANY, PRESENT, MISSING, CLASHED, VERSIONS_DIFFER }
+
+    private final Clazzpath clazzpath;
+
+    private Collection<Clazz> seeds;
+    private Boolean reverse;
+    private int depth = Traversal.UNBOUNDED;
+    private int kinds = DependencyKind.STRONG;
+
+    private String prefix;
+    private final List<String> excluded = new ArrayList<>();
+    private Predicate<ClazzpathUnit> unitFilter;
+    private State state = State.ANY;
+    private Predicate<Clazz> where;
+    private Predicate<Clazz> referencedFrom;
+
+    ClazzpathQuery( final Clazzpath pClazzpath ) {
+        clazzpath = pClazzpath;
+    }
+
+    /**
+     * Starts from the clazzes of the given units instead of all clazzes.
+     */
+    public ClazzpathQuery from( final ClazzpathUnit... pUnits ) {
+        final List<Clazz> all = new ArrayList<>();
+        for (ClazzpathUnit unit : pUnits) {
+            all.addAll(unit.clazzes());
+        }
+        seeds = all;
+        return this;
+    }
+
+    /**
+     * Starts from the given clazzes instead of all clazzes.
+     */
+    public ClazzpathQuery from( final Collection<Clazz> pClazzes ) {
+        seeds = pClazzes;
+        return this;
+    }
+
+    public ClazzpathQuery from( final Clazz... pClazzes ) {
+        return from(Arrays.asList(pClazzes));
+    }
+
+    /**
+     * Selects what the starting clazzes directly or indirectly depend on.
+     */
+    public ClazzpathQuery dependencies() {
+        reverse = false;
+        return this;
+    }
+
+    /**
+     * Selects what directly or indirectly depends on the starting clazzes.
+     */
+    public ClazzpathQuery references() {
+        reverse = true;
+        return this;
+    }
+
+    /**
+     * @param pDepth how many edges to follow, 1 being the direct ones only
+     */
+    public ClazzpathQuery depth( final int pDepth ) {
+        depth = pDepth;
+        return this;
+    }
+
+    /**
+     * Only follows edges of at least one of the given kinds, by default
+     * the `DependencyKind.STRONG` ones.
+     */
+    public ClazzpathQuery kinds( final Set<DependencyKind> pKinds ) {
+        kinds = DependencyKind.mask(pKinds);
+        return this;
+    }
+
+    /**
+     * Only reports clazzes whose names start with the prefix.
+     */
+    public ClazzpathQuery prefix( final String pPrefix ) {
+        prefix = pPrefix;
+        return this;
+    }
+
+    /**
+     * Neither reports nor walks through clazzes whose names start with the prefix.
+     */
+    public ClazzpathQuery excludePrefix( final String pPrefix ) {
+        excluded.add(pPrefix);
+        return this;
+    }
+
+    /**
+     * Neither reports nor walks through clazzes outside of the accepted units.
+     * Missing clazzes belong to no unit.
+     */
+    public ClazzpathQuery inUnits( final Predicate<ClazzpathUnit> pUnitFilter ) {
+        unitFilter = pUnitFilter;
+        return this;
+    }
+
+    public ClazzpathQuery present() {
+        state = State.PRESENT;
+        return this;
+    }
+
+    public ClazzpathQuery missing() {
+        state = State.MISSING;
+        return this;
+    }
+
+    /**
+     * Only reports clazzes found in more than one unit.
+     */
+    public ClazzpathQuery clashed() {
+        state = State.CLASHED;
+        return this;
+    }
+
+    /**
+     * Only reports clashed clazzes whose units don't all contain the same
+     * version. Needs a clazzpath that records versions.
+     */
+    public ClazzpathQuery versionsDiffer() {
+        state = State.VERSIONS_DIFFER;
+        return this;
+    }
+
+    public ClazzpathQuery where( final Predicate<Clazz> pPredicate ) {
+        where = where == null ? pPredicate : where.and(pPredicate);
+        return this;
+    }
+
+    /**
+     * Only reports clazzes with at least one direct reference from an accepted clazz.
+     */
+    public ClazzpathQuery referencedFrom( final Predicate<Clazz> pPredicate ) {
+        referencedFrom = pPredicate;
+        return this;
+    }
+
+    public Set<Clazz> execute() {
+        final Set<Clazz> all = new LinkedHashSet<>();
+        forEach(all::add);
+        return all;
+    }
+
+    public int count() {
+        final int[] count = new int[1];
+        forEach(c -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Passes the matching clazzes to the consumer as they are found.
+     */
+    public void forEach( final Consumer<Clazz> pConsumer ) {
+
+        final Predicate<Clazz> prune = prune();
+
+        if (reverse == null) {
+            for (Clazz clazz : candidates()) {
+                if ((prune == null || prune.test(clazz)) && matches(clazz)) {
+                    pConsumer.accept(clazz);
+                }
+            }
+            return;
+        }
+
+        final Iterable<Clazz> start = seeds != null ? seeds : clazzpath.clazzes();
+        final Set<Clazz> reached = new LinkedHashSet<>();
+        Traversal.walk(start, reverse, depth, prune, kinds, reached);
+        for (Clazz clazz : reached) {
+            if (matches(clazz)) {
+                pConsumer.accept(clazz);
+            }
+        }
+    }
+
+    /**
+     * Without a traversal the sorted name indexes narrow down the candidates.
+     */
+    private Iterable<Clazz> candidates() {
+        if (seeds != null) {
+            return seeds;
+        }
+        final String p = prefix == null ? "" : prefix;
+        switch (state) {
+            case MISSING:
+                return clazzpath.getMissingNameIndex().withPrefix(p);
+            case ANY: {
+                final List<Clazz> all = new ArrayList<>(clazzpath.getNameIndex().withPrefix(p));
+                all.addAll(clazzpath.getMissingNameIndex().withPrefix(p));
+                return all;
+            }
+            default:
+                return clazzpath.getNameIndex().withPrefix(p);
+        }
+    }
+
+    private Predicate<Clazz> prune() {
+        final Predicate<Clazz> units = Traversal.inUnits(unitFilter);
+        if (excluded.isEmpty()) {
+            return units;
+        }
+        final Predicate<Clazz> notExcluded = clazz -> {
+            final String name = clazz.getName();
+            for (String e : excluded) {
+                if (name.startsWith(e)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+        return units == null ? notExcluded : notExcluded.and(units);
+    }
+
+    private boolean matches( final Clazz pClazz ) {
+
+        if (prefix != null && !pClazz.getName().startsWith(prefix)) {
+            return false;
+        }
+
+        switch (state) {
+            case PRESENT:
+                if (pClazz.getClazzpathUnits().isEmpty()) {
+                    return false;
+                }
+                break;
+            case MISSING:
+                if (!pClazz.getClazzpathUnits().isEmpty()) {
+                    return false;
+                }
+                break;
+            case CLASHED:
+                if (pClazz.getClazzpathUnits().size() < 2) {
+                    return false;
+                }
+                break;
+            case VERSIONS_DIFFER:
+                if (pClazz.getClazzpathUnits().size() < 2 || pClazz.getVersions().size() < 2) {
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (where != null && !where.test(pClazz)) {
+            return false;
+        }
+
+        if (referencedFrom != null) {
+            for (Clazz reference : pClazz.getReferences()) {
+                if (referencedFrom.test(reference)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        return true;
+    }
+}
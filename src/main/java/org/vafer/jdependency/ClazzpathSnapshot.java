@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An immutable, sorted copy of a `Clazzpath`. Every clazz, including the
+ * missing ones, gets the id of its position in name order, so the same
+ * clazzpath always yields the same ids and the same iteration order.
+ * Dependencies and units are stored as sorted id arrays, which lets two
+ * snapshots be compared with a single linear merge.
+ */
+public final class ClazzpathSnapshot {
+
+    /**
+     * Receives the differences between two snapshots in name order.
+     */
+    public interface DiffListener {
+
+        default void clazzAdded( String pName ) {}
+
+        default void clazzRemoved( String pName ) {}
+
+        default void missingAdded( String pName ) {}
+
+        default void missingRemoved( String pName ) {}
+
+        default void clashAdded( String pName ) {}
+
+        default void clashRemoved( String pName ) {}
+
+        default void dependencyAdded( String pFrom, String pTo ) {}
+
+        default void dependencyRemoved( String pFrom, String pTo ) {}
+    }
+
+    private final String[] names;
+    private final String[] units;
+
+    // dependencies and units per clazz in compressed sparse row layout
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    private final int[] unitOffsets;
+    private final int[] clazzUnits;
+
+    ClazzpathSnapshot( final Collection<Clazz> pClazzes, final Collection<Clazz> pMissing, final ClazzpathUnit[] pUnits ) {
+
+        final Clazz[] clazzes = new Clazz[pClazzes.size() + pMissing.size()];
+        int n = 0;
+        for (Clazz clazz : pClazzes) {
+            clazzes[n++] = clazz;
+        }
+        for (Clazz clazz : pMissing) {
+            clazzes[n++] = clazz;
+        }
+        Arrays.sort(clazzes);
+
+        final TreeSet<String> unitIds = new TreeSet<>();
+        for (ClazzpathUnit unit : pUnits) {
+            unitIds.add(unit.toString());
+        }
+        units = unitIds.toArray(new String[0]);
+
+        names = new String[clazzes.length];
+        dependencyOffsets = new int[clazzes.length + 1];
+        unitOffsets = new int[clazzes.length + 1];
+
+        int edges = 0;
+        int memberships = 0;
+        for (int i = 0; i < clazzes.length; i++) {
+            names[i] = clazzes[i].getName();
+            edges += clazzes[i].getDependencies().size();
+            memberships += clazzes[i].getClazzpathUnits().size();
+        }
+
+        final int[] allDependencies = new int[edges];
+        clazzUnits = new int[memberships];
+
+        int e = 0;
+        int m = 0;
+        for (int i = 0; i < clazzes.length; i++) {
+            dependencyOffsets[i] = e;
+            for (Clazz dependency : clazzes[i].getDependencies()) {
+                // clazzes of removed units are neither present nor missing
+                final int id = Arrays.binarySearch(clazzes, dependency);
+                if (id >= 0) {
+                    allDependencies[e++] = id;
+                }
+            }
+            Arrays.sort(allDependencies, dependencyOffsets[i], e);
+
+            unitOffsets[i] = m;
+            for (ClazzpathUnit unit : clazzes[i].getClazzpathUnits()) {
+                clazzUnits[m++] = Arrays.binarySearch(units, unit.toString());
+            }
+            Arrays.sort(clazzUnits, unitOffsets[i], m);
+        }
+        dependencyOffsets[clazzes.length] = e;
+        dependencies = e == edges ? allDependencies : Arrays.copyOf(allDependencies, e);
+        unitOffsets[clazzes.length] = m;
+    }
+
+    /**
+     * @return the number of clazzes, including the missing ones
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the id of the clazz or a negative value if it is unknown
+     */
+    public int getId( final String pName ) {
+        return Arrays.binarySearch(names, pName);
+    }
+
+    public String getName( final int pId ) {
+        return names[pId];
+    }
+
+    /**
+     * @return the names of all clazzes, including the missing ones, in id order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @return the unit ids in sorted order
+     */
+    public List<String> getUnits() {
+        return Collections.unmodifiableList(Arrays.asList(units));
+    }
+
+    public boolean isMissing( final int pId ) {
+        return unitOffsets[pId] == unitOffsets[pId + 1];
+    }
+
+    public boolean isClashed( final int pId ) {
+        return unitOffsets[pId + 1] - unitOffsets[pId] > 1;
+    }
+
+    /**
+     * @return the ids of the dependencies of the clazz in ascending order
+     */
+    public int[] getDependencies( final int pId ) {
+        return Arrays.copyOfRange(dependencies, dependencyOffsets[pId], dependencyOffsets[pId + 1]);
+    }
+
+    /**
+     * @return the names of the dependencies of the clazz in sorted order
+     */
+    public List<String> getDependencyNames( final int pId ) {
+        final int from = dependencyOffsets[pId];
+        final int to = dependencyOffsets[pId + 1];
+        return new AbstractList<String>() {
+
+            @Override
+            public String get( final int pIndex ) {
+                return names[dependencies[from + pIndex]];
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * @return the ids of the units containing the clazz, see `getUnits()`
+     */
+    public int[] getClazzpathUnits( final int pId ) {
+        return Arrays.copyOfRange(clazzUnits, unitOffsets[pId], unitOffsets[pId + 1]);
+    }
+
+    /**
+     * Streams the differences from this snapshot to the given newer one. Both
+     * snapshots are walked once in name order, nothing is hashed or copied.
+     */
+    public void diff( final ClazzpathSnapshot pNewer, final DiffListener pListener ) {
+
+        final ClazzpathSnapshot a = this;
+        final ClazzpathSnapshot b = pNewer;
+
+        int i = 0;
+        int j = 0;
+        while (i < a.names.length || j < b.names.length) {
+
+            final int c = i == a.names.length ? 1
+                        : j == b.names.length ? -1
+                        : a.names[i].compareTo(b.names[j]);
+
+            if (c < 0) {
+                a.removed(i, pListener);
+                i++;
+            } else if (c > 0) {
+                b.added(j, pListener);
+                j++;
+            } else {
+                changed(a, i, b, j, pListener);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private void removed( final int pId, final DiffListener pListener ) {
+        final String name = names[pId];
+        if (isMissing(pId)) {
+            pListener.missingRemoved(name);
+        } else {
+            pListener.clazzRemoved(name);
+            if (isClashed(pId)) {
+                pListener.clashRemoved(name);
+            }
+        }
+        for (int e = dependencyOffsets[pId]; e < dependencyOffsets[pId + 1]; e++) {
+            pListener.dependencyRemoved(name, names[dependencies[e]]);
+        }
+    }
+
+    private void added( final int pId, final DiffListener pListener ) {
+        final String name = names[pId];
+        if (isMissing(pId)) {
+            pListener.missingAdded(name);
+        } else {
+            pListener.clazzAdded(name);
+            if (isClashed(pId)) {
+                pListener.clashAdded(name);
+            }
+        }
+        for (int e = dependencyOffsets[pId]; e < dependencyOffsets[pId + 1]; e++) {
+            pListener.dependencyAdded(name, names[dependencies[e]]);
+        }
+    }
+
+    private static void changed( final ClazzpathSnapshot a, final int i,
+                                 final ClazzpathSnapshot b, final int j,
+                                 final DiffListener pListener ) {
+
+        final String name = a.names[i];
+
+        final boolean wasMissing = a.isMissing(i);
+        final boolean isMissing = b.isMissing(j);
+        if (wasMissing && !isMissing) {
+            pListener.missingRemoved(name);
+            pListener.clazzAdded(name);
+        } else if (!wasMissing && isMissing) {
+            pListener.clazzRemoved(name);
+            pListener.missingAdded(name);
+        }
+
+        final boolean wasClashed = a.isClashed(i);
+        final boolean isClashed = b.isClashed(j);
+        if (!wasClashed && isClashed) {
+            pListener.clashAdded(name);
+        } else if (wasClashed && !isClashed) {
+            pListener.clashRemoved(name);
+        }
+
+        // ids are assigned in name order, so both dependency lists are sorted by name
+        int x = a.dependencyOffsets[i];
+        int y = b.dependencyOffsets[j];
+        final int xEnd = a.dependencyOffsets[i + 1];
+        final int yEnd = b.dependencyOffsets[j + 1];
+        while (x < xEnd || y < yEnd) {
+            final int c = x == xEnd ? 1
+                        : y == yEnd ? -1
+                        : a.names[a.dependencies[x]].compareTo(b.names[b.dependencies[y]]);
+            if (c < 0) {
+                pListener.dependencyRemoved(name, a.names[a.dependencies[x++]]);
+            } else if (c > 0) {
+                pListener.dependencyAdded(name, b.names[b.dependencies[y++]]);
+            } else {
+                x++;
+                y++;
+            }
+        }
+    }
+}
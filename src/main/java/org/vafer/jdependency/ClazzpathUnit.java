@@ -15,9 +15,14 @@
  */
 package org.vafer.jdependency;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
 
 public final class ClazzpathUnit {
 
@@ -25,6 +30,20 @@ public final class ClazzpathUnit {
 
     private final Map<String, Clazz> clazzes;
     private final Map<String, Clazz> dependencies;
+    private NameIndex index;
+
+    // recorded while reading, the class files and all other entries
+    private long clazzSize;
+    private long compressedClazzSize;
+    private int resourceCount;
+    private long resourceSize;
+    private long compressedResourceSize;
+
+    // from the service files
+    private final Map<String, Set<String>> services = new TreeMap<>();
+
+    // from the module descriptor or the manifest
+    private String moduleName;
 
     ClazzpathUnit( final String pId, final Map<String, Clazz> pClazzes, final Map<String, Clazz> pDependencies ) {
         id = pId;
@@ -36,6 +55,94 @@ public final class ClazzpathUnit {
         return new HashSet<>(clazzes.values());
     }
 
+    Collection<Clazz> clazzes() {
+        return clazzes.values();
+    }
+
+    /**
+     * @return the clazzes of this unit sorted by name, built on first use
+     */
+    public NameIndex getNameIndex() {
+        if (index == null) {
+            index = new NameIndex(clazzes.values());
+        }
+        return index;
+    }
+
+    void addClazzSize( final int pSize, final int pCompressedSize ) {
+        clazzSize += pSize;
+        compressedClazzSize += pCompressedSize;
+    }
+
+    void addResources( final int pCount, final long pSize, final long pCompressedSize ) {
+        resourceCount += pCount;
+        resourceSize += pSize;
+        compressedResourceSize += pCompressedSize;
+    }
+
+    void addService( final String pService, final String pProvider ) {
+        services.computeIfAbsent(pService, k -> new TreeSet<>()).add(pProvider);
+    }
+
+    /**
+     * @return the providers listed in the `META-INF/services` files of this unit, by service
+     */
+    public Map<String, Set<String>> getServices() {
+        return Collections.unmodifiableMap(services);
+    }
+
+    void setModuleName( final String pModuleName ) {
+        moduleName = pModuleName;
+    }
+
+    /**
+     * @return the name declared by `module-info.class` or as `Automatic-Module-Name`, or null
+     */
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * @return the summed up sizes of the class files of this unit
+     */
+    public long getClazzSize() {
+        return clazzSize;
+    }
+
+    /**
+     * @return the summed up sizes of the class files as stored in the jar
+     */
+    public long getCompressedClazzSize() {
+        return compressedClazzSize;
+    }
+
+    /**
+     * @return the number of entries besides the class files, without
+     *     directories and the manifest of a jar
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    public long getResourceSize() {
+        return resourceSize;
+    }
+
+    public long getCompressedResourceSize() {
+        return compressedResourceSize;
+    }
+
+    /**
+     * @return the size of the class files and resources together
+     */
+    public long getSize() {
+        return clazzSize + resourceSize;
+    }
+
+    public long getCompressedSize() {
+        return compressedClazzSize + compressedResourceSize;
+    }
+
     public Clazz getClazz( final String pClazzName ) {
         return clazzes.get(pClazzName);
     }
@@ -45,10 +152,44 @@ public final class ClazzpathUnit {
     }
 
     public Set<Clazz> getTransitiveDependencies() {
+        return getTransitiveDependencies(DependencyKind.of(DependencyKind.STRONG));
+    }
+
+    /**
+     * @param pKinds only follow dependencies of at least one of these kinds
+     * @return all clazzes the clazzes of this unit directly or indirectly depend on
+     */
+    public Set<Clazz> getTransitiveDependencies( final Set<DependencyKind> pKinds ) {
         final Set<Clazz> all = new HashSet<>();
-        for (Clazz clazz : clazzes.values()) {
-            clazz.findTransitiveDependencies(all);
-        }
+        Traversal.walk(clazzes.values(), false, Traversal.UNBOUNDED, null, DependencyKind.mask(pKinds), all);
+        return all;
+    }
+
+    /**
+     * @return all clazzes that directly or indirectly depend on a clazz of this unit
+     */
+    public Set<Clazz> getTransitiveReferences() {
+        return getTransitiveReferences(Traversal.UNBOUNDED, null);
+    }
+
+    /**
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @return all clazzes that depend on a clazz of this unit within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter ) {
+        return getTransitiveReferences(pMaxDepth, pUnitFilter, DependencyKind.of(DependencyKind.STRONG));
+    }
+
+    /**
+     * @param pMaxDepth how many references to follow, 1 being the direct references only
+     * @param pUnitFilter only report and follow clazzes from accepted units, or null for all
+     * @param pKinds only follow references of at least one of these kinds
+     * @return all clazzes that depend on a clazz of this unit within the given depth
+     */
+    public Set<Clazz> getTransitiveReferences( final int pMaxDepth, final Predicate<ClazzpathUnit> pUnitFilter, final Set<DependencyKind> pKinds ) {
+        final Set<Clazz> all = new HashSet<>();
+        Traversal.walk(clazzes.values(), true, pMaxDepth, Traversal.inUnits(pUnitFilter), DependencyKind.mask(pKinds), all);
         return all;
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Where in the bytecode a dependency comes from. A dependency can be of
+ * several kinds at once, the graph stores them as a bitmask per edge.
+ */
+public enum DependencyKind {
+
+    /** super class and implemented interfaces */
+    INHERITANCE,
+
+    /** field and record component types */
+    FIELD,
+
+    /** parameter and return types and declared exceptions of methods */
+    METHOD,
+
+    /** instructions, stack map frames, exception handlers and constants of method bodies */
+    CODE,
+
+    /** annotations and their values */
+    ANNOTATION,
+
+    /** generic signatures and debug information, only needed at compile time */
+    SIGNATURE,
+
+    /** inner class, outer class, nest and permitted subclass attributes */
+    NESTING,
+
+    /** from a service to its providers listed in `META-INF/services`, weak */
+    SERVICE,
+
+    /** string constants that name a clazz, like for `Class.forName`, weak */
+    REFLECTION;
+
+    /** mask of all kinds */
+    public static final int ALL = (1 << values().length) - 1;
+
+    /**
+     * Mask of the kinds not referenced by the bytecode itself. They only
+     * link clazzes that are there and never make a clazz missing.
+     */
+    public static final int WEAK = SERVICE.mask() | REFLECTION.mask();
+
+    /** mask of the kinds referenced by the bytecode, followed by default */
+    public static final int STRONG = ALL & ~WEAK;
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    public boolean isWeak() {
+        return (WEAK & mask()) != 0;
+    }
+
+    public static int mask( final Set<DependencyKind> pKinds ) {
+        int mask = 0;
+        for (DependencyKind kind : pKinds) {
+            mask |= kind.mask();
+        }
+        return mask;
+    }
+
+    public static Set<DependencyKind> of( final int pMask ) {
+        final Set<DependencyKind> kinds = EnumSet.noneOf(DependencyKind.class);
+        for (DependencyKind kind : values()) {
+            if ((pMask & kind.mask()) != 0) {
+                kinds.add(kind);
+            }
+        }
+        return kinds;
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dominators of the clazzes reachable from a set of roots, like in a
+ * heap dump: a clazz retains everything that is only reachable through
+ * it, which is what would no longer be needed if nothing referenced it
+ * anymore. Retained counts and class file sizes are summed up over the
+ * dominator tree.
+ *
+ * Units get their own tree, in which every dependency on a clazz of
+ * another unit passes through a node standing for that unit. A unit then
+ * retains what is only reachable by referencing it from the outside.
+ *
+ * Both trees are computed with the Lengauer-Tarjan algorithm in
+ * O(m log n), without recursion.
+ */
+public final class DominatorTree {
+
+    private final Map<Clazz, Integer> ids = new HashMap<>();
+    private final Clazz[] clazzes;
+
+    // clazz tree, node 0 is the virtual root above all roots
+    private final int[] dominators;
+    private final int[] retainedCounts;
+    private final long[] retainedSizes;
+
+    // unit tree, nodes past the clazzes stand for the units
+    private final Map<ClazzpathUnit, Integer> unitIds = new HashMap<>();
+    private final int[] unitRetainedCounts;
+    private final long[] unitRetainedSizes;
+
+    DominatorTree( final Collection<Clazz> pRoots ) {
+
+        // number everything reachable, ids start at 1
+        final List<Clazz> all = new ArrayList<>();
+        all.add(null);
+        final ArrayDeque<Clazz> queue = new ArrayDeque<>();
+        for (Clazz root : pRoots) {
+            if (!ids.containsKey(root)) {
+                ids.put(root, all.size());
+                all.add(root);
+                queue.add(root);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (Clazz dependency : queue.poll().getDependencies()) {
+                if (!ids.containsKey(dependency)) {
+                    ids.put(dependency, all.size());
+                    all.add(dependency);
+                    queue.add(dependency);
+                }
+            }
+        }
+        clazzes = all.toArray(new Clazz[0]);
+        final int n = clazzes.length;
+
+        // plain graph
+        final Graph graph = new Graph(n);
+        for (Clazz root : pRoots) {
+            graph.add(0, ids.get(root));
+        }
+        for (int v = 1; v < n; v++) {
+            for (Clazz dependency : clazzes[v].getDependencies()) {
+                graph.add(v, ids.get(dependency));
+            }
+        }
+        final int[] preorder = new int[n];
+        dominators = graph.dominators(preorder);
+        retainedCounts = new int[n];
+        retainedSizes = new long[n];
+        retain(preorder, dominators, retainedCounts, retainedSizes);
+
+        // the same with a unit node on every edge into another unit
+        for (int v = 1; v < n; v++) {
+            for (ClazzpathUnit unit : clazzes[v].getClazzpathUnits()) {
+                if (!unitIds.containsKey(unit)) {
+                    unitIds.put(unit, n + unitIds.size());
+                }
+            }
+        }
+        final int m = n + unitIds.size();
+        final Graph unitGraph = new Graph(m);
+        final Set<Long> entries = new HashSet<>();
+        for (int v = 0; v < n; v++) {
+            // the roots are referenced from outside of all units
+            final Set<ClazzpathUnit> from = v == 0 ? Collections.emptySet() : clazzes[v].getClazzpathUnits();
+            for (Clazz dependency : v == 0 ? pRoots : clazzes[v].getDependencies()) {
+                final int w = ids.get(dependency);
+                final Set<ClazzpathUnit> to = dependency.getClazzpathUnits();
+                if (to.isEmpty() || !Collections.disjoint(from, to)) {
+                    unitGraph.add(v, w);
+                    continue;
+                }
+                for (ClazzpathUnit unit : to) {
+                    final int u = unitIds.get(unit);
+                    unitGraph.add(v, u);
+                    if (entries.add(((long) u << 32) | w)) {
+                        unitGraph.add(u, w);
+                    }
+                }
+            }
+        }
+        final int[] unitPreorder = new int[m];
+        final int[] unitDominators = unitGraph.dominators(unitPreorder);
+        unitRetainedCounts = new int[m];
+        unitRetainedSizes = new long[m];
+        retain(unitPreorder, unitDominators, unitRetainedCounts, unitRetainedSizes);
+    }
+
+    /**
+     * Sums up over the tree from the leaves, a dominator always comes
+     * before the clazzes it dominates in preorder.
+     */
+    private void retain( final int[] pPreorder, final int[] pDominators, final int[] pCounts, final long[] pSizes ) {
+        for (int i = pPreorder.length - 1; i > 0; i--) {
+            final int v = pPreorder[i];
+            if (v < 0) {
+                continue;
+            }
+            if (v < clazzes.length) {
+                pCounts[v]++;
+                pSizes[v] += clazzes[v].getSize();
+            }
+            final int d = pDominators[v];
+            pCounts[d] += pCounts[v];
+            pSizes[d] += pSizes[v];
+        }
+    }
+
+    /**
+     * @return the number of reachable clazzes, including the missing ones
+     */
+    public int size() {
+        return clazzes.length - 1;
+    }
+
+    public boolean isReachable( final Clazz pClazz ) {
+        return ids.containsKey(pClazz);
+    }
+
+    /**
+     * @return the nearest clazz every path from the roots to the given one
+     *     passes through, or null if there is none but the roots
+     */
+    public Clazz getDominator( final Clazz pClazz ) {
+        final Integer id = ids.get(pClazz);
+        if (id == null) {
+            return null;
+        }
+        final int d = dominators[id];
+        return d == 0 ? null : clazzes[d];
+    }
+
+    /**
+     * @return the clazz itself and all clazzes that are only reachable through it
+     */
+    public Set<Clazz> getRetained( final Clazz pClazz ) {
+        final Set<Clazz> retained = new HashSet<>();
+        final Integer id = ids.get(pClazz);
+        if (id == null) {
+            return retained;
+        }
+        for (int v = 1; v < clazzes.length; v++) {
+            for (int d = v; d > 0; d = dominators[d]) {
+                if (d == id) {
+                    retained.add(clazzes[v]);
+                    break;
+                }
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * @return the number of clazzes that are only reachable through the given one, itself included
+     */
+    public int getRetainedCount( final Clazz pClazz ) {
+        final Integer id = ids.get(pClazz);
+        return id == null ? 0 : retainedCounts[id];
+    }
+
+    /**
+     * @return the summed up class file sizes of the retained clazzes
+     */
+    public long getRetainedSize( final Clazz pClazz ) {
+        final Integer id = ids.get(pClazz);
+        return id == null ? 0 : retainedSizes[id];
+    }
+
+    /**
+     * @return the number of clazzes that are only reachable by referencing the unit from other units
+     */
+    public int getRetainedCount( final ClazzpathUnit pUnit ) {
+        final Integer id = unitIds.get(pUnit);
+        return id == null ? 0 : unitRetainedCounts[id];
+    }
+
+    /**
+     * @return the summed up class file sizes of the clazzes retained by the unit
+     */
+    public long getRetainedSize( final ClazzpathUnit pUnit ) {
+        final Integer id = unitIds.get(pUnit);
+        return id == null ? 0 : unitRetainedSizes[id];
+    }
+
+    /**
+     * A graph in adjacency arrays, built by adding edges.
+     */
+    private static final class Graph {
+
+        private final int n;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int edges;
+
+        Graph( final int pNodes ) {
+            n = pNodes;
+        }
+
+        void add( final int pFrom, final int pTo ) {
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+            }
+            from[edges] = pFrom;
+            to[edges] = pTo;
+            edges++;
+        }
+
+        private static int[] offsets( final int pNodes, final int[] pKeys, final int pEdges ) {
+            final int[] offsets = new int[pNodes + 1];
+            for (int e = 0; e < pEdges; e++) {
+                offsets[pKeys[e] + 1]++;
+            }
+            for (int v = 0; v < pNodes; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            return offsets;
+        }
+
+        private static int[] targets( final int[] pOffsets, final int[] pKeys, final int[] pValues, final int pEdges ) {
+            final int[] targets = new int[pEdges];
+            final int[] next = Arrays.copyOf(pOffsets, pOffsets.length - 1);
+            for (int e = 0; e < pEdges; e++) {
+                targets[next[pKeys[e]]++] = pValues[e];
+            }
+            return targets;
+        }
+
+        /**
+         * Lengauer-Tarjan with path compression, from node 0.
+         *
+         * @param pPreorder receives the nodes in depth first preorder, -1 past the reachable ones
+         * @return the immediate dominator of every node, -1 for unreachable ones and 0 itself
+         */
+        int[] dominators( final int[] pPreorder ) {
+
+            final int[] succOffsets = offsets(n, from, edges);
+            final int[] succ = targets(succOffsets, from, to, edges);
+            final int[] predOffsets = offsets(n, to, edges);
+            final int[] pred = targets(predOffsets, to, from, edges);
+
+            final int[] semi = new int[n];
+            final int[] parent = new int[n];
+            final int[] ancestor = new int[n];
+            final int[] label = new int[n];
+            final int[] idom = new int[n];
+            final int[] bucketHead = new int[n];
+            final int[] bucketNext = new int[n];
+            Arrays.fill(semi, -1);
+            Arrays.fill(ancestor, -1);
+            Arrays.fill(idom, -1);
+            Arrays.fill(bucketHead, -1);
+            Arrays.fill(pPreorder, -1);
+
+            // iterative depth first numbering
+            int count = 0;
+            final int[] stack = new int[n];
+            final int[] edge = new int[n];
+            int top = 0;
+            stack[0] = 0;
+            edge[0] = succOffsets[0];
+            semi[0] = count;
+            pPreorder[count++] = 0;
+            label[0] = 0;
+            while (top >= 0) {
+                final int v = stack[top];
+                if (edge[top] < succOffsets[v + 1]) {
+                    final int w = succ[edge[top]++];
+                    if (semi[w] < 0) {
+                        parent[w] = v;
+                        semi[w] = count;
+                        pPreorder[count++] = w;
+                        label[w] = w;
+                        top++;
+                        stack[top] = w;
+                        edge[top] = succOffsets[w];
+                    }
+                } else {
+                    top--;
+                }
+            }
+
+            final int[] path = new int[n];
+            for (int i = count - 1; i > 0; i--) {
+                final int w = pPreorder[i];
+
+                for (int e = predOffsets[w]; e < predOffsets[w + 1]; e++) {
+                    final int v = pred[e];
+                    if (semi[v] < 0) {
+                        // not reachable
+                        continue;
+                    }
+                    final int u = eval(v, ancestor, label, semi, path);
+                    if (semi[u] < semi[w]) {
+                        semi[w] = semi[u];
+                    }
+                }
+
+                final int s = pPreorder[semi[w]];
+                bucketNext[w] = bucketHead[s];
+                bucketHead[s] = w;
+
+                final int p = parent[w];
+                ancestor[w] = p;
+
+                for (int v = bucketHead[p]; v >= 0; v = bucketNext[v]) {
+                    final int u = eval(v, ancestor, label, semi, path);
+                    idom[v] = semi[u] < semi[v] ? u : p;
+                }
+                bucketHead[p] = -1;
+            }
+
+            for (int i = 1; i < count; i++) {
+                final int w = pPreorder[i];
+                if (idom[w] != pPreorder[semi[w]]) {
+                    idom[w] = idom[idom[w]];
+                }
+            }
+            idom[0] = 0;
+
+            return idom;
+        }
+
+        private static int eval( final int pNode, final int[] ancestor, final int[] label, final int[] semi, final int[] path ) {
+            if (ancestor[pNode] < 0) {
+                return pNode;
+            }
+            // compress the ancestor chain, the nodes nearest to the forest root first
+            int depth = 0;
+            for (int v = pNode; ancestor[ancestor[v]] >= 0; v = ancestor[v]) {
+                path[depth++] = v;
+            }
+            while (depth > 0) {
+                final int v = path[--depth];
+                final int a = ancestor[v];
+                if (semi[label[a]] < semi[label[v]]) {
+                    label[v] = label[a];
+                }
+                ancestor[v] = ancestor[a];
+            }
+            return label[pNode];
+        }
+    }
+}
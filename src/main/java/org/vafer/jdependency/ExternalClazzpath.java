@@ -0,0 +1,279 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.objectweb.asm.ClassReader;
+
+import org.vafer.jdependency.asm.DependenciesClassAdapter;
+import org.vafer.jdependency.utils.ReadAhead;
+import org.vafer.jdependency.utils.RecordStore;
+
+/**
+ * A clazzpath for classpaths too large for the heap. Instead of a graph
+ * of `Clazz` objects it keeps the clazz names and their edges in sorted
+ * segment files inside the given directory. A bounded write buffer and
+ * the sparse segment indexes stay on heap, the indexes holding one key
+ * per 128 records, so heap use grows with the classpath but far slower
+ * than for `Clazzpath`. The queries stream over or probe the segments,
+ * so they are slower than the ones of `Clazzpath` but work for any size.
+ * Units can't be removed again.
+ */
+public final class ExternalClazzpath implements Closeable {
+
+    private static final int BUFFER = 1 << 18;
+
+    private static final byte DEFINED = 0;    // clazz -> unit
+    private static final byte DEPENDS = 1;    // clazz -> dependency
+    private static final byte REFERENCED = 2; // clazz -> referencing clazz
+
+    private final RecordStore store;
+    private final Set<String> units = new LinkedHashSet<>();
+    private final DependenciesClassAdapter adapter = new DependenciesClassAdapter();
+
+    public ExternalClazzpath( final Path pDirectory ) throws IOException {
+        this(pDirectory, BUFFER);
+    }
+
+    /**
+     * @param pDirectory where to keep the segment files
+     * @param pBufferSize how many records to collect on heap before writing a segment
+     */
+    public ExternalClazzpath( final Path pDirectory, final int pBufferSize ) throws IOException {
+        store = new RecordStore(pDirectory, pBufferSize);
+    }
+
+    public void addClazzpathUnit( final File pFile ) throws IOException {
+        addClazzpathUnit(pFile.toPath());
+    }
+
+    public void addClazzpathUnit( final File pFile, final String pId ) throws IOException {
+        addClazzpathUnit(pFile.toPath(), pId);
+    }
+
+    public void addClazzpathUnit( final Path pPath ) throws IOException {
+        addClazzpathUnit(pPath, pPath.toString());
+    }
+
+    public void addClazzpathUnit( final Path pPath, final String pId ) throws IOException {
+
+        final Path path = pPath.toAbsolutePath();
+
+        if (Files.isRegularFile(path)) {
+
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                addClazzpathUnit(inputStream, pId);
+            }
+
+        } else if (Files.isDirectory(path)) {
+
+            final UnitDirectory directory = new UnitDirectory(path);
+            try (ReadAhead<Path> reads = directory.readClazzFiles()) {
+                while (reads.hasNext()) {
+                    final ReadAhead.Read<Path> read = reads.next();
+                    add(Clazzpath.toClazzName(directory.getName(read.getSource())), new ClassReader(read.getBytes()), pId);
+                }
+            }
+
+        } else {
+            throw new IllegalArgumentException("neither file nor directory");
+        }
+
+        units.add(pId);
+    }
+
+    public void addClazzpathUnit( final InputStream pInputStream, final String pId ) throws IOException {
+
+        try (JarInputStream inputStream = new JarInputStream(pInputStream)) {
+            JarEntry entry;
+            while ((entry = inputStream.getNextJarEntry()) != null) {
+                if (Clazzpath.isValidResourceName(entry.getName())) {
+                    add(Clazzpath.toClazzName(entry.getName()), new ClassReader(inputStream), pId);
+                }
+            }
+        }
+
+        units.add(pId);
+    }
+
+    private void add( final String pClazzName, final ClassReader pReader, final String pId ) throws IOException {
+
+        pReader.accept(adapter, ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG);
+
+        store.add(pClazzName, DEFINED, pId);
+
+        for (int i = 0; i < adapter.getDependencyCount(); i++) {
+            if ((adapter.getDependencyKinds(i) & ~DependencyKind.WEAK) == 0) {
+                // names guessed from string constants are not kept
+                continue;
+            }
+            final String dependency = adapter.getDependency(i);
+            if (!dependency.equals(pClazzName)) {
+                store.add(pClazzName, DEPENDS, dependency);
+                store.add(dependency, REFERENCED, pClazzName);
+            }
+        }
+    }
+
+    public Set<String> getUnits() {
+        return new LinkedHashSet<>(units);
+    }
+
+    /**
+     * @return the bytes used by the segment files
+     */
+    public long getDiskSize() {
+        return store.size();
+    }
+
+    /**
+     * @return the ids of the units containing the clazz, empty if there is none
+     */
+    public Set<String> getClazzpathUnits( final String pClazzName ) throws IOException {
+        final Set<String> all = new LinkedHashSet<>();
+        store.lookup(pClazzName, DEFINED, all::add);
+        return all;
+    }
+
+    public Set<String> getDependencies( final String pClazzName ) throws IOException {
+        final Set<String> all = new HashSet<>();
+        store.lookup(pClazzName, DEPENDS, all::add);
+        return all;
+    }
+
+    public Set<String> getReferences( final String pClazzName ) throws IOException {
+        final Set<String> all = new HashSet<>();
+        store.lookup(pClazzName, REFERENCED, all::add);
+        return all;
+    }
+
+    public Set<String> getTransitiveDependencies( final String pClazzName ) throws IOException {
+        return walk(pClazzName, DEPENDS);
+    }
+
+    public Set<String> getTransitiveReferences( final String pClazzName ) throws IOException {
+        return walk(pClazzName, REFERENCED);
+    }
+
+    private Set<String> walk( final String pClazzName, final byte pType ) throws IOException {
+        final Set<String> all = new HashSet<>();
+        final ArrayDeque<String> queue = new ArrayDeque<>();
+        queue.add(pClazzName);
+        while (!queue.isEmpty()) {
+            store.lookup(queue.poll(), pType, name -> {
+                if (all.add(name)) {
+                    queue.add(name);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Streams the names of all clazzes in sorted order.
+     */
+    public void forEachClazz( final Consumer<String> pConsumer ) throws IOException {
+        scan((name, units, referenced) -> {
+            if (!units.isEmpty()) {
+                pConsumer.accept(name);
+            }
+        });
+    }
+
+    /**
+     * Streams the names of all clazzes that are referenced but not found
+     * in any unit, in sorted order.
+     */
+    public void forEachMissingClazz( final Consumer<String> pConsumer ) throws IOException {
+        scan((name, units, referenced) -> {
+            if (units.isEmpty() && referenced) {
+                pConsumer.accept(name);
+            }
+        });
+    }
+
+    /**
+     * Streams the names of all clazzes found in more than one unit together
+     * with the ids of those units, in sorted order.
+     */
+    public void forEachClashedClazz( final BiConsumer<String, Set<String>> pConsumer ) throws IOException {
+        scan((name, units, referenced) -> {
+            if (units.size() > 1) {
+                pConsumer.accept(name, units);
+            }
+        });
+    }
+
+    private interface Group {
+        void accept( String pName, Set<String> pUnits, boolean pReferenced );
+    }
+
+    /**
+     * Walks all records once and hands out one group per clazz name.
+     */
+    private void scan( final Group pGroup ) throws IOException {
+
+        final Iterator<RecordStore.Record> records = store.scan();
+
+        String name = null;
+        Set<String> units = new LinkedHashSet<>();
+        boolean referenced = false;
+
+        while (records.hasNext()) {
+            final RecordStore.Record record = records.next();
+            if (!record.key.equals(name)) {
+                if (name != null) {
+                    pGroup.accept(name, units, referenced);
+                    units = new LinkedHashSet<>();
+                    referenced = false;
+                }
+                name = record.key;
+            }
+            if (record.type == DEFINED) {
+                units.add(record.value);
+            } else if (record.type == REFERENCED) {
+                referenced = true;
+            }
+        }
+
+        if (name != null) {
+            pGroup.accept(name, units, referenced);
+        }
+    }
+
+    /**
+     * Deletes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.vafer.jdependency.utils.TextOutput;
+
+/**
+ * Writes the dependency graph of a `Clazzpath` to a stream as DOT,
+ * GraphML, JSON Lines or a CSV edge list. On the class level nodes and
+ * edges are written straight from the graph while walking it. On the
+ * package and unit level edges are folded into one edge per pair of
+ * packages or units, carrying the union of the kinds and the number of
+ * clazz level edges as weight.
+ */
+public final class GraphExporter {
+
+    public enum Format { DOT, GRAPHML, JSONL, CSV }
+
+    public enum Level { CLASS, PACKAGE, UNIT }
+
+    private static final DependencyKind[] KINDS = DependencyKind.values();
+
+    private final Format format;
+    private final Level level;
+
+    public GraphExporter( final Format pFormat, final Level pLevel ) {
+        format = pFormat;
+        level = pLevel;
+    }
+
+    /**
+     * Writes the graph. The stream is flushed but not closed.
+     */
+    public void export( final Clazzpath pClazzpath, final OutputStream pOut ) throws IOException {
+
+        final TextOutput out = new TextOutput(pOut);
+
+        begin(out);
+
+        if (level == Level.CLASS) {
+
+            final Set<Clazz> nodes = new HashSet<>();
+            for (Clazz clazz : pClazzpath.clazzes()) {
+                node(out, clazz.getName(), false);
+                nodes.add(clazz);
+            }
+            for (Clazz clazz : pClazzpath.missing()) {
+                node(out, clazz.getName(), true);
+                nodes.add(clazz);
+            }
+            // clazzes left behind by removed units are neither, but still depended on
+            for (Clazz clazz : pClazzpath.clazzes()) {
+                for (Clazz dependency : clazz.getDependencies()) {
+                    if (nodes.add(dependency)) {
+                        node(out, dependency.getName(), true);
+                    }
+                }
+            }
+            for (Clazz clazz : pClazzpath.clazzes()) {
+                for (Clazz dependency : clazz.getDependencies()) {
+                    edge(out, clazz.getName(), dependency.getName(), clazz.getDependencyMask(dependency), 1);
+                }
+            }
+
+        } else {
+
+            final Aggregate aggregate = new Aggregate();
+            for (Clazz clazz : pClazzpath.clazzes()) {
+                aggregate.add(clazz);
+            }
+            if (level == Level.PACKAGE) {
+                for (Clazz clazz : pClazzpath.missing()) {
+                    aggregate.add(clazz);
+                }
+            }
+            aggregate.write(out);
+        }
+
+        end(out);
+
+        out.flush();
+    }
+
+    /**
+     * Folds clazzes into packages or units. Only the aggregated nodes and
+     * edges are kept, keyed by a pair of node ids packed into a long.
+     */
+    private final class Aggregate {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Boolean> missing = new ArrayList<>();
+        private final Map<Long, int[]> edges = new HashMap<>();
+
+        private int id( final String pName, final boolean pMissing ) {
+            Integer id = ids.get(pName);
+            if (id == null) {
+                id = names.size();
+                ids.put(pName, id);
+                names.add(pName);
+                missing.add(pMissing);
+            } else if (!pMissing && missing.get(id)) {
+                missing.set(id, false);
+            }
+            return id;
+        }
+
+        void add( final Clazz pClazz ) {
+            if (level == Level.PACKAGE) {
+                final boolean isMissing = pClazz.getClazzpathUnits().isEmpty();
+                final int from = id(packageName(pClazz), isMissing);
+                for (Clazz dependency : pClazz.getDependencies()) {
+                    final int to = id(packageName(dependency), dependency.getClazzpathUnits().isEmpty());
+                    if (from != to) {
+                        fold(from, to, pClazz.getDependencyMask(dependency));
+                    }
+                }
+            } else {
+                for (ClazzpathUnit unit : pClazz.getClazzpathUnits()) {
+                    final int from = id(unit.toString(), false);
+                    for (Clazz dependency : pClazz.getDependencies()) {
+                        // dependencies on missing clazzes have no unit to point to
+                        for (ClazzpathUnit dependencyUnit : dependency.getClazzpathUnits()) {
+                            final int to = id(dependencyUnit.toString(), false);
+                            if (from != to) {
+                                fold(from, to, pClazz.getDependencyMask(dependency));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private void fold( final int pFrom, final int pTo, final int pKinds ) {
+            final int[] edge = edges.computeIfAbsent(((long) pFrom << 32) | pTo, k -> new int[2]);
+            edge[0] |= pKinds;
+            edge[1]++;
+        }
+
+        void write( final TextOutput pOut ) throws IOException {
+            for (int i = 0; i < names.size(); i++) {
+                node(pOut, names.get(i), missing.get(i));
+            }
+            for (Map.Entry<Long, int[]> e : edges.entrySet()) {
+                final long key = e.getKey();
+                edge(pOut, names.get((int) (key >>> 32)), names.get((int) key), e.getValue()[0], e.getValue()[1]);
+            }
+        }
+    }
+
+    private static String packageName( final Clazz pClazz ) {
+        final String name = pClazz.getName();
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    private void begin( final TextOutput pOut ) throws IOException {
+        switch (format) {
+            case DOT:
+                pOut.append("digraph clazzpath {\n");
+                break;
+            case GRAPHML:
+                pOut.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                    .append("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n")
+                    .append("  <key id=\"missing\" for=\"node\" attr.name=\"missing\" attr.type=\"boolean\"/>\n")
+                    .append("  <key id=\"kinds\" for=\"edge\" attr.name=\"kinds\" attr.type=\"string\"/>\n")
+                    .append("  <key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"int\"/>\n")
+                    .append("  <graph id=\"clazzpath\" edgedefault=\"directed\">\n");
+                break;
+            case CSV:
+                pOut.append("source,target,kinds,weight\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void end( final TextOutput pOut ) throws IOException {
+        switch (format) {
+            case DOT:
+                pOut.append("}\n");
+                break;
+            case GRAPHML:
+                pOut.append("  </graph>\n</graphml>\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void node( final TextOutput pOut, final String pName, final boolean pMissing ) throws IOException {
+        switch (format) {
+            case DOT:
+                pOut.append("  \"").append(pName, TextOutput.DOT).append('"');
+                if (pMissing) {
+                    pOut.append(" [missing=true, style=dashed]");
+                }
+                pOut.append(";\n");
+                break;
+            case GRAPHML:
+                pOut.append("    <node id=\"").append(pName, TextOutput.XML).append("\">")
+                    .append("<data key=\"missing\">").append(pMissing ? "true" : "false").append("</data></node>\n");
+                break;
+            case JSONL:
+                pOut.append("{\"type\":\"node\",\"id\":\"").append(pName, TextOutput.JSON)
+                    .append("\",\"missing\":").append(pMissing ? "true" : "false").append("}\n");
+                break;
+            default:
+                // the edge list has no nodes
+                break;
+        }
+    }
+
+    private void edge( final TextOutput pOut, final String pFrom, final String pTo, final int pKinds, final int pWeight ) throws IOException {
+        switch (format) {
+            case DOT:
+                pOut.append("  \"").append(pFrom, TextOutput.DOT).append("\" -> \"").append(pTo, TextOutput.DOT)
+                    .append("\" [kinds=\"");
+                kinds(pOut, pKinds, ',');
+                pOut.append("\", weight=").append(pWeight).append("];\n");
+                break;
+            case GRAPHML:
+                pOut.append("    <edge source=\"").append(pFrom, TextOutput.XML).append("\" target=\"").append(pTo, TextOutput.XML)
+                    .append("\"><data key=\"kinds\">");
+                kinds(pOut, pKinds, ',');
+                pOut.append("</data><data key=\"weight\">").append(pWeight).append("</data></edge>\n");
+                break;
+            case JSONL:
+                pOut.append("{\"type\":\"edge\",\"source\":\"").append(pFrom, TextOutput.JSON)
+                    .append("\",\"target\":\"").append(pTo, TextOutput.JSON).append("\",\"kinds\":[");
+                boolean first = true;
+                for (DependencyKind kind : KINDS) {
+                    if ((pKinds & kind.mask()) != 0) {
+                        if (!first) {
+                            pOut.append(',');
+                        }
+                        pOut.append('"').append(kind.name()).append('"');
+                        first = false;
+                    }
+                }
+                pOut.append("],\"weight\":").append(pWeight).append("}\n");
+                break;
+            case CSV:
+                pOut.append('"').append(pFrom, TextOutput.CSV).append("\",\"").append(pTo, TextOutput.CSV).append("\",");
+                kinds(pOut, pKinds, '|');
+                pOut.append(',').append(pWeight).append('\n');
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void kinds( final TextOutput pOut, final int pKinds, final char pSeparator ) throws IOException {
+        boolean first = true;
+        for (DependencyKind kind : KINDS) {
+            if ((pKinds & kind.mask()) != 0) {
+                if (!first) {
+                    pOut.append(pSeparator);
+                }
+                pOut.append(kind.name());
+                first = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+import org.vafer.jdependency.utils.ReadAhead;
+
+/**
+ * Adds the classes of a running JVM to a `Clazzpath`, one unit per code
+ * source. Loaded classes come from an `Instrumentation` agent or any other
+ * list of classes. Their class files are fetched from their class loaders
+ * in parallel, or, in the `NAMES` mode, not at all, which just records
+ * what is loaded. The code sources of a class loader hierarchy are added
+ * as whole units instead, which gives what is reachable to compare the
+ * loaded classes against, best in a second `Clazzpath`.
+ *
+ *     final Clazzpath loaded = new Clazzpath();
+ *     new LoadedClazzpath(loaded, Mode.NAMES).addInstrumentation(instrumentation);
+ *
+ *     final Clazzpath available = new Clazzpath();
+ *     new LoadedClazzpath(available, Mode.DEPENDENCIES).addClassLoader(loader);
+ */
+public final class LoadedClazzpath {
+
+    public enum Mode {
+        /** only record the loaded classes, without dependencies */
+        NAMES,
+        /** fetch and analyse the class files of the loaded classes */
+        DEPENDENCIES
+    }
+
+    // the id of the unit of classes without a code source, mostly those of the JDK
+    static final String NO_CODE_SOURCE = "bootstrap";
+
+    private final Clazzpath clazzpath;
+    private final Mode mode;
+
+    public LoadedClazzpath( final Clazzpath pClazzpath, final Mode pMode ) {
+        clazzpath = pClazzpath;
+        mode = pMode;
+    }
+
+    /**
+     * Adds all classes loaded in the JVM of the agent.
+     */
+    public List<ClazzpathUnit> addInstrumentation( final Instrumentation pInstrumentation ) throws IOException {
+        return addClasses(Arrays.asList(pInstrumentation.getAllLoadedClasses()));
+    }
+
+    /**
+     * Adds the given loaded classes, grouped into one unit per code source.
+     * Arrays, primitives and hidden classes have no class file and are skipped.
+     */
+    public List<ClazzpathUnit> addClasses( final Collection<Class<?>> pClasses ) throws IOException {
+
+        final Map<String, List<Class<?>>> bySource = new LinkedHashMap<>();
+        for (Class<?> c : pClasses) {
+            if (c.isArray() || c.isPrimitive() || c.getName().indexOf('/') >= 0) {
+                continue;
+            }
+            bySource.computeIfAbsent(codeSource(c), k -> new ArrayList<>()).add(c);
+        }
+
+        final List<ClazzpathUnit> all = new ArrayList<>();
+        for (Map.Entry<String, List<Class<?>>> e : bySource.entrySet()) {
+            if (mode == Mode.NAMES) {
+                final List<String> names = new ArrayList<>();
+                for (Class<?> c : e.getValue()) {
+                    names.add(c.getName());
+                }
+                all.add(clazzpath.addClazzpathUnit(names, e.getKey()));
+            } else {
+                try (ReadAhead<Class<?>> reads = new ReadAhead<>(e.getValue().iterator(), LoadedClazzpath::fetch)) {
+                    all.add(clazzpath.addClazzpathUnit(resources(reads), e.getKey(), true));
+                }
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Adds the jars and directories of the class loader and its parents,
+     * as far as they are known. The JDK's own loaders are left out.
+     */
+    public List<ClazzpathUnit> addClassLoader( final ClassLoader pLoader ) throws IOException {
+
+        final List<Path> paths = new ArrayList<>();
+        for (ClassLoader loader = pLoader; loader != null; loader = loader.getParent()) {
+            final List<Path> own = new ArrayList<>();
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    final Path path = toPath(url);
+                    if (path != null) {
+                        own.add(path);
+                    }
+                }
+            } else if (loader == ClassLoader.getSystemClassLoader()) {
+                // not a URLClassLoader since Java 9
+                for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (!entry.isEmpty()) {
+                        own.add(Paths.get(entry));
+                    }
+                }
+            }
+            // parents first, like the lookup
+            paths.addAll(0, own);
+        }
+
+        final List<ClazzpathUnit> all = new ArrayList<>();
+        for (Path path : new LinkedHashSet<>(paths)) {
+            if (Files.exists(path)) {
+                all.add(clazzpath.addClazzpathUnit(path, path.toUri().toURL().toString()));
+            }
+        }
+        return all;
+    }
+
+    private static String codeSource( final Class<?> pClass ) {
+        try {
+            final CodeSource source = pClass.getProtectionDomain().getCodeSource();
+            if (source != null && source.getLocation() != null) {
+                return source.getLocation().toString();
+            }
+        } catch (SecurityException e) {
+            // not allowed to tell
+        }
+        return NO_CODE_SOURCE;
+    }
+
+    private static Path toPath( final URL pUrl ) {
+        if (!"file".equals(pUrl.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(pUrl.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] fetch( final Class<?> pClass ) throws IOException {
+        final String resource = Clazzpath.toResourceName(pClass.getName());
+        final ClassLoader loader = pClass.getClassLoader();
+        try (InputStream in = loader != null
+            ? loader.getResourceAsStream(resource)
+            : ClassLoader.getSystemResourceAsStream(resource)) {
+            return in == null ? null : IOUtils.toByteArray(in);
+        }
+    }
+
+    /**
+     * The class files of the classes, fetched ahead in parallel.
+     * Classes without a class file are skipped.
+     */
+    private static Iterable<Clazzpath.Resource> resources( final ReadAhead<Class<?>> pReads ) {
+
+        return () -> new Iterator<Clazzpath.Resource>() {
+
+            private Clazzpath.Resource next;
+
+            public boolean hasNext() {
+                while (next == null && pReads.hasNext()) {
+                    final ReadAhead.Read<Class<?>> read = pReads.next();
+                    final byte[] bytes;
+                    try {
+                        bytes = read.getBytes();
+                    } catch (IOException e) {
+                        // gone since it was loaded, nothing to analyse
+                        continue;
+                    }
+                    if (bytes != null) {
+                        next = new Clazzpath.Resource(Clazzpath.toResourceName(read.getSource().getName())) {
+                            InputStream getInputStream() {
+                                return new ByteArrayInputStream(bytes);
+                            }
+                        };
+                    }
+                }
+                return next != null;
+            }
+
+            public Clazzpath.Resource next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Clazzpath.Resource resource = next;
+                next = null;
+                return resource;
+            }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.vafer.jdependency.asm.MemberTable;
+
+/**
+ * The field and method level graph of a `Clazzpath` created with member
+ * analysis enabled. Members are named like `com.acme.Foo#bar(I)V` for
+ * methods and `com.acme.Foo#count:I` for fields.
+ */
+public final class MemberGraph {
+
+    private final MemberTable table = new MemberTable();
+
+    MemberGraph() {
+    }
+
+    MemberTable getTable() {
+        return table;
+    }
+
+    void forget( final String pClazzName ) {
+        final int clazz = table.findClazz(pClazzName.replace('.', '/'));
+        if (clazz >= 0) {
+            table.forgetClazz(clazz);
+        }
+    }
+
+    /**
+     * @return the members declared by the given clazz, empty if it is unknown
+     */
+    public Set<String> getMembers( final String pClazzName ) {
+        final Set<String> all = new HashSet<>();
+        final int clazz = table.findClazz(pClazzName.replace('.', '/'));
+        if (clazz >= 0) {
+            for (int m = table.getFirstMember(clazz); m >= 0; m = table.getNextMember(m)) {
+                all.add(format(table, m));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Computes the members reachable from the given entry points. An entry
+     * point is either a single member like `com.acme.Main#main([Ljava/lang/String;)V`,
+     * all overloads of a method like `com.acme.Main#main`, or a clazz name
+     * for all of its non-private methods.
+     */
+    public ReachableMembers getReachableMembers( final Collection<String> pEntryPoints ) {
+
+        final BitSet entries = new BitSet();
+
+        for (String entryPoint : pEntryPoints) {
+            final int hash = entryPoint.indexOf('#');
+            final String clazzName = hash < 0 ? entryPoint : entryPoint.substring(0, hash);
+            final String member = hash < 0 ? null : entryPoint.substring(hash + 1);
+
+            final int clazz = table.findClazz(clazzName.replace('.', '/'));
+            if (clazz < 0) {
+                continue;
+            }
+
+            for (int m = table.getFirstMember(clazz); m >= 0; m = table.getNextMember(m)) {
+                if (member == null) {
+                    if (!table.isField(m) && (table.getAccess(m) & Opcodes.ACC_PRIVATE) == 0) {
+                        entries.set(m);
+                    }
+                } else if (member.equals(table.getMemberName(m)) || member.equals(signature(table, m))) {
+                    entries.set(m);
+                }
+            }
+        }
+
+        final BitSet reachable = new BitSet(table.getMemberCount());
+        final BitSet used = new BitSet(table.getClassCount());
+        table.reachable(entries.stream().toArray(), reachable, used);
+
+        return new ReachableMembers(table, reachable, used);
+    }
+
+    static String format( final MemberTable pTable, final int pMember ) {
+        return pTable.getClazzName(pTable.getMemberClazz(pMember)).replace('/', '.') + '#' + signature(pTable, pMember);
+    }
+
+    static String signature( final MemberTable pTable, final int pMember ) {
+        return pTable.isField(pMember)
+            ? pTable.getMemberName(pMember) + ':' + pTable.getMemberDescriptor(pMember)
+            : pTable.getMemberName(pMember) + pTable.getMemberDescriptor(pMember);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Clazzes sorted by name in a plain array, for lookups by prefix, package
+ * or glob in O(log n + k). Changes are collected and only merged into the
+ * array by the next lookup, so loading many units stays linear.
+ */
+public final class NameIndex {
+
+    private static final Clazz[] EMPTY = new Clazz[0];
+
+    private Clazz[] sorted = EMPTY;
+    private Clazz[] pending = EMPTY;
+    private int pendingSize;
+    // by identity, a clazz may be replaced by a new one of the same name
+    private final Set<Clazz> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    NameIndex() {
+    }
+
+    NameIndex( final Collection<Clazz> pClazzes ) {
+        sorted = pClazzes.toArray(EMPTY);
+        Arrays.sort(sorted);
+    }
+
+    void add( final Clazz pClazz ) {
+        if (removed.remove(pClazz)) {
+            // still in the array or pending
+            return;
+        }
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(16, pendingSize * 2));
+        }
+        pending[pendingSize++] = pClazz;
+    }
+
+    void remove( final Clazz pClazz ) {
+        removed.add(pClazz);
+    }
+
+    public int size() {
+        merge();
+        return sorted.length;
+    }
+
+    /**
+     * @return the clazz of the given name or null
+     */
+    public Clazz getClazz( final String pName ) {
+        merge();
+        final int i = lowerBound(pName);
+        return i < sorted.length && sorted[i].getName().equals(pName) ? sorted[i] : null;
+    }
+
+    /**
+     * @return all clazzes in name order
+     */
+    public List<Clazz> getClazzes() {
+        merge();
+        return range(0, sorted.length);
+    }
+
+    /**
+     * @return the clazzes whose names start with the prefix, in name order
+     */
+    public List<Clazz> withPrefix( final String pPrefix ) {
+        merge();
+        final int from = lowerBound(pPrefix);
+        return range(from, upperBound(from, pPrefix));
+    }
+
+    /**
+     * @param pPackage a package name like `com.acme`, empty for the default package
+     * @param pSubpackages whether to include the clazzes of all subpackages
+     * @return the clazzes of the package, in name order
+     */
+    public List<Clazz> inPackage( final String pPackage, final boolean pSubpackages ) {
+        final String prefix = pPackage.isEmpty() ? "" : pPackage + '.';
+        if (pSubpackages) {
+            return withPrefix(prefix);
+        }
+        final List<Clazz> all = new ArrayList<>();
+        for (Clazz clazz : withPrefix(prefix)) {
+            if (clazz.getName().indexOf('.', prefix.length()) < 0) {
+                all.add(clazz);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Finds the clazzes matching a glob like `com.acme.*.internal.**`. A `*`
+     * matches within a package, a `**` across packages and a `?` a single
+     * character other than a dot. Only the range of the literal prefix
+     * before the first wildcard is scanned.
+     *
+     * @return the matching clazzes, in name order
+     */
+    public List<Clazz> matching( final String pGlob ) {
+
+        int literal = 0;
+        while (literal < pGlob.length() && pGlob.charAt(literal) != '*' && pGlob.charAt(literal) != '?') {
+            literal++;
+        }
+
+        final List<Clazz> candidates = withPrefix(pGlob.substring(0, literal));
+        if (literal == pGlob.length()) {
+            // no wildcards, an exact name
+            return candidates.isEmpty() || !candidates.get(0).getName().equals(pGlob)
+                ? Collections.emptyList()
+                : candidates.subList(0, 1);
+        }
+
+        final Pattern pattern = compile(pGlob);
+        final List<Clazz> all = new ArrayList<>();
+        for (Clazz clazz : candidates) {
+            if (pattern.matcher(clazz.getName()).matches()) {
+                all.add(clazz);
+            }
+        }
+        return all;
+    }
+
+    private static Pattern compile( final String pGlob ) {
+        final StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < pGlob.length(); i++) {
+            final char c = pGlob.charAt(i);
+            if (c != '*' && c != '?') {
+                continue;
+            }
+            if (literal < i) {
+                regex.append(Pattern.quote(pGlob.substring(literal, i)));
+            }
+            if (c == '?') {
+                regex.append("[^.]");
+            } else if (i + 1 < pGlob.length() && pGlob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^.]*");
+            }
+            literal = i + 1;
+        }
+        if (literal < pGlob.length()) {
+            regex.append(Pattern.quote(pGlob.substring(literal)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private int upperBound( final int pFrom, final String pPrefix ) {
+        if (pPrefix.isEmpty()) {
+            return sorted.length;
+        }
+        // all names with the prefix sort before the prefix with its last char incremented
+        final int last = pPrefix.length() - 1;
+        final String next = pPrefix.substring(0, last) + (char) (pPrefix.charAt(last) + 1);
+        int lo = pFrom;
+        int hi = sorted.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (sorted[mid].getName().compareTo(next) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private List<Clazz> range( final int pFrom, final int pTo ) {
+        if (pFrom == pTo) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(sorted).subList(pFrom, pTo));
+    }
+
+    /**
+     * @return the position of the first name not smaller than the given one
+     */
+    private int lowerBound( final String pName ) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (sorted[mid].getName().compareTo(pName) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void merge() {
+        if (pendingSize == 0 && removed.isEmpty()) {
+            return;
+        }
+
+        Arrays.sort(pending, 0, pendingSize);
+
+        final Clazz[] merged = new Clazz[sorted.length + pendingSize];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < sorted.length || j < pendingSize) {
+            final Clazz next;
+            if (j == pendingSize || (i < sorted.length && sorted[i].compareTo(pending[j]) <= 0)) {
+                next = sorted[i++];
+            } else {
+                next = pending[j++];
+            }
+            if (!removed.contains(next)) {
+                merged[n++] = next;
+            }
+        }
+
+        sorted = n == merged.length ? merged : Arrays.copyOf(merged, n);
+        pending = EMPTY;
+        pendingSize = 0;
+        removed.clear();
+    }
+}
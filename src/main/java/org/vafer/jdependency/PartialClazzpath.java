@@ -0,0 +1,280 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The parsed units of one shard of a larger analysis, without a graph.
+ * Every unit keeps its clazz names, digests and outgoing references by
+ * name, so nothing needs to be resolved until the partials of all shards
+ * are merged. Partials are written to and read from a compact binary
+ * form to move them between processes.
+ *
+ *     // on each worker
+ *     final PartialClazzpath partial = new PartialClazzpath();
+ *     for (Path jar : shard) {
+ *         partial.addClazzpathUnit(jar);
+ *     }
+ *     partial.writeTo(out);
+ *
+ *     // on the coordinator
+ *     PartialClazzpath all = new PartialClazzpath();
+ *     for (InputStream in : results) {
+ *         all = all.merge(PartialClazzpath.readFrom(in));
+ *     }
+ *     final Clazzpath cp = all.toClazzpath(false);
+ *
+ * Merging concatenates the units, which is associative, so partials can
+ * be combined in any grouping. The order of the units only matters in
+ * the way it does for `Clazzpath` itself.
+ */
+public final class PartialClazzpath {
+
+    private static final int MAGIC = 0x4a445043; // JDPC
+    // 2 added the sizes, the service providers and the module name
+    private static final int VERSION = 2;
+
+    private final List<String> ids;
+    private final List<UnitTemplate> templates;
+
+    public PartialClazzpath() {
+        this(new ArrayList<>(), new ArrayList<>());
+    }
+
+    private PartialClazzpath( final List<String> pIds, final List<UnitTemplate> pTemplates ) {
+        ids = pIds;
+        templates = pTemplates;
+    }
+
+    public void addClazzpathUnit( final Path pPath ) throws IOException {
+        addClazzpathUnit(pPath, pPath.toString());
+    }
+
+    public void addClazzpathUnit( final Path pPath, final String pId ) throws IOException {
+        final UnitTemplate template = Clazzpath.parse(pPath);
+        ids.add(pId);
+        templates.add(template);
+    }
+
+    public void addClazzpathUnit( final InputStream pInputStream, final String pId ) throws IOException {
+        final UnitTemplate template = Clazzpath.parse(pInputStream, pId);
+        ids.add(pId);
+        templates.add(template);
+    }
+
+    /**
+     * @return the unit ids in the order they were added
+     */
+    public List<String> getUnits() {
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * @return the names referenced by this partial's clazzes but defined by none of its units, sorted
+     */
+    public Set<String> getUnresolved() {
+        final Set<String> defined = new HashSet<>();
+        for (UnitTemplate template : templates) {
+            for (int c = 0; c < template.size(); c++) {
+                defined.add(template.getName(c));
+            }
+        }
+        final Set<String> unresolved = new TreeSet<>();
+        for (UnitTemplate template : templates) {
+            for (int c = 0; c < template.size(); c++) {
+                for (int i = 0; i < template.getDependencyCount(c); i++) {
+                    if ((template.getDependencyKinds(c, i) & ~DependencyKind.WEAK) == 0) {
+                        // only guessed, never missing
+                        continue;
+                    }
+                    final String name = template.getDependency(c, i);
+                    if (!defined.contains(name)) {
+                        unresolved.add(name);
+                    }
+                }
+            }
+        }
+        return unresolved;
+    }
+
+    /**
+     * @return a new partial with the units of this one followed by those of the other
+     */
+    public PartialClazzpath merge( final PartialClazzpath pOther ) {
+        final List<String> allIds = new ArrayList<>(ids);
+        final List<UnitTemplate> allTemplates = new ArrayList<>(templates);
+        allIds.addAll(pOther.ids);
+        allTemplates.addAll(pOther.templates);
+        return new PartialClazzpath(allIds, allTemplates);
+    }
+
+    public static PartialClazzpath merge( final Collection<PartialClazzpath> pPartials ) {
+        PartialClazzpath all = new PartialClazzpath();
+        for (PartialClazzpath partial : pPartials) {
+            all = all.merge(partial);
+        }
+        return all;
+    }
+
+    /**
+     * Builds the graph, resolving all references between the units.
+     *
+     * @param pVersions whether to record the digests to tell versions apart
+     */
+    public Clazzpath toClazzpath( final boolean pVersions ) {
+        final Clazzpath clazzpath = new Clazzpath(pVersions);
+        for (int u = 0; u < ids.size(); u++) {
+            clazzpath.addClazzpathUnit(templates.get(u), ids.get(u));
+        }
+        return clazzpath;
+    }
+
+    /**
+     * Writes the partial with every name stored once. The stream is flushed but not closed.
+     */
+    public void writeTo( final OutputStream pOut ) throws IOException {
+
+        final Map<String, Integer> names = new HashMap<>();
+        final List<String> table = new ArrayList<>();
+        for (UnitTemplate template : templates) {
+            for (int c = 0; c < template.size(); c++) {
+                intern(template.getName(c), names, table);
+                for (int i = 0; i < template.getDependencyCount(c); i++) {
+                    intern(template.getDependency(c, i), names, table);
+                }
+            }
+            for (int i = 0; i < template.getServiceCount(); i++) {
+                intern(template.getService(i), names, table);
+                intern(template.getProvider(i), names, table);
+            }
+        }
+
+        final DataOutputStream out = new DataOutputStream(pOut);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(table.size());
+        for (String name : table) {
+            out.writeUTF(name);
+        }
+
+        out.writeInt(ids.size());
+        for (int u = 0; u < ids.size(); u++) {
+            final UnitTemplate template = templates.get(u);
+            out.writeUTF(ids.get(u));
+            out.writeInt(template.getResourceCount());
+            out.writeLong(template.getResourceSize());
+            out.writeLong(template.getCompressedResourceSize());
+            out.writeInt(template.size());
+            for (int c = 0; c < template.size(); c++) {
+                out.writeInt(names.get(template.getName(c)));
+                out.writeUTF(template.getDigest(c));
+                out.writeInt(template.getSize(c));
+                out.writeInt(template.getCompressedSize(c));
+                out.writeInt(template.getDependencyCount(c));
+                for (int i = 0; i < template.getDependencyCount(c); i++) {
+                    out.writeInt(names.get(template.getDependency(c, i)));
+                    out.writeInt(template.getDependencyKinds(c, i));
+                }
+            }
+            out.writeInt(template.getServiceCount());
+            for (int i = 0; i < template.getServiceCount(); i++) {
+                out.writeInt(names.get(template.getService(i)));
+                out.writeInt(names.get(template.getProvider(i)));
+            }
+            out.writeBoolean(template.getModuleName() != null);
+            if (template.getModuleName() != null) {
+                out.writeUTF(template.getModuleName());
+            }
+        }
+
+        out.flush();
+    }
+
+    private static void intern( final String pName, final Map<String, Integer> pNames, final List<String> pTable ) {
+        if (!pNames.containsKey(pName)) {
+            pNames.put(pName, pTable.size());
+            pTable.add(pName);
+        }
+    }
+
+    /**
+     * Reads a partial written by `writeTo`. The stream is not closed.
+     */
+    public static PartialClazzpath readFrom( final InputStream pIn ) throws IOException {
+
+        final DataInputStream in = new DataInputStream(pIn);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a partial clazzpath");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported partial clazzpath version " + version);
+        }
+
+        final String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readUTF();
+        }
+
+        final int units = in.readInt();
+        final List<String> ids = new ArrayList<>(units);
+        final List<UnitTemplate> templates = new ArrayList<>(units);
+        for (int u = 0; u < units; u++) {
+            ids.add(in.readUTF());
+            final UnitTemplate.Builder builder = new UnitTemplate.Builder();
+            builder.addResources(in.readInt(), in.readLong(), in.readLong());
+            final int clazzes = in.readInt();
+            for (int c = 0; c < clazzes; c++) {
+                builder.addClazz(table[in.readInt()], in.readUTF(), in.readInt(), in.readInt());
+                final int dependencies = in.readInt();
+                for (int i = 0; i < dependencies; i++) {
+                    builder.addDependency(table[in.readInt()], in.readInt());
+                }
+            }
+            final int services = in.readInt();
+            for (int i = 0; i < services; i++) {
+                builder.addService(table[in.readInt()], table[in.readInt()]);
+            }
+            if (in.readBoolean()) {
+                builder.setModuleName(in.readUTF());
+            }
+            templates.add(builder.build());
+        }
+
+        return new PartialClazzpath(ids, templates);
+    }
+
+    @Override
+    public String toString() {
+        return "PartialClazzpath" + ids;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shortest dependency chains from a set of roots to a target. A breadth
+ * first search runs from the roots along the dependencies and from the
+ * target along the references, always expanding the smaller frontier one
+ * level, and stops at the level where both meet. The k shortest chains
+ * are found with Yen's algorithm on top of it.
+ */
+final class PathFinder {
+
+    private final int kinds;
+
+    PathFinder( final int pKinds ) {
+        kinds = pKinds;
+    }
+
+    /**
+     * @return whether the target is reachable, stopping as soon as it is known
+     */
+    boolean reaches( final Collection<Clazz> pRoots, final Clazz pTarget ) {
+        return search(pRoots, pTarget, Collections.emptySet(), null, Collections.emptySet(), true) != null;
+    }
+
+    /**
+     * @return the clazzes from a root to the target, or an empty list if it is not reachable
+     */
+    List<Clazz> shortest( final Collection<Clazz> pRoots, final Clazz pTarget ) {
+        final List<Clazz> path = search(pRoots, pTarget, Collections.emptySet(), null, Collections.emptySet(), false);
+        return path == null ? Collections.emptyList() : path;
+    }
+
+    /**
+     * Yen's algorithm: each further path deviates from a previous one at
+     * some spur clazz, taking the shortest way from there that neither
+     * revisits the shared prefix nor repeats an edge already taken from the
+     * spur by a path with that prefix. Deviating at the first clazz means
+     * starting from another root.
+     *
+     * @return up to the given number of loop free paths in ascending length
+     */
+    List<List<Clazz>> shortest( final Collection<Clazz> pRoots, final Clazz pTarget, final int pCount ) {
+
+        final List<List<Clazz>> found = new ArrayList<>();
+        if (pCount <= 0) {
+            return found;
+        }
+
+        final List<Clazz> first = shortest(pRoots, pTarget);
+        if (first.isEmpty()) {
+            return found;
+        }
+        found.add(first);
+
+        final Set<List<Clazz>> seen = new HashSet<>();
+        seen.add(first);
+        final List<List<Clazz>> candidates = new ArrayList<>();
+
+        while (found.size() < pCount) {
+
+            final List<Clazz> previous = found.get(found.size() - 1);
+
+            // -1 deviates before the first clazz, that is at the roots
+            for (int i = -1; i < previous.size() - 1; i++) {
+
+                final List<Clazz> prefix = previous.subList(0, i + 1);
+                final Clazz spur = i < 0 ? null : previous.get(i);
+
+                final Set<Clazz> taken = new HashSet<>();
+                for (List<Clazz> path : found) {
+                    if (path.size() > i + 1 && path.subList(0, i + 1).equals(prefix)) {
+                        taken.add(path.get(i + 1));
+                    }
+                }
+
+                final Set<Clazz> banned = new HashSet<>(prefix);
+                final List<Clazz> spurPath;
+                if (spur == null) {
+                    final List<Clazz> roots = new ArrayList<>();
+                    for (Clazz root : pRoots) {
+                        if (!taken.contains(root)) {
+                            roots.add(root);
+                        }
+                    }
+                    spurPath = search(roots, pTarget, banned, null, Collections.emptySet(), false);
+                } else {
+                    banned.remove(spur);
+                    spurPath = search(Collections.singleton(spur), pTarget, banned, spur, taken, false);
+                }
+
+                if (spurPath != null) {
+                    final List<Clazz> path = new ArrayList<>(i < 0 ? spurPath.size() : i + spurPath.size());
+                    if (i > 0) {
+                        path.addAll(previous.subList(0, i));
+                    }
+                    path.addAll(spurPath);
+                    if (seen.add(path)) {
+                        candidates.add(path);
+                    }
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            // the shortest candidate, the earliest found on ties
+            int best = 0;
+            for (int c = 1; c < candidates.size(); c++) {
+                if (candidates.get(c).size() < candidates.get(best).size()) {
+                    best = c;
+                }
+            }
+            found.add(candidates.remove(best));
+        }
+
+        return found;
+    }
+
+    private boolean follows( final Clazz pFrom, final Clazz pTo, final Clazz pSpur, final Set<Clazz> pTaken ) {
+        if (pFrom == pSpur && pTaken.contains(pTo)) {
+            return false;
+        }
+        return kinds == DependencyKind.STRONG || kinds == DependencyKind.ALL || (pFrom.getDependencyMask(pTo) & kinds) != 0;
+    }
+
+    /**
+     * Bidirectional breadth first search avoiding the banned clazzes and the
+     * edges from the spur to the taken clazzes.
+     *
+     * @return the path or null if there is none
+     */
+    private List<Clazz> search( final Collection<Clazz> pRoots, final Clazz pTarget, final Set<Clazz> pBanned,
+                                final Clazz pSpur, final Set<Clazz> pTaken, final boolean pAnyPath ) {
+
+        if (pBanned.contains(pTarget)) {
+            return null;
+        }
+
+        // the way back to the roots and on to the target, a clazz maps to itself at the ends
+        final Map<Clazz, Clazz> forward = new HashMap<>();
+        final Map<Clazz, Clazz> backward = new HashMap<>();
+
+        List<Clazz> forwardFrontier = new ArrayList<>();
+        for (Clazz root : pRoots) {
+            if (root == pTarget) {
+                return Collections.singletonList(pTarget);
+            }
+            if (!pBanned.contains(root) && forward.put(root, root) == null) {
+                forwardFrontier.add(root);
+            }
+        }
+        List<Clazz> backwardFrontier = new ArrayList<>();
+        backward.put(pTarget, pTarget);
+        backwardFrontier.add(pTarget);
+
+        while (!forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+
+            final boolean isForward = forwardFrontier.size() <= backwardFrontier.size();
+            final Map<Clazz, Clazz> own = isForward ? forward : backward;
+            final Map<Clazz, Clazz> other = isForward ? backward : forward;
+
+            final List<Clazz> next = new ArrayList<>();
+            final Set<Clazz> meetings = new LinkedHashSet<>();
+
+            for (Clazz clazz : isForward ? forwardFrontier : backwardFrontier) {
+                for (Clazz c : isForward ? clazz.getDependencies(kinds) : clazz.getReferences(kinds)) {
+                    if (pBanned.contains(c) || own.containsKey(c)) {
+                        continue;
+                    }
+                    if (!(isForward ? follows(clazz, c, pSpur, pTaken) : follows(c, clazz, pSpur, pTaken))) {
+                        continue;
+                    }
+                    own.put(c, clazz);
+                    next.add(c);
+                    if (other.containsKey(c)) {
+                        if (pAnyPath) {
+                            return Collections.singletonList(c);
+                        }
+                        meetings.add(c);
+                    }
+                }
+            }
+
+            if (!meetings.isEmpty()) {
+                List<Clazz> best = null;
+                for (Clazz meeting : meetings) {
+                    final List<Clazz> path = join(forward, backward, meeting);
+                    if (best == null || path.size() < best.size()) {
+                        best = path;
+                    }
+                }
+                return best;
+            }
+
+            if (isForward) {
+                forwardFrontier = next;
+            } else {
+                backwardFrontier = next;
+            }
+        }
+
+        return null;
+    }
+
+    private static List<Clazz> join( final Map<Clazz, Clazz> pForward, final Map<Clazz, Clazz> pBackward, final Clazz pMeeting ) {
+        final List<Clazz> path = new ArrayList<>();
+        for (Clazz c = pMeeting; ; c = pForward.get(c)) {
+            path.add(c);
+            if (pForward.get(c) == c) {
+                break;
+            }
+        }
+        Collections.reverse(path);
+        for (Clazz c = pMeeting; pBackward.get(c) != c; ) {
+            c = pBackward.get(c);
+            path.add(c);
+        }
+        return path;
+    }
+}
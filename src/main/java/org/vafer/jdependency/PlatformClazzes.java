@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The names of the classes of the running JDK, read from the `jrt:/`
+ * file system or, on Java 8, from the entries of the boot class path jars.
+ * Only names are listed, the platform bytecode is never parsed. The names
+ * are listed on first use and can be kept in a cache file per JDK, which
+ * then replaces the listing on later runs.
+ *
+ * Passed to `Clazzpath.addPlatformUnit` the platform classes no longer
+ * show up as missing.
+ */
+public final class PlatformClazzes {
+
+    private static final PlatformClazzes CURRENT = new PlatformClazzes(null);
+
+    private final Path cache;
+    private String[] names;
+
+    private PlatformClazzes( final Path pCache ) {
+        cache = pCache;
+    }
+
+    /**
+     * @return the classes of the running JDK, listed on first use
+     */
+    public static PlatformClazzes current() {
+        return CURRENT;
+    }
+
+    /**
+     * @param pDirectory where to keep the cache file, one per JDK
+     * @return the classes of the running JDK, read from the cache file if there is one
+     */
+    public static PlatformClazzes cached( final Path pDirectory ) {
+        return new PlatformClazzes(pDirectory.resolve(cacheName()));
+    }
+
+    static String cacheName() {
+        final String version = System.getProperty("java.runtime.version", System.getProperty("java.version"));
+        final String home = System.getProperty("java.vendor") + System.getProperty("java.home");
+        return "platform-" + version.replaceAll("[^A-Za-z0-9._+]", "_") + '-' + Integer.toHexString(home.hashCode()) + ".txt";
+    }
+
+    public boolean contains( final String pClazzName ) {
+        return Arrays.binarySearch(names(), pClazzName) >= 0;
+    }
+
+    public int size() {
+        return names().length;
+    }
+
+    /**
+     * @return all names in sorted order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names()));
+    }
+
+    @Override
+    public String toString() {
+        return "platform " + System.getProperty("java.version");
+    }
+
+    private synchronized String[] names() {
+        if (names == null) {
+            try {
+                names = cache != null && Files.isRegularFile(cache) ? read(cache) : list();
+                if (cache != null && !Files.isRegularFile(cache)) {
+                    write(cache, names);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return names;
+    }
+
+    private static String[] list() throws IOException {
+        final List<String> all = new ArrayList<>();
+        final FileSystem jrt = jrt();
+        if (jrt != null) {
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+                for (Path module : modules) {
+                    try (Stream<Path> files = Files.walk(module)) {
+                        files.forEach(p -> {
+                            final String name = module.relativize(p).toString();
+                            if (Clazzpath.isValidResourceName(name)) {
+                                all.add(Clazzpath.toClazzName(name));
+                            }
+                        });
+                    }
+                }
+            }
+        } else {
+            // Java 8 and earlier
+            for (String jar : System.getProperty("sun.boot.class.path", "").split(File.pathSeparator)) {
+                if (new File(jar).isFile()) {
+                    try (ZipFile zip = new ZipFile(jar)) {
+                        final Enumeration<? extends ZipEntry> entries = zip.entries();
+                        while (entries.hasMoreElements()) {
+                            final String name = entries.nextElement().getName();
+                            if (Clazzpath.isValidResourceName(name)) {
+                                all.add(Clazzpath.toClazzName(name));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        final String[] sorted = all.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static FileSystem jrt() {
+        try {
+            return FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (FileSystemNotFoundException | ProviderNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static String[] read( final Path pFile ) throws IOException {
+        final List<String> all = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(pFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                all.add(line);
+            }
+        }
+        return all.toArray(new String[0]);
+    }
+
+    private static void write( final Path pFile, final String[] pNames ) throws IOException {
+        Files.createDirectories(pFile.getParent());
+        // write aside and move, so concurrent runs never see a partial file
+        final Path tmp = Files.createTempFile(pFile.getParent(), "platform", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (String name : pNames) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+            Files.move(tmp, pFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
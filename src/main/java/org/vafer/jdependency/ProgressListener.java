@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+/**
+ * Follows an `AsyncClazzpath` run. The totals count from the start of the
+ * run and are reported on the thread doing the work.
+ */
+public interface ProgressListener {
+
+    /**
+     * @param pUnitId the id of the unit being read
+     * @param pClazzes the number of clazzes read so far
+     * @param pBytes the size of the class files read so far
+     */
+    default void clazzRead( String pUnitId, long pClazzes, long pBytes ) {
+    }
+
+    /**
+     * @param pUnit the unit now added to the clazzpath
+     * @param pUnits the number of units added so far
+     * @param pTotalUnits the number of units of the run
+     * @param pClazzes the number of clazzes read so far
+     * @param pBytes the size of the class files read so far
+     */
+    default void unitAdded( ClazzpathUnit pUnit, int pUnits, int pTotalUnits, long pClazzes, long pBytes ) {
+    }
+}
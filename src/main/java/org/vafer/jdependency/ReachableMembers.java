@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.vafer.jdependency.asm.MemberTable;
+
+/**
+ * The result of a member level reachability analysis. Besides the reachable
+ * members it knows all clazzes that are needed, including the ones that are
+ * only used as super types or in the descriptors of reachable members.
+ */
+public final class ReachableMembers {
+
+    private final MemberTable table;
+    private final BitSet members;
+    private final BitSet clazzes;
+
+    ReachableMembers( final MemberTable pTable, final BitSet pMembers, final BitSet pClazzes ) {
+        table = pTable;
+        members = pMembers;
+        clazzes = pClazzes;
+    }
+
+    public int size() {
+        return members.cardinality();
+    }
+
+    public Set<String> getMembers() {
+        final Set<String> all = new HashSet<>();
+        for (int m = members.nextSetBit(0); m >= 0; m = members.nextSetBit(m + 1)) {
+            all.add(MemberGraph.format(table, m));
+        }
+        return all;
+    }
+
+    /**
+     * @param pMember a member named like `com.acme.Foo#bar(I)V` or `com.acme.Foo#count:I`
+     */
+    public boolean contains( final String pMember ) {
+        final int hash = pMember.indexOf('#');
+        if (hash < 0) {
+            throw new IllegalArgumentException("not a member name: " + pMember);
+        }
+        final int clazz = table.findClazz(pMember.substring(0, hash).replace('.', '/'));
+        if (clazz < 0) {
+            return false;
+        }
+        final String signature = pMember.substring(hash + 1);
+        for (int m = table.getFirstMember(clazz); m >= 0; m = table.getNextMember(m)) {
+            if (members.get(m) && MemberGraph.signature(table, m).equals(signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the names of all clazzes needed by the reachable members
+     */
+    public Set<String> getClazzNames() {
+        final Set<String> all = new HashSet<>();
+        for (int c = clazzes.nextSetBit(0); c >= 0; c = clazzes.nextSetBit(c + 1)) {
+            all.add(table.getClazzName(c).replace('/', '.'));
+        }
+        return all;
+    }
+}
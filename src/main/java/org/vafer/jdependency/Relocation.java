@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Package relocation rules like those of a shading plugin, applied to an
+ * already analysed `Clazzpath` instead of the relocated bytecode. The
+ * result holds the collisions the relocation would cause, found through
+ * the name index alone, and a new clazzpath with the clazzes,
+ * dependencies and missing clazzes renamed, which is only copied when
+ * asked for.
+ *
+ * The relocated clazzpath keeps the units with their clazzes, digests,
+ * sizes, dependency kinds, services, module names and the platform unit.
+ * It has no member graph, unit cache, visitor factories or resource
+ * handlers, its units are added in no particular order, and names guessed
+ * from string constants that were not present are dropped.
+ *
+ *     final Relocation.Result result = new Relocation()
+ *         .addRule("com.google", "shaded.com.google")
+ *         .apply(clazzpath);
+ *     if (!result.getCollisions().isEmpty()) ...
+ */
+public final class Relocation {
+
+    private final Map<String, String> rules;
+
+    public static final class Result {
+
+        private final Clazzpath source;
+        private final UnaryOperator<String> names;
+        private final Map<String, Set<Clazz>> collisions;
+        private Clazzpath clazzpath;
+
+        Result( final Clazzpath pSource, final UnaryOperator<String> pNames, final Map<String, Set<Clazz>> pCollisions ) {
+            source = pSource;
+            names = pNames;
+            collisions = pCollisions;
+        }
+
+        /**
+         * Copies the whole graph on the first call, from the original
+         * clazzpath as it is then.
+         *
+         * @return a new clazzpath with the relocated names
+         */
+        public synchronized Clazzpath getClazzpath() {
+            if (clazzpath == null) {
+                clazzpath = source.rename(names);
+            }
+            return clazzpath;
+        }
+
+        /**
+         * @return the relocated names more than one clazz of the original
+         *     clazzpath ends up with, and those clazzes
+         */
+        public Map<String, Set<Clazz>> getCollisions() {
+            return collisions;
+        }
+    }
+
+    public Relocation() {
+        this(new HashMap<>());
+    }
+
+    private Relocation( final Map<String, String> pRules ) {
+        rules = pRules;
+    }
+
+    /**
+     * Moves a package and its subpackages.
+     *
+     * @param pPackage like `com.google`
+     * @param pRelocated like `shaded.com.google`
+     */
+    public Relocation addRule( final String pPackage, final String pRelocated ) {
+        rules.put(trim(pPackage), trim(pRelocated));
+        return this;
+    }
+
+    private static String trim( final String pPackage ) {
+        return pPackage.endsWith(".") ? pPackage.substring(0, pPackage.length() - 1) : pPackage;
+    }
+
+    /**
+     * @return the name after relocation, the most specific rule winning
+     */
+    public String relocate( final String pClazzName ) {
+        for (int dot = pClazzName.lastIndexOf('.'); dot > 0; dot = pClazzName.lastIndexOf('.', dot - 1)) {
+            final String relocated = rules.get(pClazzName.substring(0, dot));
+            if (relocated != null) {
+                return relocated + pClazzName.substring(dot);
+            }
+        }
+        return pClazzName;
+    }
+
+    public Result apply( final Clazzpath pClazzpath ) {
+
+        // only relocated clazzes can collide, found by their prefixes
+        final NameIndex index = pClazzpath.getNameIndex();
+        final Map<String, Set<Clazz>> targets = new HashMap<>();
+        for (String pkg : rules.keySet()) {
+            for (Clazz clazz : index.withPrefix(pkg + '.')) {
+                final String relocated = relocate(clazz.getName());
+                if (!relocated.equals(clazz.getName())) {
+                    targets.computeIfAbsent(relocated, k -> new TreeSet<>()).add(clazz);
+                }
+            }
+        }
+
+        final Map<String, Set<Clazz>> collisions = new TreeMap<>();
+        for (Map.Entry<String, Set<Clazz>> e : targets.entrySet()) {
+            final Clazz existing = index.getClazz(e.getKey());
+            if (existing != null && relocate(existing.getName()).equals(existing.getName())) {
+                // stays where the relocated ones go
+                e.getValue().add(existing);
+            }
+            if (e.getValue().size() > 1) {
+                collisions.put(e.getKey(), Collections.unmodifiableSet(e.getValue()));
+            }
+        }
+
+        // rules added later don't change the result
+        final Relocation applied = new Relocation(new HashMap<>(rules));
+        return new Result(pClazzpath, applied::relocate, Collections.unmodifiableMap(collisions));
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the entries of the units a `Clazzpath` ingests that are not
+ * clazzes, like service files, manifests or `module-info.class`, while
+ * the unit is read anyway.
+ */
+public interface ResourceHandler {
+
+    /**
+     * @param pUnitId the id of the unit being added
+     * @param pName the path of the entry within the unit, like `META-INF/MANIFEST.MF`
+     * @param pInputStream the content, which must not be closed
+     */
+    void handle( String pUnitId, String pName, InputStream pInputStream ) throws IOException;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Breadth first walk over the clazz graph, either along the dependencies
+ * or along the references (fan-in) of the clazzes. It is iterative so deep
+ * chains can't overflow the stack, and the result set doubles as the set
+ * of visited clazzes. Edges can be restricted to a `DependencyKind` mask
+ * and clazzes to a filter, so queries prune the walk instead of the result.
+ */
+final class Traversal {
+
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private Traversal() {}
+
+    /**
+     * Adds every clazz reachable from the seeds within the given depth to
+     * the result. The seeds themselves are only added when they are
+     * reachable from another seed. With a filter only accepted clazzes are
+     * added and walked through.
+     */
+    static void walk( final Iterable<Clazz> pSeeds, final boolean pReverse, final int pMaxDepth,
+                      final Predicate<Clazz> pFilter, final int pKinds, final Set<? super Clazz> pAll ) {
+
+        // the default kinds take whole tables
+        final boolean filter = pKinds != DependencyKind.STRONG && pKinds != DependencyKind.ALL;
+
+        final ArrayDeque<Clazz> queue = new ArrayDeque<>();
+        for (Clazz seed : pSeeds) {
+            queue.add(seed);
+        }
+
+        int depth = 0;
+        while (!queue.isEmpty() && depth < pMaxDepth) {
+            depth++;
+            for (int n = queue.size(); n > 0; n--) {
+                final Clazz clazz = queue.poll();
+                for (Clazz c : pReverse ? clazz.getReferences(pKinds) : clazz.getDependencies(pKinds)) {
+                    if (filter) {
+                        final int kinds = pReverse ? c.getDependencyMask(clazz) : clazz.getDependencyMask(c);
+                        if ((kinds & pKinds) == 0) {
+                            continue;
+                        }
+                    }
+                    if ((pFilter == null || pFilter.test(c)) && pAll.add(c)) {
+                        queue.add(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a filter accepting the clazzes of at least one accepted unit, or null for all
+     */
+    static Predicate<Clazz> inUnits( final Predicate<ClazzpathUnit> pUnitFilter ) {
+        if (pUnitFilter == null) {
+            return null;
+        }
+        return clazz -> {
+            for (ClazzpathUnit unit : clazz.getClazzpathUnits()) {
+                if (pUnitFilter.test(unit)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed units shared across `Clazzpath` instances and threads, keyed by
+ * the SHA-256 of the unit's bytes. A clazzpath using the cache only reads
+ * and hashes a jar it has seen before and replays its clazzes and
+ * dependencies, instead of parsing it again.
+ *
+ *     final UnitCache cache = new UnitCache(256 * 1024 * 1024);
+ *
+ *     // per request
+ *     final Clazzpath cp = new Clazzpath();
+ *     cp.setUnitCache(cache);
+ *     cp.addClazzpathUnit(jar);
+ *
+ * The least recently used units are evicted once the estimated heap size
+ * of all cached units exceeds the maximum weight. Two threads missing the
+ * same unit at the same time may both parse it.
+ */
+public final class UnitCache {
+
+    private final long maxWeight;
+
+    private final LinkedHashMap<String, UnitTemplate> templates = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param pMaxWeight the maximum estimated heap size of the cached units in bytes
+     */
+    public UnitCache( final long pMaxWeight ) {
+        maxWeight = pMaxWeight;
+    }
+
+    synchronized UnitTemplate get( final String pKey ) {
+        final UnitTemplate template = templates.get(pKey);
+        if (template != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return template;
+    }
+
+    synchronized void put( final String pKey, final UnitTemplate pTemplate ) {
+
+        final long w = pTemplate.getWeight();
+        if (w > maxWeight) {
+            return;
+        }
+
+        final UnitTemplate previous = templates.put(pKey, pTemplate);
+        if (previous != null) {
+            weight -= previous.getWeight();
+        }
+        weight += w;
+
+        final Iterator<Map.Entry<String, UnitTemplate>> it = templates.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            final Map.Entry<String, UnitTemplate> eldest = it.next();
+            weight -= eldest.getValue().getWeight();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized int size() {
+        return templates.size();
+    }
+
+    /**
+     * @return the estimated heap size of all cached units in bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        templates.clear();
+        weight = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UnitCache[size=" + templates.size() + ", weight=" + weight + '/' + maxWeight
+            + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ']';
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.vafer.jdependency.utils.ReadAhead;
+
+import static org.apache.commons.io.FilenameUtils.normalize;
+import static org.apache.commons.io.FilenameUtils.separatorsToUnix;
+
+/**
+ * The files of a unit that is a directory, split into class files and
+ * the other files. They are named by their path relative to the directory,
+ * like the entries of a jar.
+ */
+final class UnitDirectory {
+
+    private final String prefix;
+    private final List<Path> clazzFiles;
+    private final List<Path> otherFiles;
+
+    UnitDirectory( final Path pDirectory ) throws IOException {
+
+        prefix = separatorsToUnix(normalize(pDirectory.toString() + '/'));
+
+        final Map<Boolean, List<Path>> files;
+        try (Stream<Path> all = Files.walk(pDirectory)) {
+            files = all
+                .filter(p -> Files.isRegularFile(p))
+                .collect(Collectors.partitioningBy(p -> Clazzpath.isValidResourceName(p.getFileName().toString())));
+        }
+        clazzFiles = files.get(true);
+        otherFiles = files.get(false);
+    }
+
+    String getName( final Path pFile ) {
+        return separatorsToUnix(pFile.toString()).substring(prefix.length());
+    }
+
+    List<Path> getClazzFiles() {
+        return clazzFiles;
+    }
+
+    List<Path> getOtherFiles() {
+        return otherFiles;
+    }
+
+    /**
+     * @return the class files, read concurrently while the caller parses them
+     */
+    ReadAhead<Path> readClazzFiles() {
+        return ReadAhead.files(clazzFiles.iterator());
+    }
+}
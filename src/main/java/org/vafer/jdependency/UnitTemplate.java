@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import org.vafer.jdependency.asm.MemberTable;
+
+/**
+ * The parsed content of a unit without any ties to a `Clazzpath`: the
+ * names, digests and sizes of its clazzes and their dependencies with kinds,
+ * the providers of its service files, the name of its module and the sizes
+ * of its other resources.
+ * Names are stored once per template and referenced by position, so a
+ * template is immutable and can be replayed into any number of
+ * clazzpaths from any number of threads.
+ */
+final class UnitTemplate {
+
+    private final String[] names;
+    private final int[] clazzes;
+    private final String[] digests;
+    private final int[] sizes;
+    private final int[] compressedSizes;
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    private final int[] kinds;
+    // service and provider name pairs
+    private final int[] services;
+    private final String moduleName;
+    // parsed aside for a clazzpath with member analysis, only read when replayed
+    private final MemberTable members;
+    private final long bytes;
+    private final int resourceCount;
+    private final long resourceSize;
+    private final long compressedResourceSize;
+
+    private UnitTemplate( final Builder pBuilder ) {
+        names = pBuilder.names.toArray(new String[0]);
+        clazzes = Arrays.copyOf(pBuilder.clazzes, pBuilder.clazzCount);
+        digests = Arrays.copyOf(pBuilder.digests, pBuilder.clazzCount);
+        sizes = Arrays.copyOf(pBuilder.sizes, pBuilder.clazzCount);
+        compressedSizes = Arrays.copyOf(pBuilder.compressedSizes, pBuilder.clazzCount);
+        dependencyOffsets = Arrays.copyOf(pBuilder.dependencyOffsets, pBuilder.clazzCount + 1);
+        dependencyOffsets[pBuilder.clazzCount] = pBuilder.dependencyCount;
+        dependencies = Arrays.copyOf(pBuilder.dependencies, pBuilder.dependencyCount);
+        kinds = Arrays.copyOf(pBuilder.kinds, pBuilder.dependencyCount);
+        services = Arrays.copyOf(pBuilder.services, pBuilder.serviceCount * 2);
+        moduleName = pBuilder.moduleName;
+        members = pBuilder.members;
+        long total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        bytes = total;
+        resourceCount = pBuilder.resourceCount;
+        resourceSize = pBuilder.resourceSize;
+        compressedResourceSize = pBuilder.compressedResourceSize;
+    }
+
+    int size() {
+        return clazzes.length;
+    }
+
+    String getName( final int pClazz ) {
+        return names[clazzes[pClazz]];
+    }
+
+    String getDigest( final int pClazz ) {
+        return digests[pClazz];
+    }
+
+    /**
+     * @return the size of the class file
+     */
+    int getSize( final int pClazz ) {
+        return sizes[pClazz];
+    }
+
+    int getCompressedSize( final int pClazz ) {
+        return compressedSizes[pClazz];
+    }
+
+    int getDependencyCount( final int pClazz ) {
+        return dependencyOffsets[pClazz + 1] - dependencyOffsets[pClazz];
+    }
+
+    String getDependency( final int pClazz, final int pIndex ) {
+        return names[dependencies[dependencyOffsets[pClazz] + pIndex]];
+    }
+
+    int getDependencyKinds( final int pClazz, final int pIndex ) {
+        return kinds[dependencyOffsets[pClazz] + pIndex];
+    }
+
+    /**
+     * @return the size of the class files the template was parsed from
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    int getServiceCount() {
+        return services.length / 2;
+    }
+
+    String getService( final int pIndex ) {
+        return names[services[2 * pIndex]];
+    }
+
+    String getProvider( final int pIndex ) {
+        return names[services[2 * pIndex + 1]];
+    }
+
+    /**
+     * @return the declared module name or null
+     */
+    String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * @return the fields, methods and their edges of the clazzes or null
+     */
+    MemberTable getMembers() {
+        return members;
+    }
+
+    int getResourceCount() {
+        return resourceCount;
+    }
+
+    long getResourceSize() {
+        return resourceSize;
+    }
+
+    long getCompressedResourceSize() {
+        return compressedResourceSize;
+    }
+
+    /**
+     * @return the approximate heap size of the template
+     */
+    long getWeight() {
+        long weight = 16L * 8;
+        for (String name : names) {
+            weight += 48 + 2L * name.length();
+        }
+        weight += 4L * (names.length + clazzes.length + digests.length + 2L * sizes.length + dependencyOffsets.length);
+        weight += 8L * dependencies.length + 4L * services.length;
+        weight += 88L * digests.length;
+        return weight;
+    }
+
+    static final class Builder {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private int[] clazzes = new int[16];
+        private String[] digests = new String[16];
+        private int[] sizes = new int[16];
+        private int[] compressedSizes = new int[16];
+        private int[] dependencyOffsets = new int[17];
+        private int clazzCount;
+        private int[] dependencies = new int[64];
+        private int[] kinds = new int[64];
+        private int dependencyCount;
+        private int[] services = new int[0];
+        private int serviceCount;
+        private String moduleName;
+        private MemberTable members;
+        private int resourceCount;
+        private long resourceSize;
+        private long compressedResourceSize;
+        private final ObjIntConsumer<String> onClazz;
+
+        Builder() {
+            this(null);
+        }
+
+        /**
+         * @param pOnClazz told the name and size of every added clazz, may stop
+         *     the parsing by throwing
+         */
+        Builder( final ObjIntConsumer<String> pOnClazz ) {
+            onClazz = pOnClazz;
+        }
+
+        private int id( final String pName ) {
+            Integer id = ids.get(pName);
+            if (id == null) {
+                id = names.size();
+                ids.put(pName, id);
+                names.add(pName);
+            }
+            return id;
+        }
+
+        void addClazz( final String pName, final String pDigest, final int pSize, final int pCompressedSize ) {
+            if (clazzCount == clazzes.length) {
+                clazzes = Arrays.copyOf(clazzes, clazzCount * 2);
+                digests = Arrays.copyOf(digests, clazzCount * 2);
+                sizes = Arrays.copyOf(sizes, clazzCount * 2);
+                compressedSizes = Arrays.copyOf(compressedSizes, clazzCount * 2);
+                dependencyOffsets = Arrays.copyOf(dependencyOffsets, clazzCount * 2 + 1);
+            }
+            clazzes[clazzCount] = id(pName);
+            digests[clazzCount] = pDigest;
+            sizes[clazzCount] = pSize;
+            compressedSizes[clazzCount] = pCompressedSize;
+            dependencyOffsets[clazzCount] = dependencyCount;
+            clazzCount++;
+            if (onClazz != null) {
+                onClazz.accept(pName, pSize);
+            }
+        }
+
+        /**
+         * Adds a dependency of the last added clazz.
+         */
+        void addDependency( final String pName, final int pKinds ) {
+            if (dependencyCount == dependencies.length) {
+                dependencies = Arrays.copyOf(dependencies, dependencyCount * 2);
+                kinds = Arrays.copyOf(kinds, dependencyCount * 2);
+            }
+            dependencies[dependencyCount] = id(pName);
+            kinds[dependencyCount] = pKinds;
+            dependencyCount++;
+        }
+
+        void addService( final String pService, final String pProvider ) {
+            if (2 * serviceCount == services.length) {
+                services = Arrays.copyOf(services, Math.max(8, services.length * 2));
+            }
+            services[2 * serviceCount] = id(pService);
+            services[2 * serviceCount + 1] = id(pProvider);
+            serviceCount++;
+        }
+
+        void setModuleName( final String pModuleName ) {
+            moduleName = pModuleName;
+        }
+
+        void setMembers( final MemberTable pMembers ) {
+            members = pMembers;
+        }
+
+        void addResources( final int pCount, final long pSize, final long pCompressedSize ) {
+            resourceCount += pCount;
+            resourceSize += pSize;
+            compressedResourceSize += pCompressedSize;
+        }
+
+        UnitTemplate build() {
+            return new UnitTemplate(this);
+        }
+    }
+}
@@ -21,160 +21,330 @@ import java.util.Set;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.ModuleVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.RecordComponentVisitor;
 import org.objectweb.asm.TypePath;
-import org.objectweb.asm.commons.ClassRemapper;
-import org.objectweb.asm.commons.Remapper;
+import org.vafer.jdependency.DependencyKind;
 
 /**
  * internal - do not use
+ *
+ * Collects every class referenced by a class into a `DependencyCollector`.
+ * It visits the same places a `ClassRemapper` would remap, but nothing gets
+ * rewritten, so there is no per member string garbage. The adapter and its
+ * member visitors can be reused, every `visit` starts a new collection.
+ *
+ * Each dependency is tagged with the `DependencyKind`s it was found as.
+ * String constants that look like class names are kept as `REFLECTION`.
  */
 
-public final class DependenciesClassAdapter extends ClassRemapper {
+public final class DependenciesClassAdapter extends ClassVisitor {
 
     private static final int OPCODES = Opcodes.ASM9;
 
-    private static final EmptyVisitor ev = new EmptyVisitor();
+    private static final int INHERITANCE = DependencyKind.INHERITANCE.mask();
+    private static final int FIELD = DependencyKind.FIELD.mask();
+    private static final int METHOD = DependencyKind.METHOD.mask();
+    private static final int CODE = DependencyKind.CODE.mask();
+    private static final int ANNOTATION = DependencyKind.ANNOTATION.mask();
+    private static final int SIGNATURE = DependencyKind.SIGNATURE.mask();
+    private static final int NESTING = DependencyKind.NESTING.mask();
+    private static final int REFLECTION = DependencyKind.REFLECTION.mask();
 
-    public DependenciesClassAdapter() {
-        super(ev, new CollectingRemapper());
-    }
+    private final DependencyCollector collector = new DependencyCollector();
 
-    public Set<String> getDependencies() {
-        return ((CollectingRemapper) super.remapper).classes;
-    }
+    private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(OPCODES) {
+        @Override
+        public void visit( String name, Object value ) {
+            collector.addConstant(value, ANNOTATION);
+            collector.addClassNameString(value, REFLECTION);
+        }
 
-    private static class CollectingRemapper extends Remapper {
+        @Override
+        public void visitEnum( String name, String descriptor, String value ) {
+            collector.addSignature(descriptor, ANNOTATION);
+        }
 
-        final Set<String> classes = new HashSet<String>();
+        @Override
+        public AnnotationVisitor visitAnnotation( String name, String descriptor ) {
+            collector.addSignature(descriptor, ANNOTATION);
+            return this;
+        }
 
-        public String map(String pClassName) {
-            classes.add(pClassName.replace('/', '.'));
-            return pClassName;
+        @Override
+        public AnnotationVisitor visitArray( String name ) {
+            return this;
         }
-    }
+    };
 
-    static class EmptyVisitor extends ClassVisitor {
+    private final MethodVisitor methodVisitor = new MethodVisitor(OPCODES) {
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            return annotationVisitor;
+        }
 
-        private static final AnnotationVisitor av = new AnnotationVisitor(OPCODES) {
-            @Override
-            public AnnotationVisitor visitAnnotation(String name, String desc) {
-                return this;
-            }
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            return annotation(descriptor);
+        }
 
-            @Override
-            public AnnotationVisitor visitArray(String name) {
-                return this;
-            }
-        };
+        @Override
+        public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
+                                                      boolean visible ) {
+            return annotation(descriptor);
+        }
 
-        private static final MethodVisitor mv = new MethodVisitor(OPCODES) {
-            @Override
-            public AnnotationVisitor visitAnnotationDefault() {
-                return av;
-            }
+        @Override
+        public AnnotationVisitor visitParameterAnnotation( int parameter, String descriptor, boolean visible ) {
+            return annotation(descriptor);
+        }
 
-            @Override
-            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                return av;
-            }
+        @Override
+        public void visitFrame( int type, int numLocal, Object[] local, int numStack, Object[] stack ) {
+            frameTypes(numLocal, local);
+            frameTypes(numStack, stack);
+        }
 
-            @Override
-            public AnnotationVisitor visitParameterAnnotation(
-                int parameter, String desc, boolean visible) {
-                return av;
-            }
+        @Override
+        public void visitTypeInsn( int opcode, String type ) {
+            collector.addInternalName(type, CODE);
+        }
 
-            @Override
-            public AnnotationVisitor visitInsnAnnotation( int typeRef, TypePath typePath, String descriptor,
-                                                          boolean visible ) {
-                return av;
-            }
+        @Override
+        public void visitFieldInsn( int opcode, String owner, String name, String descriptor ) {
+            collector.addInternalName(owner, CODE);
+            collector.addSignature(descriptor, CODE);
+        }
 
-            @Override
-            public AnnotationVisitor visitLocalVariableAnnotation( int typeRef, TypePath typePath, Label[] start,
-                                                                   Label[] end, int[] index, String descriptor,
-                                                                   boolean visible ) {
-                return av;
-            }
+        @Override
+        public void visitMethodInsn( int opcode, String owner, String name, String descriptor,
+                                     boolean isInterface ) {
+            collector.addInternalName(owner, CODE);
+            collector.addSignature(descriptor, CODE);
+        }
 
-            @Override
-            public AnnotationVisitor visitTryCatchAnnotation( int typeRef, TypePath typePath, String descriptor,
-                                                              boolean visible ) {
-                return av;
+        @Override
+        public void visitInvokeDynamicInsn( String name, String descriptor, Handle bootstrapMethodHandle,
+                                            Object... bootstrapMethodArguments ) {
+            collector.addSignature(descriptor, CODE);
+            collector.addHandle(bootstrapMethodHandle, CODE);
+            for (Object argument : bootstrapMethodArguments) {
+                collector.addConstant(argument, CODE);
             }
+        }
 
-            @Override
-            public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
-                                                          boolean visible ) {
-                return av;
-            }
-        };
+        @Override
+        public void visitLdcInsn( Object value ) {
+            collector.addConstant(value, CODE);
+            collector.addClassNameString(value, REFLECTION);
+        }
 
-        private static final FieldVisitor fieldVisitor = new FieldVisitor(OPCODES) {
-            @Override
-            public AnnotationVisitor visitAnnotation( String desc, boolean visible ) {
-                return av;
-            }
-            @Override
-            public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
-                                                          boolean visible ) {
-                return av;
-            }
-        };
+        @Override
+        public void visitMultiANewArrayInsn( String descriptor, int numDimensions ) {
+            collector.addSignature(descriptor, CODE);
+        }
 
-        private static final ModuleVisitor moduleVisitor = new ModuleVisitor(OPCODES) {
-        };
+        @Override
+        public AnnotationVisitor visitInsnAnnotation( int typeRef, TypePath typePath, String descriptor,
+                                                      boolean visible ) {
+            return annotation(descriptor);
+        }
 
-        private static final RecordComponentVisitor recordComponentVisitor = new RecordComponentVisitor(OPCODES) {
-            @Override
-            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-                return av;
-            }
+        @Override
+        public void visitTryCatchBlock( Label start, Label end, Label handler, String type ) {
+            collector.addInternalName(type, CODE);
+        }
 
-            @Override
-            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                return av;
-            }
-        };
+        @Override
+        public AnnotationVisitor visitTryCatchAnnotation( int typeRef, TypePath typePath, String descriptor,
+                                                          boolean visible ) {
+            return annotation(descriptor);
+        }
 
-        public EmptyVisitor() {
-            super(OPCODES);
+        @Override
+        public void visitLocalVariable( String name, String descriptor, String signature, Label start,
+                                        Label end, int index ) {
+            collector.addSignature(descriptor, SIGNATURE);
+            collector.addSignature(signature, SIGNATURE);
         }
 
         @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-            return av;
+        public AnnotationVisitor visitLocalVariableAnnotation( int typeRef, TypePath typePath, Label[] start,
+                                                               Label[] end, int[] index, String descriptor,
+                                                               boolean visible ) {
+            return annotation(descriptor);
         }
+    };
 
+    private final FieldVisitor fieldVisitor = new FieldVisitor(OPCODES) {
         @Override
-        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-            return fieldVisitor;
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            return annotation(descriptor);
         }
 
         @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-            return mv;
+        public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
+                                                      boolean visible ) {
+            return annotation(descriptor);
+        }
+    };
+
+    private final RecordComponentVisitor recordComponentVisitor = new RecordComponentVisitor(OPCODES) {
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            return annotation(descriptor);
         }
 
         @Override
         public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
                                                       boolean visible ) {
-            return av;
+            return annotation(descriptor);
         }
+    };
 
+    private final ModuleVisitor moduleVisitor = new ModuleVisitor(OPCODES) {
         @Override
-        public ModuleVisitor visitModule(String name, int access, String version) {
-            return moduleVisitor;
+        public void visitMainClass( String mainClass ) {
+            collector.addInternalName(mainClass, CODE);
         }
 
         @Override
-        public RecordComponentVisitor visitRecordComponent(String name, String descriptor, String signature) {
-            return recordComponentVisitor;
+        public void visitUse( String service ) {
+            collector.addInternalName(service, CODE);
         }
+
+        @Override
+        public void visitProvide( String service, String... providers ) {
+            collector.addInternalName(service, CODE);
+            collector.addInternalNames(providers, CODE);
+        }
+    };
+
+    public DependenciesClassAdapter() {
+        super(OPCODES);
+    }
+
+    /**
+     * @return the dependencies of the last visited class in dotted form,
+     *     without the names only guessed from string constants
+     */
+    public Set<String> getDependencies() {
+        final Set<String> dependencies = new HashSet<>();
+        for (int i = 0; i < collector.size(); i++) {
+            final int kinds = collector.getKinds(i);
+            if (kinds == 0 || (kinds & ~DependencyKind.WEAK) != 0) {
+                dependencies.add(collector.get(i));
+            }
+        }
+        return dependencies;
+    }
+
+    public int getDependencyCount() {
+        return collector.size();
+    }
+
+    public String getDependency( final int pIndex ) {
+        return collector.get(pIndex);
+    }
+
+    public int getDependencyKinds( final int pIndex ) {
+        return collector.getKinds(pIndex);
+    }
+
+    private AnnotationVisitor annotation( final String pDescriptor ) {
+        collector.addSignature(pDescriptor, ANNOTATION);
+        return annotationVisitor;
+    }
+
+    private void frameTypes( final int pCount, final Object[] pTypes ) {
+        if (pTypes == null) {
+            return;
+        }
+        for (int i = 0; i < pCount; i++) {
+            if (pTypes[i] instanceof String) {
+                collector.addInternalName((String) pTypes[i], CODE);
+            }
+        }
+    }
+
+    @Override
+    public void visit( int version, int access, String name, String signature, String superName,
+                       String[] interfaces ) {
+        collector.reset();
+        collector.addInternalName(name, 0);
+        collector.addSignature(signature, SIGNATURE);
+        collector.addInternalName(superName, INHERITANCE);
+        collector.addInternalNames(interfaces, INHERITANCE);
+    }
+
+    @Override
+    public ModuleVisitor visitModule( String name, int access, String version ) {
+        return moduleVisitor;
+    }
+
+    @Override
+    public void visitNestHost( String nestHost ) {
+        collector.addInternalName(nestHost, NESTING);
+    }
+
+    @Override
+    public void visitOuterClass( String owner, String name, String descriptor ) {
+        collector.addInternalName(owner, NESTING);
+        collector.addSignature(descriptor, NESTING);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+        return annotation(descriptor);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor,
+                                                  boolean visible ) {
+        return annotation(descriptor);
+    }
+
+    @Override
+    public void visitNestMember( String nestMember ) {
+        collector.addInternalName(nestMember, NESTING);
+    }
+
+    @Override
+    public void visitPermittedSubclass( String permittedSubclass ) {
+        collector.addInternalName(permittedSubclass, NESTING);
+    }
+
+    @Override
+    public void visitInnerClass( String name, String outerName, String innerName, int access ) {
+        collector.addInternalName(name, NESTING);
+        collector.addInternalName(outerName, NESTING);
+    }
+
+    @Override
+    public RecordComponentVisitor visitRecordComponent( String name, String descriptor, String signature ) {
+        collector.addSignature(descriptor, FIELD);
+        collector.addSignature(signature, SIGNATURE);
+        return recordComponentVisitor;
+    }
+
+    @Override
+    public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value ) {
+        collector.addSignature(descriptor, FIELD);
+        collector.addSignature(signature, SIGNATURE);
+        collector.addClassNameString(value, REFLECTION);
+        return fieldVisitor;
+    }
+
+    @Override
+    public MethodVisitor visitMethod( int access, String name, String descriptor, String signature,
+                                      String[] exceptions ) {
+        collector.addSignature(descriptor, METHOD);
+        collector.addSignature(signature, SIGNATURE);
+        collector.addInternalNames(exceptions, METHOD);
+        return methodVisitor;
     }
 }
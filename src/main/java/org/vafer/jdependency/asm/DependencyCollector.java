@@ -0,0 +1,405 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.asm;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+
+/**
+ * internal - do not use
+ *
+ * Collects the class names referenced by descriptors, signatures and
+ * internal names without creating intermediate strings. Names are looked
+ * up by their character range in a name table that survives `reset()`, so
+ * a name seen in an earlier class costs neither a substring nor the dotted
+ * conversion again. The table is dropped once it grows too big.
+ *
+ * Every name carries a bitmask of the `DependencyKind`s it was added with.
+ *
+ * Not thread safe, use one collector per thread.
+ */
+public final class DependencyCollector {
+
+    private static final int MAX_NAMES = 1 << 17;
+
+    // name table: ids index names, the hash table holds id + 1
+    private String[] internalNames = new String[256];
+    private String[] dottedNames = new String[256];
+    private int[] stamps = new int[256];
+    private int[] positions = new int[256];
+    private int[] table = new int[512];
+    private int names;
+
+    // ids and kinds of the names collected since the last reset
+    private int[] collected = new int[64];
+    private int[] kinds = new int[64];
+    private int count;
+    private int generation = 1;
+
+    // kind of the names currently being added
+    private int kind;
+
+    public void reset() {
+        count = 0;
+        generation++;
+
+        if (names > MAX_NAMES) {
+            Arrays.fill(internalNames, 0, names, null);
+            Arrays.fill(dottedNames, 0, names, null);
+            Arrays.fill(table, 0);
+            names = 0;
+        }
+
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the collected name at the given position in dotted form
+     */
+    public String get( final int pIndex ) {
+        return dottedNames[collected[pIndex]];
+    }
+
+    /**
+     * @return the `DependencyKind` mask of the collected name at the given position
+     */
+    public int getKinds( final int pIndex ) {
+        return kinds[pIndex];
+    }
+
+    /**
+     * Adds an internal name like `java/lang/String`. Array types like
+     * `[Ljava/lang/String;` are accepted as well.
+     */
+    public void addInternalName( final String pName, final int pKind ) {
+        kind = pKind;
+        internalName(pName);
+    }
+
+    public void addInternalNames( final String[] pNames, final int pKind ) {
+        if (pNames == null) {
+            return;
+        }
+        kind = pKind;
+        for (String name : pNames) {
+            internalName(name);
+        }
+    }
+
+    /**
+     * Adds all class names of a field or method descriptor, or of a generic
+     * class, method or field signature.
+     */
+    public void addSignature( final String pSignature, final int pKind ) {
+        kind = pKind;
+        signature(pSignature);
+    }
+
+    /**
+     * Adds the class names referenced by a constant like the ones of
+     * `ldc` instructions, bootstrap arguments or annotation values.
+     */
+    public void addConstant( final Object pValue, final int pKind ) {
+        kind = pKind;
+        constant(pValue);
+    }
+
+    /**
+     * Adds a string constant if it looks like a dotted class name, like
+     * `com.example.Foo` or `com.example.Foo$Bar`: at least one package, all
+     * parts identifiers and only the last one starting in upper case.
+     */
+    public void addClassNameString( final Object pValue, final int pKind ) {
+        if (pValue instanceof String && isClassName((String) pValue)) {
+            kind = pKind;
+            final String name = (String) pValue;
+            add(name.replace('.', '/'), 0, name.length());
+        }
+    }
+
+    static boolean isClassName( final String s ) {
+        final int n = s.length();
+        final int last = s.lastIndexOf('.');
+        if (n < 3 || last <= 0 || last == n - 1 || !Character.isUpperCase(s.charAt(last + 1))) {
+            return false;
+        }
+        boolean start = true;
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            if (c == '.') {
+                if (start) {
+                    return false;
+                }
+                start = true;
+            } else if (start) {
+                if (!Character.isJavaIdentifierStart(c) || (i < last && Character.isUpperCase(c))) {
+                    return false;
+                }
+                start = false;
+            } else if (!Character.isJavaIdentifierPart(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void addHandle( final Handle pHandle, final int pKind ) {
+        kind = pKind;
+        handle(pHandle);
+    }
+
+    private void internalName( final String pName ) {
+        if (pName == null) {
+            return;
+        }
+        if (pName.charAt(0) == '[') {
+            signature(pName);
+        } else {
+            add(pName, 0, pName.length());
+        }
+    }
+
+    private void signature( final String pSignature ) {
+        if (pSignature == null) {
+            return;
+        }
+
+        final int n = pSignature.length();
+        int i = 0;
+
+        if (n > 0 && pSignature.charAt(0) == '<') {
+            i = formalTypeParameters(pSignature, 1);
+        }
+
+        while (i < n) {
+            final char c = pSignature.charAt(i);
+            if (c == '(' || c == ')' || c == '^') {
+                i++;
+            } else {
+                i = type(pSignature, i);
+            }
+        }
+    }
+
+    private void constant( final Object pValue ) {
+        if (pValue instanceof Type) {
+            final Type type = (Type) pValue;
+            if (type.getSort() == Type.OBJECT) {
+                internalName(type.getInternalName());
+            } else if (type.getSort() == Type.ARRAY || type.getSort() == Type.METHOD) {
+                signature(type.getDescriptor());
+            }
+        } else if (pValue instanceof Handle) {
+            handle((Handle) pValue);
+        } else if (pValue instanceof ConstantDynamic) {
+            final ConstantDynamic dynamic = (ConstantDynamic) pValue;
+            signature(dynamic.getDescriptor());
+            handle(dynamic.getBootstrapMethod());
+            for (int i = 0; i < dynamic.getBootstrapMethodArgumentCount(); i++) {
+                constant(dynamic.getBootstrapMethodArgument(i));
+            }
+        }
+    }
+
+    private void handle( final Handle pHandle ) {
+        internalName(pHandle.getOwner());
+        signature(pHandle.getDesc());
+    }
+
+    private int type( final String s, final int i ) {
+        switch (s.charAt(i)) {
+            case 'L':
+                return classType(s, i + 1);
+            case '[':
+                return type(s, i + 1);
+            case 'T':
+                return s.indexOf(';', i) + 1;
+            default:
+                // primitive or void
+                return i + 1;
+        }
+    }
+
+    private int classType( final String s, final int pStart ) {
+
+        int i = identifier(s, pStart);
+        add(s, pStart, i);
+
+        if (s.charAt(i) == '<') {
+            i = typeArguments(s, i + 1);
+        }
+
+        if (s.charAt(i) == '.') {
+            // inner class of a parameterized type, Outer<T>.Inner is Outer$Inner
+            final StringBuilder name = new StringBuilder(s.length());
+            name.append(s, pStart, identifier(s, pStart));
+
+            while (s.charAt(i) == '.') {
+                final int start = i + 1;
+                i = identifier(s, start);
+                name.append('$').append(s, start, i);
+                add(name, 0, name.length());
+
+                if (s.charAt(i) == '<') {
+                    i = typeArguments(s, i + 1);
+                }
+            }
+        }
+
+        // skip ';'
+        return i + 1;
+    }
+
+    private static int identifier( final String s, int i ) {
+        while (true) {
+            final char c = s.charAt(i);
+            if (c == ';' || c == '<' || c == '.') {
+                return i;
+            }
+            i++;
+        }
+    }
+
+    private int typeArguments( final String s, int i ) {
+        while (s.charAt(i) != '>') {
+            final char c = s.charAt(i);
+            if (c == '*') {
+                i++;
+            } else if (c == '+' || c == '-') {
+                i = type(s, i + 1);
+            } else {
+                i = type(s, i);
+            }
+        }
+        return i + 1;
+    }
+
+    private int formalTypeParameters( final String s, int i ) {
+        while (s.charAt(i) != '>') {
+            // skip the name, then the class bound (maybe empty) and interface bounds
+            i = s.indexOf(':', i);
+            while (s.charAt(i) == ':') {
+                i++;
+                final char c = s.charAt(i);
+                if (c == 'L' || c == '[' || c == 'T') {
+                    i = type(s, i);
+                }
+            }
+        }
+        return i + 1;
+    }
+
+    private void add( final CharSequence s, final int pStart, final int pEnd ) {
+
+        int hash = 0;
+        for (int i = pStart; i < pEnd; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+
+        final int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (true) {
+            final int id = table[slot] - 1;
+
+            if (id < 0) {
+                break;
+            }
+
+            final String name = internalNames[id];
+            if (name.hashCode() == hash && matches(name, s, pStart, pEnd)) {
+                if (stamps[id] != generation) {
+                    stamps[id] = generation;
+                    collect(id);
+                } else {
+                    kinds[positions[id]] |= kind;
+                }
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        final int id = names++;
+        if (id == internalNames.length) {
+            final int capacity = id * 2;
+            internalNames = Arrays.copyOf(internalNames, capacity);
+            dottedNames = Arrays.copyOf(dottedNames, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+
+        final String name = s.subSequence(pStart, pEnd).toString();
+        internalNames[id] = name;
+        dottedNames[id] = name.replace('/', '.');
+        stamps[id] = generation;
+        table[slot] = id + 1;
+        collect(id);
+
+        if (names * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private static boolean matches( final String pName, final CharSequence s, final int pStart, final int pEnd ) {
+        if (pName.length() != pEnd - pStart) {
+            return false;
+        }
+        for (int i = pStart; i < pEnd; i++) {
+            if (pName.charAt(i - pStart) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collect( final int pId ) {
+        if (count == collected.length) {
+            collected = Arrays.copyOf(collected, count * 2);
+            kinds = Arrays.copyOf(kinds, count * 2);
+        }
+        positions[pId] = count;
+        kinds[count] = kind;
+        collected[count++] = pId;
+    }
+
+    private void rehash( final int pCapacity ) {
+        table = new int[pCapacity];
+        final int mask = pCapacity - 1;
+        for (int id = 0; id < names; id++) {
+            int slot = mix(internalNames[id].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int mix( final int pHash ) {
+        final int h = pHash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,797 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.asm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * internal - do not use
+ *
+ * Compact tables of the classes, members and member level edges found by
+ * the `MembersClassAdapter`. Class names, member names and descriptors are
+ * interned to ints, a member is keyed by (class, name, descriptor) and all
+ * edges are kept in flat int arrays, so even 100k classes stay small.
+ *
+ * Members are also created for references to members that are not (yet)
+ * declared. They get resolved along the class hierarchy when reachability
+ * is computed.
+ */
+public final class MemberTable {
+
+    public static final int VIRTUAL = 0;
+    public static final int DIRECT = 1;
+    public static final int FIELD = 2;
+    public static final int INSTANTIATE = 3;
+    public static final int USE = 4;
+
+    private static final int UNDECLARED = -1;
+
+    private static final String ANNOTATIONS = "<annotations>";
+
+    private final Strings strings = new Strings();
+    private final LongIntMap classIds = new LongIntMap();
+    private final LongIntMap signatureIds = new LongIntMap();
+    private final LongIntMap memberIds = new LongIntMap();
+
+    // classes
+    private int[] className = new int[64];
+    private int[] superClass = new int[64];
+    private int[][] interfaces = new int[64][];
+    private int[] firstMember = new int[64];
+    private boolean[] analyzed = new boolean[64];
+    private int classes;
+
+    // signatures, a name and a descriptor
+    private int[] signatureName = new int[64];
+    private int[] signatureDescriptor = new int[64];
+    private int signatures;
+
+    // members
+    private int[] memberClass = new int[256];
+    private int[] memberSignature = new int[256];
+    private int[] memberAccess = new int[256];
+    private int[] nextMember = new int[256];
+    private int members;
+
+    // edges
+    private int[] edgeFrom = new int[1024];
+    private int[] edgeTo = new int[1024];
+    private byte[] edgeKind = new byte[1024];
+    private int edges;
+
+    // classes whose edges are yet to be dropped
+    private final BitSet forgotten = new BitSet();
+
+    // computed for queries
+    private int[] edgeStart;
+    private int[] edgeOrder;
+    private int[][] subClasses;
+
+    public int getClassCount() {
+        return classes;
+    }
+
+    public int getMemberCount() {
+        return members;
+    }
+
+    public int getEdgeCount() {
+        dropForgottenEdges();
+        return edges;
+    }
+
+    /**
+     * @return the id of the class with the given internal name
+     */
+    public int clazz( final String pInternalName ) {
+        final int name = strings.intern(pInternalName);
+        final int id = classIds.get(name);
+        if (id >= 0) {
+            return id;
+        }
+        if (classes == className.length) {
+            final int capacity = classes * 2;
+            className = Arrays.copyOf(className, capacity);
+            superClass = Arrays.copyOf(superClass, capacity);
+            interfaces = Arrays.copyOf(interfaces, capacity);
+            firstMember = Arrays.copyOf(firstMember, capacity);
+            analyzed = Arrays.copyOf(analyzed, capacity);
+        }
+        className[classes] = name;
+        superClass[classes] = -1;
+        firstMember[classes] = -1;
+        classIds.put(name, classes);
+        invalidate();
+        return classes++;
+    }
+
+    /**
+     * @return the id of the class if it is known, -1 otherwise
+     */
+    public int findClazz( final String pInternalName ) {
+        final int name = strings.find(pInternalName);
+        return name < 0 ? -1 : classIds.get(name);
+    }
+
+    /**
+     * @return the id of the member with the given name and descriptor, declared or not
+     */
+    public int member( final int pClazz, final String pName, final String pDescriptor ) {
+        final int signature = signature(strings.intern(pName), strings.intern(pDescriptor));
+        final long key = ((long) pClazz << 32) | signature;
+        final int id = memberIds.get(key);
+        if (id >= 0) {
+            return id;
+        }
+        if (members == memberClass.length) {
+            final int capacity = members * 2;
+            memberClass = Arrays.copyOf(memberClass, capacity);
+            memberSignature = Arrays.copyOf(memberSignature, capacity);
+            memberAccess = Arrays.copyOf(memberAccess, capacity);
+            nextMember = Arrays.copyOf(nextMember, capacity);
+        }
+        memberClass[members] = pClazz;
+        memberSignature[members] = signature;
+        memberAccess[members] = UNDECLARED;
+        nextMember[members] = -1;
+        memberIds.put(key, members);
+        return members++;
+    }
+
+    /**
+     * @return the id of the member that is never declared and holds the
+     *     uses of the annotations on a class, which are needed whenever
+     *     the class is
+     */
+    public int annotations( final int pClazz ) {
+        return member(pClazz, ANNOTATIONS, "()V");
+    }
+
+    private int signature( final int pName, final int pDescriptor ) {
+        final long key = ((long) pName << 32) | pDescriptor;
+        final int id = signatureIds.get(key);
+        if (id >= 0) {
+            return id;
+        }
+        if (signatures == signatureName.length) {
+            signatureName = Arrays.copyOf(signatureName, signatures * 2);
+            signatureDescriptor = Arrays.copyOf(signatureDescriptor, signatures * 2);
+        }
+        signatureName[signatures] = pName;
+        signatureDescriptor[signatures] = pDescriptor;
+        signatureIds.put(key, signatures);
+        return signatures++;
+    }
+
+    public void declareClazz( final int pClazz, final int pSuperClass, final int[] pInterfaces ) {
+        superClass[pClazz] = pSuperClass;
+        interfaces[pClazz] = pInterfaces;
+        analyzed[pClazz] = true;
+        invalidate();
+    }
+
+    public void declareMember( final int pMember, final int pAccess ) {
+        if (memberAccess[pMember] == UNDECLARED) {
+            final int clazz = memberClass[pMember];
+            nextMember[pMember] = firstMember[clazz];
+            firstMember[clazz] = pMember;
+        }
+        memberAccess[pMember] = pAccess & 0xFFFF;
+    }
+
+    /**
+     * Drops the members, the hierarchy and the edges of a class that is no
+     * longer part of the classpath. The edges are dropped in one pass
+     * before the next one is added or the edges are indexed, so forgetting
+     * a whole unit stays linear.
+     */
+    public void forgetClazz( final int pClazz ) {
+        forgotten.set(pClazz);
+        for (int m = firstMember[pClazz]; m >= 0; m = nextMember[m]) {
+            memberAccess[m] = UNDECLARED;
+        }
+        firstMember[pClazz] = -1;
+        superClass[pClazz] = -1;
+        interfaces[pClazz] = null;
+        analyzed[pClazz] = false;
+        invalidate();
+    }
+
+    /**
+     * Adds the classes, members and edges of another table, as if their
+     * classes had been visited into this one.
+     */
+    public void addAll( final MemberTable pOther ) {
+
+        dropForgottenEdges();
+
+        final int[] clazzOf = new int[pOther.classes];
+        for (int c = 0; c < pOther.classes; c++) {
+            clazzOf[c] = clazz(pOther.getClazzName(c));
+        }
+        for (int c = 0; c < pOther.classes; c++) {
+            if (pOther.analyzed[c]) {
+                final int[] otherInterfaces = pOther.interfaces[c];
+                final int[] interfaceIds = new int[otherInterfaces == null ? 0 : otherInterfaces.length];
+                for (int i = 0; i < interfaceIds.length; i++) {
+                    interfaceIds[i] = clazzOf[otherInterfaces[i]];
+                }
+                final int otherSuperClass = pOther.superClass[c];
+                declareClazz(clazzOf[c], otherSuperClass < 0 ? -1 : clazzOf[otherSuperClass], interfaceIds);
+            }
+        }
+
+        final int[] memberOf = new int[pOther.members];
+        for (int m = 0; m < pOther.members; m++) {
+            memberOf[m] = member(clazzOf[pOther.memberClass[m]], pOther.getMemberName(m), pOther.getMemberDescriptor(m));
+            if (pOther.isDeclared(m)) {
+                declareMember(memberOf[m], pOther.memberAccess[m]);
+            }
+        }
+
+        for (int e = 0; e < pOther.edges; e++) {
+            final int kind = pOther.edgeKind[e];
+            final int to = kind == INSTANTIATE || kind == USE ? clazzOf[pOther.edgeTo[e]] : memberOf[pOther.edgeTo[e]];
+            addEdge(memberOf[pOther.edgeFrom[e]], to, kind);
+        }
+    }
+
+    public void addEdge( final int pFrom, final int pTo, final int pKind ) {
+        dropForgottenEdges();
+        if (edges == edgeFrom.length) {
+            final int capacity = edges * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeKind = Arrays.copyOf(edgeKind, capacity);
+        }
+        edgeFrom[edges] = pFrom;
+        edgeTo[edges] = pTo;
+        edgeKind[edges] = (byte) pKind;
+        edges++;
+        edgeStart = null;
+    }
+
+    public String getClazzName( final int pClazz ) {
+        return strings.get(className[pClazz]);
+    }
+
+    public boolean isAnalyzed( final int pClazz ) {
+        return analyzed[pClazz];
+    }
+
+    public int getMemberClazz( final int pMember ) {
+        return memberClass[pMember];
+    }
+
+    public String getMemberName( final int pMember ) {
+        return strings.get(signatureName[memberSignature[pMember]]);
+    }
+
+    public String getMemberDescriptor( final int pMember ) {
+        return strings.get(signatureDescriptor[memberSignature[pMember]]);
+    }
+
+    public boolean isDeclared( final int pMember ) {
+        return memberAccess[pMember] != UNDECLARED;
+    }
+
+    public boolean isField( final int pMember ) {
+        return getMemberDescriptor(pMember).charAt(0) != '(';
+    }
+
+    public int getAccess( final int pMember ) {
+        return memberAccess[pMember];
+    }
+
+    /**
+     * @return the declared members of a class, -1 terminated through `getNextMember`
+     */
+    public int getFirstMember( final int pClazz ) {
+        return firstMember[pClazz];
+    }
+
+    public int getNextMember( final int pMember ) {
+        return nextMember[pMember];
+    }
+
+    /**
+     * Computes the members reachable from the entry members. Calls are
+     * resolved along the class hierarchy, virtual calls also reach the
+     * overriding methods of all known subclasses. Reaching a member
+     * initializes its class. Instantiated classes keep the methods that
+     * may be called back from outside the table: overrides of the methods
+     * of `java.lang.Object`, the serialization hooks of serializable
+     * classes, and all non-private instance methods of classes with a
+     * supertype that was not analyzed. Initialized enums keep `values()`
+     * and `valueOf`, which `Enum.valueOf` and switches call reflectively.
+     *
+     * @param pEntries ids of the entry members
+     * @param pReachable receives the ids of the reachable members
+     * @param pUsed receives the ids of all classes that are needed
+     */
+    public void reachable( final int[] pEntries, final BitSet pReachable, final BitSet pUsed ) {
+
+        index();
+
+        final BitSet initialized = new BitSet(classes);
+        final BitSet instantiated = new BitSet(classes);
+        final BitSet dispatched = new BitSet(members);
+        final int[] stack = new int[classes + 1];
+        final int[] visited = new int[classes];
+        final int[] worklist = new int[members];
+        int pending = 0;
+        int stamp = 0;
+
+        for (int entry : pEntries) {
+            pending = mark(resolve(entry), pReachable, worklist, pending);
+        }
+
+        while (pending > 0) {
+            final int member = worklist[--pending];
+            final int clazz = memberClass[member];
+
+            pending = initialize(clazz, initialized, pUsed, pReachable, worklist, pending);
+
+            if ("<init>".equals(getMemberName(member))) {
+                pending = instantiate(clazz, instantiated, pReachable, worklist, pending);
+            }
+
+            for (int i = edgeStart[member]; i < edgeStart[member + 1]; i++) {
+                final int e = edgeOrder[i];
+                final int to = edgeTo[e];
+
+                switch (edgeKind[e]) {
+                    case VIRTUAL:
+                        pending = mark(resolve(to), pReachable, worklist, pending);
+                        pending = markOverrides(to, dispatched, stack, visited, ++stamp, pReachable, worklist, pending);
+                        break;
+                    case DIRECT:
+                    case FIELD:
+                        pending = mark(resolve(to), pReachable, worklist, pending);
+                        break;
+                    case INSTANTIATE:
+                        pending = initialize(to, initialized, pUsed, pReachable, worklist, pending);
+                        pending = instantiate(to, instantiated, pReachable, worklist, pending);
+                        break;
+                    default:
+                        use(to, pUsed);
+                        break;
+                }
+            }
+        }
+    }
+
+    private int mark( final int pMember, final BitSet pReachable, final int[] pWorklist, final int pPending ) {
+        if (pMember < 0 || !isDeclared(pMember) || pReachable.get(pMember)) {
+            return pPending;
+        }
+        pReachable.set(pMember);
+        pWorklist[pPending] = pMember;
+        return pPending + 1;
+    }
+
+    private int initialize( final int pClazz, final BitSet pInitialized, final BitSet pUsed, final BitSet pReachable,
+                            final int[] pWorklist, int pPending ) {
+        for (int c = pClazz; c >= 0 && !pInitialized.get(c); c = superClass[c]) {
+            pInitialized.set(c);
+            use(c, pUsed);
+            pPending = mark(declared(c, "<clinit>", "()V"), pReachable, pWorklist, pPending);
+            if (superClass[c] >= 0 && "java/lang/Enum".equals(getClazzName(superClass[c]))) {
+                final String type = "L" + getClazzName(c) + ";";
+                pPending = mark(declared(c, "values", "()[" + type), pReachable, pWorklist, pPending);
+                pPending = mark(declared(c, "valueOf", "(Ljava/lang/String;)" + type), pReachable, pWorklist, pPending);
+            }
+        }
+        return pPending;
+    }
+
+    private int instantiate( final int pClazz, final BitSet pInstantiated, final BitSet pReachable,
+                             final int[] pWorklist, int pPending ) {
+        if (pInstantiated.get(pClazz)) {
+            return pPending;
+        }
+        pInstantiated.set(pClazz);
+
+        final boolean external = hasExternalSuperType(pClazz);
+        final boolean serializable = isSubType(pClazz, findClazz("java/io/Serializable"));
+
+        for (int m = firstMember[pClazz]; m >= 0; m = nextMember[m]) {
+            final int access = memberAccess[m];
+            if ((access & Opcodes.ACC_STATIC) != 0 || isField(m) || getMemberName(m).charAt(0) == '<') {
+                continue;
+            }
+            if (overridesObject(m) || (serializable && isSerializationHook(m))
+                || (external && (access & Opcodes.ACC_PRIVATE) == 0)) {
+                pPending = mark(m, pReachable, pWorklist, pPending);
+            }
+        }
+        return pPending;
+    }
+
+    private int markOverrides( final int pMember, final BitSet pDispatched, final int[] pStack, final int[] pVisited,
+                               final int pStamp, final BitSet pReachable, final int[] pWorklist, int pPending ) {
+        if (pDispatched.get(pMember)) {
+            return pPending;
+        }
+        pDispatched.set(pMember);
+
+        final int signature = memberSignature[pMember];
+        int top = 0;
+        pStack[top++] = memberClass[pMember];
+
+        while (top > 0) {
+            final int[] children = subClasses[pStack[--top]];
+            if (children == null) {
+                continue;
+            }
+            for (int child : children) {
+                if (pVisited[child] == pStamp) {
+                    continue;
+                }
+                pVisited[child] = pStamp;
+                pStack[top++] = child;
+                // the implementation may also be inherited from a super class of the child
+                pPending = mark(inherited(child, signature), pReachable, pWorklist, pPending);
+            }
+        }
+        return pPending;
+    }
+
+    private void use( final int pClazz, final BitSet pUsed ) {
+        if (pClazz < 0 || pUsed.get(pClazz)) {
+            return;
+        }
+        pUsed.set(pClazz);
+        final int annotations = declared(pClazz, ANNOTATIONS, "()V");
+        if (annotations >= 0) {
+            for (int i = edgeStart[annotations]; i < edgeStart[annotations + 1]; i++) {
+                use(edgeTo[edgeOrder[i]], pUsed);
+            }
+        }
+        use(superClass[pClazz], pUsed);
+        if (interfaces[pClazz] != null) {
+            for (int i : interfaces[pClazz]) {
+                use(i, pUsed);
+            }
+        }
+    }
+
+    /**
+     * @return the declared member a reference resolves to, searching the
+     * super classes first and then the interfaces, or -1
+     */
+    private int resolve( final int pMember ) {
+        if (isDeclared(pMember)) {
+            return pMember;
+        }
+        final int signature = memberSignature[pMember];
+        final int member = inherited(superClass[memberClass[pMember]], signature);
+        if (member >= 0) {
+            return member;
+        }
+        return resolveInterface(memberClass[pMember], signature, new BitSet());
+    }
+
+    /**
+     * @return the member declared by the class or its closest super class, or -1
+     */
+    private int inherited( final int pClazz, final int pSignature ) {
+        for (int c = pClazz; c >= 0; c = superClass[c]) {
+            final int member = memberIds.get(((long) c << 32) | pSignature);
+            if (member >= 0 && isDeclared(member)) {
+                return member;
+            }
+        }
+        return -1;
+    }
+
+    private int resolveInterface( final int pClazz, final int pSignature, final BitSet pVisited ) {
+        for (int c = pClazz; c >= 0; c = superClass[c]) {
+            if (interfaces[c] == null) {
+                continue;
+            }
+            for (int i : interfaces[c]) {
+                if (pVisited.get(i)) {
+                    continue;
+                }
+                pVisited.set(i);
+                final int member = memberIds.get(((long) i << 32) | pSignature);
+                if (member >= 0 && isDeclared(member)) {
+                    return member;
+                }
+                final int inherited = resolveInterface(i, pSignature, pVisited);
+                if (inherited >= 0) {
+                    return inherited;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int declared( final int pClazz, final String pName, final String pDescriptor ) {
+        final int name = strings.find(pName);
+        final int descriptor = strings.find(pDescriptor);
+        if (name < 0 || descriptor < 0) {
+            return -1;
+        }
+        final int signature = signatureIds.get(((long) name << 32) | descriptor);
+        if (signature < 0) {
+            return -1;
+        }
+        return memberIds.get(((long) pClazz << 32) | signature);
+    }
+
+    private boolean overridesObject( final int pMember ) {
+        final String name = getMemberName(pMember);
+        final String descriptor = getMemberDescriptor(pMember);
+        return ("toString".equals(name) && "()Ljava/lang/String;".equals(descriptor))
+            || ("hashCode".equals(name) && "()I".equals(descriptor))
+            || ("equals".equals(name) && "(Ljava/lang/Object;)Z".equals(descriptor))
+            || ("finalize".equals(name) && "()V".equals(descriptor))
+            || ("clone".equals(name) && descriptor.startsWith("()"));
+    }
+
+    private boolean isSerializationHook( final int pMember ) {
+        final String name = getMemberName(pMember);
+        final String descriptor = getMemberDescriptor(pMember);
+        return ("writeObject".equals(name) && "(Ljava/io/ObjectOutputStream;)V".equals(descriptor))
+            || ("readObject".equals(name) && "(Ljava/io/ObjectInputStream;)V".equals(descriptor))
+            || ("readObjectNoData".equals(name) && "()V".equals(descriptor))
+            || ("writeReplace".equals(name) && "()Ljava/lang/Object;".equals(descriptor))
+            || ("readResolve".equals(name) && "()Ljava/lang/Object;".equals(descriptor));
+    }
+
+    private boolean isSubType( final int pClazz, final int pType ) {
+        if (pType < 0 || pClazz < 0) {
+            return false;
+        }
+        if (pClazz == pType || isSubType(superClass[pClazz], pType)) {
+            return true;
+        }
+        if (interfaces[pClazz] != null) {
+            for (int i : interfaces[pClazz]) {
+                if (isSubType(i, pType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasExternalSuperType( final int pClazz ) {
+        if (!analyzed[pClazz]) {
+            return !"java/lang/Object".equals(getClazzName(pClazz));
+        }
+        if (superClass[pClazz] >= 0 && hasExternalSuperType(superClass[pClazz])) {
+            return true;
+        }
+        if (interfaces[pClazz] != null) {
+            for (int i : interfaces[pClazz]) {
+                if (hasExternalSuperType(i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void invalidate() {
+        subClasses = null;
+    }
+
+    private void dropForgottenEdges() {
+        if (forgotten.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (int e = 0; e < edges; e++) {
+            if (!forgotten.get(memberClass[edgeFrom[e]])) {
+                edgeFrom[kept] = edgeFrom[e];
+                edgeTo[kept] = edgeTo[e];
+                edgeKind[kept] = edgeKind[e];
+                kept++;
+            }
+        }
+        if (kept != edges) {
+            edges = kept;
+            edgeStart = null;
+        }
+        forgotten.clear();
+    }
+
+    private void index() {
+
+        dropForgottenEdges();
+
+        if (edgeStart == null || edgeStart.length != members + 1) {
+            // counting sort of the edges by their source member
+            edgeStart = new int[members + 1];
+            for (int e = 0; e < edges; e++) {
+                edgeStart[edgeFrom[e] + 1]++;
+            }
+            for (int m = 0; m < members; m++) {
+                edgeStart[m + 1] += edgeStart[m];
+            }
+            edgeOrder = new int[edges];
+            final int[] next = Arrays.copyOf(edgeStart, members);
+            for (int e = 0; e < edges; e++) {
+                edgeOrder[next[edgeFrom[e]]++] = e;
+            }
+        }
+
+        if (subClasses == null) {
+            final int[] counts = new int[classes];
+            for (int c = 0; c < classes; c++) {
+                if (superClass[c] >= 0) {
+                    counts[superClass[c]]++;
+                }
+                if (interfaces[c] != null) {
+                    for (int i : interfaces[c]) {
+                        counts[i]++;
+                    }
+                }
+            }
+            subClasses = new int[classes][];
+            for (int c = 0; c < classes; c++) {
+                if (counts[c] > 0) {
+                    subClasses[c] = new int[counts[c]];
+                }
+            }
+            for (int c = 0; c < classes; c++) {
+                if (superClass[c] >= 0) {
+                    subClasses[superClass[c]][--counts[superClass[c]]] = c;
+                }
+                if (interfaces[c] != null) {
+                    for (int i : interfaces[c]) {
+                        subClasses[i][--counts[i]] = c;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Interns strings to dense ids.
+     */
+    private static final class Strings {
+
+        private String[] values = new String[256];
+        private int[] table = new int[512];
+        private int size;
+
+        int intern( final String pValue ) {
+            final int mask = table.length - 1;
+            int slot = mix(pValue.hashCode()) & mask;
+            while (table[slot] != 0) {
+                final int id = table[slot] - 1;
+                if (values[id].equals(pValue)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = pValue;
+            table[slot] = size + 1;
+            size++;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        int find( final String pValue ) {
+            final int mask = table.length - 1;
+            int slot = mix(pValue.hashCode()) & mask;
+            while (table[slot] != 0) {
+                final int id = table[slot] - 1;
+                if (values[id].equals(pValue)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        String get( final int pId ) {
+            return values[pId];
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            final int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix(values[id].hashCode()) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+    }
+
+    /**
+     * Open addressing map from long keys to non-negative ints.
+     */
+    private static final class LongIntMap {
+
+        private long[] keys = new long[512];
+        private int[] values = new int[512];
+        private int size;
+
+        LongIntMap() {
+            Arrays.fill(values, -1);
+        }
+
+        int get( final long pKey ) {
+            final int mask = keys.length - 1;
+            int slot = mix(Long.hashCode(pKey)) & mask;
+            while (values[slot] >= 0) {
+                if (keys[slot] == pKey) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put( final long pKey, final int pValue ) {
+            final int mask = keys.length - 1;
+            int slot = mix(Long.hashCode(pKey)) & mask;
+            while (values[slot] >= 0) {
+                if (keys[slot] == pKey) {
+                    values[slot] = pValue;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = pKey;
+            values[slot] = pValue;
+            size++;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(values, -1);
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    int slot = mix(Long.hashCode(oldKeys[i])) & mask;
+                    while (values[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static int mix( final int pHash ) {
+        final int h = pHash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.asm;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * internal - do not use
+ *
+ * Records the declared fields and methods of a class, the types of their
+ * descriptors and annotations and the member level edges of its method
+ * bodies (calls, field accesses, method handles and class uses) into a
+ * `MemberTable`. Like the `DependenciesClassAdapter` it can be reused for
+ * many classes.
+ */
+public final class MembersClassAdapter extends ClassVisitor {
+
+    private static final int OPCODES = Opcodes.ASM9;
+
+    private final MemberTable table;
+
+    private int clazz;
+    private int field;
+    private int method;
+    private int annotated;
+
+    private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(OPCODES) {
+
+        @Override
+        public void visit( String name, Object value ) {
+            if (value instanceof Type) {
+                useType(annotated, (Type) value);
+            }
+        }
+
+        @Override
+        public void visitEnum( String name, String descriptor, String value ) {
+            useType(annotated, Type.getType(descriptor));
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String name, String descriptor ) {
+            useType(annotated, Type.getType(descriptor));
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray( String name ) {
+            return this;
+        }
+    };
+
+    private final FieldVisitor fieldVisitor = new FieldVisitor(OPCODES) {
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            return annotation(field, descriptor);
+        }
+    };
+
+    private final MethodVisitor methodVisitor = new MethodVisitor(OPCODES) {
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            return annotation(method, descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation( int parameter, String descriptor, boolean visible ) {
+            return annotation(method, descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            annotated = method;
+            return annotationVisitor;
+        }
+
+        @Override
+        public void visitTypeInsn( int opcode, String type ) {
+            useClazz(type, opcode == Opcodes.NEW ? MemberTable.INSTANTIATE : MemberTable.USE);
+        }
+
+        @Override
+        public void visitFieldInsn( int opcode, String owner, String name, String descriptor ) {
+            reference(owner, name, descriptor, MemberTable.FIELD);
+        }
+
+        @Override
+        public void visitMethodInsn( int opcode, String owner, String name, String descriptor,
+                                     boolean isInterface ) {
+            final boolean virtual = opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE;
+            reference(owner, name, descriptor, virtual ? MemberTable.VIRTUAL : MemberTable.DIRECT);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn( String name, String descriptor, Handle bootstrapMethodHandle,
+                                            Object... bootstrapMethodArguments ) {
+            handle(bootstrapMethodHandle);
+            for (Object argument : bootstrapMethodArguments) {
+                constant(argument);
+            }
+        }
+
+        @Override
+        public void visitLdcInsn( Object value ) {
+            constant(value);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn( String descriptor, int numDimensions ) {
+            useClazz(descriptor, MemberTable.USE);
+        }
+
+        @Override
+        public void visitTryCatchBlock( Label start, Label end, Label handler, String type ) {
+            if (type != null) {
+                useClazz(type, MemberTable.USE);
+            }
+        }
+    };
+
+    public MembersClassAdapter( final MemberTable pTable ) {
+        super(OPCODES);
+        table = pTable;
+    }
+
+    @Override
+    public void visit( int version, int access, String name, String signature, String superName,
+                       String[] interfaces ) {
+        clazz = table.clazz(name);
+
+        final int[] interfaceIds = new int[interfaces == null ? 0 : interfaces.length];
+        for (int i = 0; i < interfaceIds.length; i++) {
+            interfaceIds[i] = table.clazz(interfaces[i]);
+        }
+
+        table.declareClazz(clazz, superName == null ? -1 : table.clazz(superName), interfaceIds);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+        return annotation(table.annotations(clazz), descriptor);
+    }
+
+    @Override
+    public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value ) {
+        field = table.member(clazz, name, descriptor);
+        table.declareMember(field, access);
+        useType(field, Type.getType(descriptor));
+        return fieldVisitor;
+    }
+
+    @Override
+    public MethodVisitor visitMethod( int access, String name, String descriptor, String signature,
+                                      String[] exceptions ) {
+        method = table.member(clazz, name, descriptor);
+        table.declareMember(method, access);
+        for (Type argument : Type.getArgumentTypes(descriptor)) {
+            useType(method, argument);
+        }
+        useType(method, Type.getReturnType(descriptor));
+        return methodVisitor;
+    }
+
+    private void reference( final String pOwner, final String pName, final String pDescriptor, final int pKind ) {
+        if (pOwner.charAt(0) == '[') {
+            // methods of arrays are the ones of java.lang.Object
+            reference("java/lang/Object", pName, pDescriptor, pKind);
+            return;
+        }
+        table.addEdge(method, table.member(table.clazz(pOwner), pName, pDescriptor), pKind);
+    }
+
+    private void useClazz( final String pType, final int pKind ) {
+        final Type type = pType.charAt(0) == '[' ? Type.getType(pType).getElementType() : Type.getObjectType(pType);
+        if (type.getSort() == Type.OBJECT) {
+            table.addEdge(method, table.clazz(type.getInternalName()), pKind);
+        }
+    }
+
+    /**
+     * Parameter, return and field types are needed whenever their member is.
+     */
+    private void useType( final int pMember, final Type pType ) {
+        final Type type = pType.getSort() == Type.ARRAY ? pType.getElementType() : pType;
+        if (type.getSort() == Type.OBJECT) {
+            table.addEdge(pMember, table.clazz(type.getInternalName()), MemberTable.USE);
+        }
+    }
+
+    /**
+     * The types of annotations, and of the enums and classes in their
+     * values, are needed whenever the annotated member or class is.
+     */
+    private AnnotationVisitor annotation( final int pAnnotated, final String pDescriptor ) {
+        annotated = pAnnotated;
+        useType(pAnnotated, Type.getType(pDescriptor));
+        return annotationVisitor;
+    }
+
+    private void handle( final Handle pHandle ) {
+        switch (pHandle.getTag()) {
+            case Opcodes.H_GETFIELD:
+            case Opcodes.H_GETSTATIC:
+            case Opcodes.H_PUTFIELD:
+            case Opcodes.H_PUTSTATIC:
+                reference(pHandle.getOwner(), pHandle.getName(), pHandle.getDesc(), MemberTable.FIELD);
+                break;
+            case Opcodes.H_INVOKEVIRTUAL:
+            case Opcodes.H_INVOKEINTERFACE:
+                reference(pHandle.getOwner(), pHandle.getName(), pHandle.getDesc(), MemberTable.VIRTUAL);
+                break;
+            default:
+                reference(pHandle.getOwner(), pHandle.getName(), pHandle.getDesc(), MemberTable.DIRECT);
+                break;
+        }
+    }
+
+    private void constant( final Object pValue ) {
+        if (pValue instanceof Type) {
+            final Type type = (Type) pValue;
+            if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
+                useClazz(type.getInternalName(), MemberTable.USE);
+            }
+        } else if (pValue instanceof Handle) {
+            handle((Handle) pValue);
+        } else if (pValue instanceof ConstantDynamic) {
+            final ConstantDynamic dynamic = (ConstantDynamic) pValue;
+            handle(dynamic.getBootstrapMethod());
+            for (int i = 0; i < dynamic.getBootstrapMethodArgumentCount(); i++) {
+                constant(dynamic.getBootstrapMethodArgument(i));
+            }
+        }
+    }
+}
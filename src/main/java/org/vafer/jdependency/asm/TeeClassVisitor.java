@@ -0,0 +1,668 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.asm;
+
+import java.util.function.Function;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.RecordComponentVisitor;
+import org.objectweb.asm.TypePath;
+
+/**
+ * internal - do not use
+ *
+ * Passes every event of a single `ClassReader` pass on to several class
+ * visitors, so independent analyses share one read and parse of the
+ * bytes. Where a visitor returns null for a member it is left out of the
+ * events of that member, and where only one visitor remains it is
+ * returned as is.
+ */
+public final class TeeClassVisitor extends ClassVisitor {
+
+    private static final int OPCODES = Opcodes.ASM9;
+
+    private final ClassVisitor[] visitors;
+
+    private TeeClassVisitor( final ClassVisitor[] pVisitors ) {
+        super(OPCODES);
+        visitors = pVisitors;
+    }
+
+    /**
+     * @return a visitor passing events on to all given non-null visitors
+     */
+    public static ClassVisitor of( final ClassVisitor... pVisitors ) {
+        final ClassVisitor[] all = compact(pVisitors, ClassVisitor[]::new);
+        if (all == null) {
+            return null;
+        }
+        return all.length == 1 ? all[0] : new TeeClassVisitor(all);
+    }
+
+    private static <T> T[] compact( final T[] pVisitors, final Function<Integer, T[]> pArray ) {
+        int n = 0;
+        for (T visitor : pVisitors) {
+            if (visitor != null) {
+                n++;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        if (n == pVisitors.length) {
+            return pVisitors;
+        }
+        final T[] all = pArray.apply(n);
+        n = 0;
+        for (T visitor : pVisitors) {
+            if (visitor != null) {
+                all[n++] = visitor;
+            }
+        }
+        return all;
+    }
+
+    private static AnnotationVisitor annotations( final AnnotationVisitor[] pVisitors ) {
+        final AnnotationVisitor[] all = compact(pVisitors, AnnotationVisitor[]::new);
+        if (all == null) {
+            return null;
+        }
+        return all.length == 1 ? all[0] : new TeeAnnotationVisitor(all);
+    }
+
+    @Override
+    public void visit( int version, int access, String name, String signature, String superName, String[] interfaces ) {
+        for (ClassVisitor v : visitors) {
+            v.visit(version, access, name, signature, superName, interfaces);
+        }
+    }
+
+    @Override
+    public void visitSource( String source, String debug ) {
+        for (ClassVisitor v : visitors) {
+            v.visitSource(source, debug);
+        }
+    }
+
+    @Override
+    public ModuleVisitor visitModule( String name, int access, String version ) {
+        final ModuleVisitor[] all = new ModuleVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitModule(name, access, version);
+        }
+        final ModuleVisitor[] some = compact(all, ModuleVisitor[]::new);
+        if (some == null) {
+            return null;
+        }
+        return some.length == 1 ? some[0] : new TeeModuleVisitor(some);
+    }
+
+    @Override
+    public void visitNestHost( String nestHost ) {
+        for (ClassVisitor v : visitors) {
+            v.visitNestHost(nestHost);
+        }
+    }
+
+    @Override
+    public void visitOuterClass( String owner, String name, String descriptor ) {
+        for (ClassVisitor v : visitors) {
+            v.visitOuterClass(owner, name, descriptor);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+        final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitAnnotation(descriptor, visible);
+        }
+        return annotations(all);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+        final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+        }
+        return annotations(all);
+    }
+
+    @Override
+    public void visitAttribute( Attribute attribute ) {
+        for (ClassVisitor v : visitors) {
+            v.visitAttribute(attribute);
+        }
+    }
+
+    @Override
+    public void visitNestMember( String nestMember ) {
+        for (ClassVisitor v : visitors) {
+            v.visitNestMember(nestMember);
+        }
+    }
+
+    @Override
+    public void visitPermittedSubclass( String permittedSubclass ) {
+        for (ClassVisitor v : visitors) {
+            v.visitPermittedSubclass(permittedSubclass);
+        }
+    }
+
+    @Override
+    public void visitInnerClass( String name, String outerName, String innerName, int access ) {
+        for (ClassVisitor v : visitors) {
+            v.visitInnerClass(name, outerName, innerName, access);
+        }
+    }
+
+    @Override
+    public RecordComponentVisitor visitRecordComponent( String name, String descriptor, String signature ) {
+        final RecordComponentVisitor[] all = new RecordComponentVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitRecordComponent(name, descriptor, signature);
+        }
+        final RecordComponentVisitor[] some = compact(all, RecordComponentVisitor[]::new);
+        if (some == null) {
+            return null;
+        }
+        return some.length == 1 ? some[0] : new TeeRecordComponentVisitor(some);
+    }
+
+    @Override
+    public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value ) {
+        final FieldVisitor[] all = new FieldVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitField(access, name, descriptor, signature, value);
+        }
+        final FieldVisitor[] some = compact(all, FieldVisitor[]::new);
+        if (some == null) {
+            return null;
+        }
+        return some.length == 1 ? some[0] : new TeeFieldVisitor(some);
+    }
+
+    @Override
+    public MethodVisitor visitMethod( int access, String name, String descriptor, String signature, String[] exceptions ) {
+        final MethodVisitor[] all = new MethodVisitor[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            all[i] = visitors[i].visitMethod(access, name, descriptor, signature, exceptions);
+        }
+        final MethodVisitor[] some = compact(all, MethodVisitor[]::new);
+        if (some == null) {
+            return null;
+        }
+        return some.length == 1 ? some[0] : new TeeMethodVisitor(some);
+    }
+
+    @Override
+    public void visitEnd() {
+        for (ClassVisitor v : visitors) {
+            v.visitEnd();
+        }
+    }
+
+    private static final class TeeAnnotationVisitor extends AnnotationVisitor {
+
+        private final AnnotationVisitor[] visitors;
+
+        TeeAnnotationVisitor( final AnnotationVisitor[] pVisitors ) {
+            super(OPCODES);
+            visitors = pVisitors;
+        }
+
+        @Override
+        public void visit( String name, Object value ) {
+            for (AnnotationVisitor v : visitors) {
+                v.visit(name, value);
+            }
+        }
+
+        @Override
+        public void visitEnum( String name, String descriptor, String value ) {
+            for (AnnotationVisitor v : visitors) {
+                v.visitEnum(name, descriptor, value);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String name, String descriptor ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitAnnotation(name, descriptor);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray( String name ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitArray(name);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitEnd() {
+            for (AnnotationVisitor v : visitors) {
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static final class TeeFieldVisitor extends FieldVisitor {
+
+        private final FieldVisitor[] visitors;
+
+        TeeFieldVisitor( final FieldVisitor[] pVisitors ) {
+            super(OPCODES);
+            visitors = pVisitors;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitAnnotation(descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitAttribute( Attribute attribute ) {
+            for (FieldVisitor v : visitors) {
+                v.visitAttribute(attribute);
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            for (FieldVisitor v : visitors) {
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static final class TeeRecordComponentVisitor extends RecordComponentVisitor {
+
+        private final RecordComponentVisitor[] visitors;
+
+        TeeRecordComponentVisitor( final RecordComponentVisitor[] pVisitors ) {
+            super(OPCODES);
+            visitors = pVisitors;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitAnnotation(descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitAttribute( Attribute attribute ) {
+            for (RecordComponentVisitor v : visitors) {
+                v.visitAttribute(attribute);
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            for (RecordComponentVisitor v : visitors) {
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static final class TeeModuleVisitor extends ModuleVisitor {
+
+        private final ModuleVisitor[] visitors;
+
+        TeeModuleVisitor( final ModuleVisitor[] pVisitors ) {
+            super(OPCODES);
+            visitors = pVisitors;
+        }
+
+        @Override
+        public void visitMainClass( String mainClass ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitMainClass(mainClass);
+            }
+        }
+
+        @Override
+        public void visitPackage( String packaze ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitPackage(packaze);
+            }
+        }
+
+        @Override
+        public void visitRequire( String module, int access, String version ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitRequire(module, access, version);
+            }
+        }
+
+        @Override
+        public void visitExport( String packaze, int access, String... modules ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitExport(packaze, access, modules);
+            }
+        }
+
+        @Override
+        public void visitOpen( String packaze, int access, String... modules ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitOpen(packaze, access, modules);
+            }
+        }
+
+        @Override
+        public void visitUse( String service ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitUse(service);
+            }
+        }
+
+        @Override
+        public void visitProvide( String service, String... providers ) {
+            for (ModuleVisitor v : visitors) {
+                v.visitProvide(service, providers);
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            for (ModuleVisitor v : visitors) {
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static final class TeeMethodVisitor extends MethodVisitor {
+
+        private final MethodVisitor[] visitors;
+
+        TeeMethodVisitor( final MethodVisitor[] pVisitors ) {
+            super(OPCODES);
+            visitors = pVisitors;
+        }
+
+        @Override
+        public void visitParameter( String name, int access ) {
+            for (MethodVisitor v : visitors) {
+                v.visitParameter(name, access);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitAnnotationDefault();
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitAnnotation(descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitAnnotableParameterCount( int parameterCount, boolean visible ) {
+            for (MethodVisitor v : visitors) {
+                v.visitAnnotableParameterCount(parameterCount, visible);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation( int parameter, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitParameterAnnotation(parameter, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitAttribute( Attribute attribute ) {
+            for (MethodVisitor v : visitors) {
+                v.visitAttribute(attribute);
+            }
+        }
+
+        @Override
+        public void visitCode() {
+            for (MethodVisitor v : visitors) {
+                v.visitCode();
+            }
+        }
+
+        @Override
+        public void visitFrame( int type, int numLocal, Object[] local, int numStack, Object[] stack ) {
+            for (MethodVisitor v : visitors) {
+                v.visitFrame(type, numLocal, local, numStack, stack);
+            }
+        }
+
+        @Override
+        public void visitInsn( int opcode ) {
+            for (MethodVisitor v : visitors) {
+                v.visitInsn(opcode);
+            }
+        }
+
+        @Override
+        public void visitIntInsn( int opcode, int operand ) {
+            for (MethodVisitor v : visitors) {
+                v.visitIntInsn(opcode, operand);
+            }
+        }
+
+        @Override
+        public void visitVarInsn( int opcode, int varIndex ) {
+            for (MethodVisitor v : visitors) {
+                v.visitVarInsn(opcode, varIndex);
+            }
+        }
+
+        @Override
+        public void visitTypeInsn( int opcode, String type ) {
+            for (MethodVisitor v : visitors) {
+                v.visitTypeInsn(opcode, type);
+            }
+        }
+
+        @Override
+        public void visitFieldInsn( int opcode, String owner, String name, String descriptor ) {
+            for (MethodVisitor v : visitors) {
+                v.visitFieldInsn(opcode, owner, name, descriptor);
+            }
+        }
+
+        @Override
+        public void visitMethodInsn( int opcode, String owner, String name, String descriptor, boolean isInterface ) {
+            for (MethodVisitor v : visitors) {
+                v.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+            }
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn( String name, String descriptor, Handle bootstrapMethodHandle,
+                                            Object... bootstrapMethodArguments ) {
+            for (MethodVisitor v : visitors) {
+                v.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+            }
+        }
+
+        @Override
+        public void visitJumpInsn( int opcode, Label label ) {
+            for (MethodVisitor v : visitors) {
+                v.visitJumpInsn(opcode, label);
+            }
+        }
+
+        @Override
+        public void visitLabel( Label label ) {
+            for (MethodVisitor v : visitors) {
+                v.visitLabel(label);
+            }
+        }
+
+        @Override
+        public void visitLdcInsn( Object value ) {
+            for (MethodVisitor v : visitors) {
+                v.visitLdcInsn(value);
+            }
+        }
+
+        @Override
+        public void visitIincInsn( int varIndex, int increment ) {
+            for (MethodVisitor v : visitors) {
+                v.visitIincInsn(varIndex, increment);
+            }
+        }
+
+        @Override
+        public void visitTableSwitchInsn( int min, int max, Label dflt, Label... labels ) {
+            for (MethodVisitor v : visitors) {
+                v.visitTableSwitchInsn(min, max, dflt, labels);
+            }
+        }
+
+        @Override
+        public void visitLookupSwitchInsn( Label dflt, int[] keys, Label[] labels ) {
+            for (MethodVisitor v : visitors) {
+                v.visitLookupSwitchInsn(dflt, keys, labels);
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn( String descriptor, int numDimensions ) {
+            for (MethodVisitor v : visitors) {
+                v.visitMultiANewArrayInsn(descriptor, numDimensions);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitInsnAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitInsnAnnotation(typeRef, typePath, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitTryCatchBlock( Label start, Label end, Label handler, String type ) {
+            for (MethodVisitor v : visitors) {
+                v.visitTryCatchBlock(start, end, handler, type);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitTryCatchAnnotation( int typeRef, TypePath typePath, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitTryCatchAnnotation(typeRef, typePath, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitLocalVariable( String name, String descriptor, String signature, Label start, Label end, int index ) {
+            for (MethodVisitor v : visitors) {
+                v.visitLocalVariable(name, descriptor, signature, start, end, index);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitLocalVariableAnnotation( int typeRef, TypePath typePath, Label[] start, Label[] end,
+                                                               int[] index, String descriptor, boolean visible ) {
+            final AnnotationVisitor[] all = new AnnotationVisitor[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                all[i] = visitors[i].visitLocalVariableAnnotation(typeRef, typePath, start, end, index, descriptor, visible);
+            }
+            return annotations(all);
+        }
+
+        @Override
+        public void visitLineNumber( int line, Label start ) {
+            for (MethodVisitor v : visitors) {
+                v.visitLineNumber(line, start);
+            }
+        }
+
+        @Override
+        public void visitMaxs( int maxStack, int maxLocals ) {
+            for (MethodVisitor v : visitors) {
+                v.visitMaxs(maxStack, maxLocals);
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            for (MethodVisitor v : visitors) {
+                v.visitEnd();
+            }
+        }
+    }
+}
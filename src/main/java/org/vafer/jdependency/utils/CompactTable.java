@@ -0,0 +1,238 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.utils;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * internal - do not use
+ *
+ * A set of keys with an int of bits per key, without a node per entry.
+ * Up to a handful of keys are kept in a plain array and found by a linear
+ * scan. Larger tables switch to open addressing with linear probing.
+ * Most clazzes have only a few edges so most tables never grow beyond
+ * the first array.
+ */
+public final class CompactTable<K> {
+
+    private static final Object[] EMPTY_KEYS = new Object[0];
+    private static final int[] EMPTY_BITS = new int[0];
+
+    private static final int LINEAR = 8;
+
+    private Object[] keys = EMPTY_KEYS;
+    private int[] bits = EMPTY_BITS;
+    private int size;
+    private boolean hashed;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains( final Object pKey ) {
+        return indexOf(pKey) >= 0;
+    }
+
+    /**
+     * @return the bits of the key, 0 if it is not contained
+     */
+    public int get( final Object pKey ) {
+        final int i = indexOf(pKey);
+        return i < 0 ? 0 : bits[i];
+    }
+
+    /**
+     * Adds the key or adds the bits to the ones it already has.
+     *
+     * @return whether the key was added
+     */
+    public boolean add( final K pKey, final int pBits ) {
+
+        final int i = indexOf(pKey);
+        if (i >= 0) {
+            bits[i] |= pBits;
+            return false;
+        }
+
+        if (!hashed) {
+            if (size < LINEAR) {
+                if (size == keys.length) {
+                    final int capacity = size == 0 ? 2 : size * 2;
+                    keys = Arrays.copyOf(keys, capacity);
+                    bits = Arrays.copyOf(bits, capacity);
+                }
+                keys[size] = pKey;
+                bits[size] = pBits;
+                size++;
+                return true;
+            }
+            rehash(LINEAR * 4);
+        } else if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        insert(pKey, pBits);
+        size++;
+        return true;
+    }
+
+    /**
+     * @return whether the key was removed
+     */
+    public boolean remove( final Object pKey ) {
+
+        int i = indexOf(pKey);
+        if (i < 0) {
+            return false;
+        }
+
+        size--;
+
+        if (!hashed) {
+            keys[i] = keys[size];
+            bits[i] = bits[size];
+            keys[size] = null;
+            bits[size] = 0;
+            return true;
+        }
+
+        // backward shift deletion keeps the probe sequences intact
+        final int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            final int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                bits[i] = bits[j];
+                i = j;
+            }
+        }
+        keys[i] = null;
+        bits[i] = 0;
+        return true;
+    }
+
+    /**
+     * @return a live, read only view of the keys
+     */
+    public Set<K> keys() {
+        return new KeySet();
+    }
+
+    private int indexOf( final Object pKey ) {
+        if (!hashed) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(pKey)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (pKey == null) {
+            return -1;
+        }
+        final int mask = keys.length - 1;
+        for (int i = slot(pKey, mask); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(pKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void rehash( final int pCapacity ) {
+        final Object[] oldKeys = keys;
+        final int[] oldBits = bits;
+        final int oldLength = hashed ? oldKeys.length : size;
+        keys = new Object[pCapacity];
+        bits = new int[pCapacity];
+        hashed = true;
+        for (int i = 0; i < oldLength; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldBits[i]);
+            }
+        }
+    }
+
+    private void insert( final Object pKey, final int pBits ) {
+        final int mask = keys.length - 1;
+        int i = slot(pKey, mask);
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = pKey;
+        bits[i] = pBits;
+    }
+
+    private static int slot( final Object pKey, final int pMask ) {
+        final int h = pKey.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & pMask;
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains( final Object pKey ) {
+            return indexOf(pKey) >= 0;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new Iterator<K>() {
+
+                private final int length = hashed ? keys.length : size;
+                private int next = advance(0);
+
+                private int advance( final int pFrom ) {
+                    int i = pFrom;
+                    while (i < length && keys[i] == null) {
+                        i++;
+                    }
+                    return i;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public K next() {
+                    if (next >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    final K key = (K) keys[next];
+                    next = advance(next + 1);
+                    return key;
+                }
+            };
+        }
+    }
+}
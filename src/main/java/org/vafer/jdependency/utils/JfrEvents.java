@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * internal - do not use
+ *
+ * Custom JFR events for the analysis. The events are defined through
+ * `jdk.jfr.EventFactory`, which is looked up reflectively so the library
+ * still runs on JVMs without JFR. When no recording is active `begin`
+ * returns null and nothing gets allocated.
+ *
+ * Emitted events are `org.vafer.jdependency.ClassAnalysis` (one per parsed
+ * class) and `org.vafer.jdependency.UnitIngestion` (one per added unit).
+ */
+public final class JfrEvents {
+
+    private static final JfrEvents CLASS = create(
+        "org.vafer.jdependency.ClassAnalysis",
+        "Class Analysis",
+        "Dependency analysis of a single class",
+        new String[] { "className", "unitId", "bytes", "dependencies" },
+        new Class<?>[] { String.class, String.class, int.class, int.class });
+
+    private static final JfrEvents UNIT = create(
+        "org.vafer.jdependency.UnitIngestion",
+        "Unit Ingestion",
+        "Ingestion of a classpath unit",
+        new String[] { "unitId", "classes", "bytes", "dependencies" },
+        new Class<?>[] { String.class, int.class, long.class, int.class });
+
+    private final MethodHandle isEnabled;
+    private final MethodHandle newEvent;
+    private final MethodHandle begin;
+    private final MethodHandle end;
+    private final MethodHandle shouldCommit;
+    private final MethodHandle set;
+    private final MethodHandle commit;
+
+    private JfrEvents( final MethodHandle pIsEnabled, final MethodHandle pNewEvent, final MethodHandle pBegin,
+                       final MethodHandle pEnd, final MethodHandle pShouldCommit, final MethodHandle pSet,
+                       final MethodHandle pCommit ) {
+        isEnabled = pIsEnabled;
+        newEvent = pNewEvent;
+        begin = pBegin;
+        end = pEnd;
+        shouldCommit = pShouldCommit;
+        set = pSet;
+        commit = pCommit;
+    }
+
+    public static Object beginClass() {
+        return CLASS == null ? null : CLASS.begin();
+    }
+
+    public static void commitClass( final Object pEvent, final String pClassName, final String pUnitId, final int pBytes, final int pDependencies ) {
+        if (pEvent != null) {
+            CLASS.commit(pEvent, pClassName, pUnitId, pBytes, pDependencies);
+        }
+    }
+
+    public static Object beginUnit() {
+        return UNIT == null ? null : UNIT.begin();
+    }
+
+    public static void commitUnit( final Object pEvent, final String pUnitId, final int pClasses, final long pBytes, final int pDependencies ) {
+        if (pEvent != null) {
+            UNIT.commit(pEvent, pUnitId, pClasses, pBytes, pDependencies);
+        }
+    }
+
+    private Object begin() {
+        try {
+            if (!(boolean) isEnabled.invokeExact()) {
+                return null;
+            }
+            final Object event = (Object) newEvent.invokeExact();
+            begin.invokeExact(event);
+            return event;
+        } catch(Throwable e) {
+            return null;
+        }
+    }
+
+    private void commit( final Object pEvent, final Object... pValues ) {
+        try {
+            end.invokeExact(pEvent);
+            if ((boolean) shouldCommit.invokeExact(pEvent)) {
+                for (int i = 0; i < pValues.length; i++) {
+                    set.invokeExact(pEvent, i, pValues[i]);
+                }
+                commit.invokeExact(pEvent);
+            }
+        } catch(Throwable e) {
+            // recording is best effort only
+        }
+    }
+
+    private static JfrEvents create( final String pName, final String pLabel, final String pDescription,
+                                     final String[] pFields, final Class<?>[] pTypes ) {
+        try {
+            final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+            final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+
+            final Constructor<?> element = elementClass.getConstructor(Class.class, Object.class);
+            final Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class);
+
+            final List<Object> annotations = new ArrayList<>();
+            annotations.add(element.newInstance(annotation("jdk.jfr.Name"), pName));
+            annotations.add(element.newInstance(annotation("jdk.jfr.Label"), pLabel));
+            annotations.add(element.newInstance(annotation("jdk.jfr.Description"), pDescription));
+            annotations.add(element.newInstance(annotation("jdk.jfr.Category"), new String[] { "jdependency" }));
+
+            final List<Object> fields = new ArrayList<>();
+            for (int i = 0; i < pFields.length; i++) {
+                fields.add(descriptor.newInstance(pTypes[i], pFields[i]));
+            }
+
+            final Object factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            final Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final MethodType object = MethodType.methodType(void.class, Object.class);
+
+            return new JfrEvents(
+                lookup.unreflect(eventTypeClass.getMethod("isEnabled")).bindTo(eventType),
+                lookup.unreflect(factoryClass.getMethod("newEvent")).bindTo(factory)
+                    .asType(MethodType.methodType(Object.class)),
+                lookup.unreflect(eventClass.getMethod("begin")).asType(object),
+                lookup.unreflect(eventClass.getMethod("end")).asType(object),
+                lookup.unreflect(eventClass.getMethod("shouldCommit"))
+                    .asType(MethodType.methodType(boolean.class, Object.class)),
+                lookup.unreflect(eventClass.getMethod("set", int.class, Object.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class)),
+                lookup.unreflect(eventClass.getMethod("commit")).asType(object));
+
+        } catch(Throwable e) {
+            // no JFR on this JVM
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation( final String pName ) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(pName);
+    }
+}
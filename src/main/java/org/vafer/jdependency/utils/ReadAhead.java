@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * internal - do not use
+ *
+ * Reads files (or other sources of bytes) ahead of their consumer so the
+ * latency of opening and reading many small files overlaps with the
+ * parsing of the ones already read. The reads run on virtual threads when the JVM has them (Java 21+)
+ * and on a small shared pool of daemon threads otherwise. At most a
+ * window of reads is in flight and the files are handed out in order.
+ * Closing it cancels the reads still in flight, so consumers that may
+ * stop early, on a failed read or otherwise, should close it.
+ */
+public final class ReadAhead<T> implements Iterator<ReadAhead.Read<T>>, Closeable {
+
+    private static final int THREADS = 16;
+    private static final int WINDOW = 64;
+
+    private static final ExecutorService executor = createExecutor();
+
+    public interface Reader<T> {
+
+        /**
+         * @return the bytes of the source or null if there are none
+         */
+        byte[] read( T pSource ) throws IOException;
+    }
+
+    public static final class Read<T> {
+
+        private final T source;
+        private final Future<byte[]> bytes;
+
+        Read( final T pSource, final Future<byte[]> pBytes ) {
+            source = pSource;
+            bytes = pBytes;
+        }
+
+        public T getSource() {
+            return source;
+        }
+
+        public byte[] getBytes() throws IOException {
+            try {
+                return bytes.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted reading " + source);
+            } catch (CancellationException e) {
+                throw new InterruptedIOException("closed before reading " + source);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("failed to read " + source, e.getCause());
+            }
+        }
+    }
+
+    private final Iterator<T> sources;
+    private final Reader<T> reader;
+    private final ArrayDeque<Read<T>> reads = new ArrayDeque<>();
+    private final int window;
+
+    public ReadAhead( final Iterator<T> pSources, final Reader<T> pReader ) {
+        this(pSources, pReader, WINDOW);
+    }
+
+    public ReadAhead( final Iterator<T> pSources, final Reader<T> pReader, final int pWindow ) {
+        sources = pSources;
+        reader = pReader;
+        window = pWindow;
+        fill();
+    }
+
+    /**
+     * Reads the given files.
+     */
+    public static ReadAhead<Path> files( final Iterator<Path> pPaths ) {
+        return new ReadAhead<>(pPaths, Files::readAllBytes);
+    }
+
+    private void fill() {
+        while (reads.size() < window && sources.hasNext()) {
+            final T source = sources.next();
+            reads.add(new Read<>(source, executor.submit(() -> reader.read(source))));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !reads.isEmpty();
+    }
+
+    @Override
+    public Read<T> next() {
+        final Read<T> read = reads.poll();
+        if (read == null) {
+            throw new NoSuchElementException();
+        }
+        fill();
+        return read;
+    }
+
+    /**
+     * Cancels the reads that were not handed out yet, interrupting the
+     * ones that already started.
+     */
+    @Override
+    public void close() {
+        for (Read<T> read : reads) {
+            read.bytes.cancel(true);
+        }
+        reads.clear();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // no virtual threads before Java 21
+            return Executors.newFixedThreadPool(THREADS, r -> {
+                final Thread thread = new Thread(r, "jdependency-read");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * internal - do not use
+ *
+ * A log structured store of (key, type, value) string records. Records are
+ * buffered on heap up to a limit, then sorted and written into segment
+ * files which are read back in chunks through their open channels. A
+ * sparse index of every segment stays on heap, one key per 128 records,
+ * so heap use still grows with the records but much slower. Runs of
+ * similar size are merged level by level like in an LSM tree, so every
+ * record is rewritten a logarithmic number of times and lookups only need
+ * to probe a few runs.
+ *
+ * Segments are not memory mapped, a mapped file could not be deleted on
+ * Windows until the mapping is garbage collected.
+ */
+public final class RecordStore implements Closeable {
+
+    private static final int INDEX_INTERVAL = 128;
+    private static final int FANOUT = 8;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    public static final class Record implements Comparable<Record> {
+
+        public final String key;
+        public final byte type;
+        public final String value;
+
+        public Record( final String pKey, final byte pType, final String pValue ) {
+            key = pKey;
+            type = pType;
+            value = pValue;
+        }
+
+        @Override
+        public int compareTo( final Record pOther ) {
+            int c = key.compareTo(pOther.key);
+            if (c != 0) {
+                return c;
+            }
+            c = Byte.compare(type, pOther.type);
+            if (c != 0) {
+                return c;
+            }
+            return value.compareTo(pOther.value);
+        }
+
+        @Override
+        public boolean equals( final Object pOther ) {
+            return pOther instanceof Record && compareTo((Record) pOther) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (key.hashCode() * 31 + type) * 31 + value.hashCode();
+        }
+    }
+
+    private static final int CHUNK = 1 << 16;
+
+    private static final class Segment {
+
+        final Path file;
+        final FileChannel channel;
+        final long size;
+        final String firstKey;
+        final String lastKey;
+        final String[] indexKeys;
+        final int[] indexOffsets;
+
+        Segment( final Path pFile, final String pFirstKey, final String pLastKey,
+                 final String[] pIndexKeys, final int[] pIndexOffsets ) throws IOException {
+            file = pFile;
+            firstKey = pFirstKey;
+            lastKey = pLastKey;
+            indexKeys = pIndexKeys;
+            indexOffsets = pIndexOffsets;
+            channel = FileChannel.open(pFile, StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+
+        /**
+         * @return the offset of the last indexed record with a key smaller than the given one
+         */
+        int seek( final String pKey ) {
+            int lo = 0;
+            int hi = indexKeys.length - 1;
+            int found = 0;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (indexKeys[mid].compareTo(pKey) < 0) {
+                    found = indexOffsets[mid];
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * A sorted sequence of segments with ascending, non overlapping key ranges.
+     */
+    private static final class Run {
+
+        final int level;
+        final List<Segment> segments;
+        final long bytes;
+
+        Run( final int pLevel, final List<Segment> pSegments ) {
+            level = pLevel;
+            segments = pSegments;
+            long all = 0;
+            for (Segment segment : pSegments) {
+                all += segment.size;
+            }
+            bytes = all;
+        }
+    }
+
+    /**
+     * Reads the records of a segment from an offset on, a chunk at a time.
+     */
+    private static final class Reader {
+
+        private final Segment segment;
+        private long position;
+        private ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+
+        Reader( final Segment pSegment, final long pOffset ) {
+            segment = pSegment;
+            position = pOffset;
+            ((Buffer) buffer).flip();
+        }
+
+        boolean hasRemaining() {
+            return buffer.hasRemaining() || position < segment.size;
+        }
+
+        Record read() throws IOException {
+            ensure(2);
+            final int keyLength = buffer.getShort(buffer.position()) & 0xFFFF;
+            ensure(2 + keyLength + 1 + 2);
+            final int valueLength = buffer.getShort(buffer.position() + 2 + keyLength + 1) & 0xFFFF;
+            ensure(2 + keyLength + 1 + 2 + valueLength);
+            return RecordStore.read(buffer);
+        }
+
+        /**
+         * Makes sure the given number of bytes can be read from the buffer.
+         */
+        private void ensure( final int pBytes ) throws IOException {
+            if (buffer.remaining() >= pBytes) {
+                return;
+            }
+            if (buffer.capacity() < pBytes) {
+                final ByteBuffer larger = ByteBuffer.allocate(Math.max(pBytes, 2 * buffer.capacity()));
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < pBytes && position < segment.size) {
+                final int read = segment.channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+            ((Buffer) buffer).flip();
+            if (buffer.remaining() < pBytes) {
+                throw new EOFException(segment.file.toString());
+            }
+        }
+    }
+
+    private static final class Cursor implements Iterator<Record> {
+
+        private final Iterator<Segment> segments;
+        private Reader reader;
+
+        Cursor( final Run pRun ) {
+            segments = pRun.segments.iterator();
+        }
+
+        Cursor( final Reader pReader ) {
+            segments = Collections.emptyIterator();
+            reader = pReader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (reader == null || !reader.hasRemaining()) {
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                reader = new Reader(segments.next(), 0);
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return reader.read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final int bufferLimit;
+    private final List<Record> buffer = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+    private int files;
+
+    public RecordStore( final Path pDirectory, final int pBufferLimit ) throws IOException {
+        directory = Files.createDirectories(pDirectory);
+        bufferLimit = pBufferLimit;
+    }
+
+    public void add( final String pKey, final byte pType, final String pValue ) throws IOException {
+        buffer.add(new Record(pKey, pType, pValue));
+        if (buffer.size() >= bufferLimit) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered records into a new run and merges runs as needed.
+     */
+    public void flush() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        Collections.sort(buffer);
+        runs.add(write(0, buffer.iterator()));
+        buffer.clear();
+        compact();
+    }
+
+    private void compact() throws IOException {
+        for (int level = 0; ; level++) {
+            final List<Run> same = new ArrayList<>();
+            for (Run run : runs) {
+                if (run.level == level) {
+                    same.add(run);
+                }
+            }
+            if (same.isEmpty()) {
+                return;
+            }
+            if (same.size() < FANOUT) {
+                continue;
+            }
+            final Run merged = write(level + 1, merge(same));
+            runs.removeAll(same);
+            runs.add(merged);
+            for (Run run : same) {
+                for (Segment segment : run.segments) {
+                    segment.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes on disk
+     */
+    public long size() {
+        long all = 0;
+        for (Run run : runs) {
+            all += run.bytes;
+        }
+        return all;
+    }
+
+    /**
+     * Iterates all records in sorted order without duplicates. Buffered
+     * records are flushed first.
+     */
+    public Iterator<Record> scan() throws IOException {
+        flush();
+        return merge(runs);
+    }
+
+    /**
+     * Passes the values of all records with the given key and type to the
+     * consumer. Buffered records are flushed first.
+     */
+    public void lookup( final String pKey, final byte pType, final Consumer<String> pValues ) throws IOException {
+        flush();
+        final List<Iterator<Record>> cursors = new ArrayList<>();
+        for (Run run : runs) {
+            final Segment segment = find(run, pKey);
+            if (segment == null) {
+                continue;
+            }
+            cursors.add(new Cursor(new Reader(segment, segment.seek(pKey))));
+        }
+
+        final Iterator<Record> records = mergeSorted(cursors);
+        while (records.hasNext()) {
+            final Record record = records.next();
+            final int c = record.key.compareTo(pKey);
+            if (c > 0 || (c == 0 && record.type > pType)) {
+                return;
+            }
+            if (c == 0 && record.type == pType) {
+                pValues.accept(record.value);
+            }
+        }
+    }
+
+    private static Segment find( final Run pRun, final String pKey ) {
+        int lo = 0;
+        int hi = pRun.segments.size() - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final Segment segment = pRun.segments.get(mid);
+            if (segment.lastKey.compareTo(pKey) < 0) {
+                lo = mid + 1;
+            } else if (segment.firstKey.compareTo(pKey) > 0) {
+                hi = mid - 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private Iterator<Record> merge( final List<Run> pRuns ) {
+        final List<Iterator<Record>> cursors = new ArrayList<>();
+        for (Run run : pRuns) {
+            cursors.add(new Cursor(run));
+        }
+        return mergeSorted(cursors);
+    }
+
+    /**
+     * k-way merge of sorted iterators, dropping duplicates.
+     */
+    private static Iterator<Record> mergeSorted( final List<Iterator<Record>> pCursors ) {
+
+        final class Head implements Comparable<Head> {
+            final Iterator<Record> cursor;
+            Record record;
+
+            Head( final Iterator<Record> pCursor ) {
+                cursor = pCursor;
+                record = pCursor.next();
+            }
+
+            public int compareTo( final Head pOther ) {
+                return record.compareTo(pOther.record);
+            }
+        }
+
+        final PriorityQueue<Head> queue = new PriorityQueue<>(Math.max(1, pCursors.size()));
+        for (Iterator<Record> cursor : pCursors) {
+            if (cursor.hasNext()) {
+                queue.add(new Head(cursor));
+            }
+        }
+
+        return new Iterator<Record>() {
+
+            private Record previous;
+
+            @Override
+            public boolean hasNext() {
+                while (!queue.isEmpty() && previous != null && queue.peek().record.equals(previous)) {
+                    advance();
+                }
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                previous = advance();
+                return previous;
+            }
+
+            private Record advance() {
+                final Head head = queue.poll();
+                final Record record = head.record;
+                if (head.cursor.hasNext()) {
+                    head.record = head.cursor.next();
+                    queue.add(head);
+                }
+                return record;
+            }
+        };
+    }
+
+    private Run write( final int pLevel, final Iterator<Record> pRecords ) throws IOException {
+
+        final List<Segment> segments = new ArrayList<>();
+
+        Record last = null;
+        Record pending = null;
+        while (pending != null || pRecords.hasNext()) {
+
+            final Path file = directory.resolve("segment-" + (files++) + ".dat");
+            final List<String> indexKeys = new ArrayList<>();
+            final List<Integer> indexOffsets = new ArrayList<>();
+            String firstKey = null;
+            int count = 0;
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                while (pending != null || pRecords.hasNext()) {
+                    final Record record = pending != null ? pending : pRecords.next();
+                    pending = null;
+                    if (last != null && record.equals(last)) {
+                        continue;
+                    }
+                    // only roll over between keys so a key never spans two segments
+                    if (count > 0 && out.size() >= MAX_SEGMENT_BYTES && !record.key.equals(last.key)) {
+                        pending = record;
+                        break;
+                    }
+                    if (firstKey == null) {
+                        firstKey = record.key;
+                    }
+                    if (count++ % INDEX_INTERVAL == 0) {
+                        indexKeys.add(record.key);
+                        indexOffsets.add(out.size());
+                    }
+                    write(out, record);
+                    last = record;
+                }
+            }
+
+            if (firstKey == null) {
+                Files.deleteIfExists(file);
+                break;
+            }
+
+            final int[] offsets = new int[indexOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = indexOffsets.get(i);
+            }
+            segments.add(new Segment(file, firstKey, last.key, indexKeys.toArray(new String[0]), offsets));
+        }
+
+        return new Run(pLevel, segments);
+    }
+
+    private static void write( final DataOutputStream pOut, final Record pRecord ) throws IOException {
+        writeString(pOut, pRecord.key);
+        pOut.writeByte(pRecord.type);
+        writeString(pOut, pRecord.value);
+    }
+
+    private static void writeString( final DataOutputStream pOut, final String pString ) throws IOException {
+        final byte[] bytes = pString.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("name too long: " + pString.substring(0, 100));
+        }
+        pOut.writeShort(bytes.length);
+        pOut.write(bytes);
+    }
+
+    private static Record read( final ByteBuffer pBuffer ) {
+        final String key = readString(pBuffer);
+        final byte type = pBuffer.get();
+        final String value = readString(pBuffer);
+        return new Record(key, type, value);
+    }
+
+    private static String readString( final ByteBuffer pBuffer ) {
+        final int length = pBuffer.getShort() & 0xFFFF;
+        final byte[] bytes = new byte[length];
+        pBuffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes all segment files. The store can't be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.clear();
+        for (Run run : runs) {
+            for (Segment segment : run.segments) {
+                segment.delete();
+            }
+        }
+        runs.clear();
+    }
+}
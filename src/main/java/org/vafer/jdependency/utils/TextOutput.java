@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * internal - do not use
+ *
+ * Writes UTF-8 text straight into a byte buffer, escaping strings for the
+ * export formats on the fly. Unlike a `Writer` stack it doesn't allocate
+ * per string and doesn't synchronize.
+ */
+public final class TextOutput {
+
+    public static final int NONE = 0;
+    public static final int DOT = 1;
+    public static final int XML = 2;
+    public static final int JSON = 3;
+    public static final int CSV = 4;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    public TextOutput( final OutputStream pOut ) {
+        this(pOut, 1 << 16);
+    }
+
+    public TextOutput( final OutputStream pOut, final int pBufferSize ) {
+        out = pOut;
+        buffer = new byte[pBufferSize];
+    }
+
+    public TextOutput append( final String pString ) throws IOException {
+        return append(pString, NONE);
+    }
+
+    public TextOutput append( final long pValue ) throws IOException {
+        if (pValue < 0) {
+            append('-');
+            if (pValue == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            return append(-pValue);
+        }
+        if (pValue >= 10) {
+            append(pValue / 10);
+        }
+        return append((char) ('0' + (int) (pValue % 10)));
+    }
+
+    /**
+     * Appends a single ASCII character.
+     */
+    public TextOutput append( final char pChar ) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) pChar;
+        return this;
+    }
+
+    /**
+     * Appends the string escaped for the given format.
+     */
+    public TextOutput append( final String pString, final int pEscape ) throws IOException {
+        final int length = pString.length();
+        for (int i = 0; i < length; i++) {
+            final char c = pString.charAt(i);
+            if (c < 0x80) {
+                if (pEscape != NONE && escape(c, pEscape)) {
+                    continue;
+                }
+                if (position == buffer.length) {
+                    drain();
+                }
+                buffer[position++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(pString.charAt(i + 1))) {
+                codePoint(Character.toCodePoint(c, pString.charAt(++i)));
+            } else if (pEscape == XML && (Character.isSurrogate(c) || c >= 0xFFFE)) {
+                // not allowed in XML
+                codePoint(0xFFFD);
+            } else {
+                codePoint(c);
+            }
+        }
+        return this;
+    }
+
+    private boolean escape( final char c, final int pEscape ) throws IOException {
+        switch (pEscape) {
+            case DOT:
+                if (c == '"' || c == '\\') {
+                    append('\\').append(c);
+                    return true;
+                }
+                if (c == '\n') {
+                    append("\\n");
+                    return true;
+                }
+                return false;
+            case XML:
+                switch (c) {
+                    case '&': append("&amp;"); return true;
+                    case '<': append("&lt;"); return true;
+                    case '>': append("&gt;"); return true;
+                    case '"': append("&quot;"); return true;
+                    case '\'': append("&apos;"); return true;
+                    // kept as references, attribute values would turn them into spaces
+                    case '\t': append("&#9;"); return true;
+                    case '\n': append("&#10;"); return true;
+                    case '\r': append("&#13;"); return true;
+                    default:
+                        if (c < 0x20) {
+                            // not allowed in XML 1.0, not even as a reference
+                            codePoint(0xFFFD);
+                            return true;
+                        }
+                        return false;
+                }
+            case JSON:
+                if (c == '"' || c == '\\') {
+                    append('\\').append(c);
+                    return true;
+                }
+                if (c < 0x20) {
+                    append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    return true;
+                }
+                return false;
+            case CSV:
+                if (c == '"') {
+                    append("\"\"");
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void codePoint( final int pCodePoint ) throws IOException {
+        if (buffer.length - position < 4) {
+            drain();
+        }
+        if (pCodePoint < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (pCodePoint >> 6));
+            buffer[position++] = (byte) (0x80 | (pCodePoint & 0x3F));
+        } else if (pCodePoint < 0x10000) {
+            buffer[position++] = (byte) (0xE0 | (pCodePoint >> 12));
+            buffer[position++] = (byte) (0x80 | ((pCodePoint >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (pCodePoint & 0x3F));
+        } else {
+            buffer[position++] = (byte) (0xF0 | (pCodePoint >> 18));
+            buffer[position++] = (byte) (0x80 | ((pCodePoint >> 12) & 0x3F));
+            buffer[position++] = (byte) (0x80 | ((pCodePoint >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (pCodePoint & 0x3F));
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered bytes and flushes the stream, which stays open.
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.vafer.jdependency.ClazzpathAssert.assertSameGraph;
+
+public class AsyncClazzpathTestCase {
+
+    @Test
+    public void testShouldAddUnitsWithProgress() throws Exception {
+
+        final List<Path> paths = Arrays.asList(Paths.get("jar1.jar"), Paths.get("jar2"));
+
+        final Clazzpath expected = new Clazzpath();
+        long clazzes = 0;
+        long bytes = 0;
+        for (Path path : paths) {
+            final ClazzpathUnit unit = expected.addClazzpathUnit(path);
+            clazzes += unit.getClazzes().size();
+            bytes += unit.getClazzSize();
+        }
+
+        final Clazzpath cp = new Clazzpath();
+        final List<String> added = new ArrayList<>();
+        final long[] read = new long[3];
+        final List<ClazzpathUnit> units = new AsyncClazzpath(cp)
+            .setProgressListener(new ProgressListener() {
+                public void clazzRead( final String pUnitId, final long pClazzes, final long pBytes ) {
+                    assertEquals(read[0] + 1, pClazzes);
+                    assertTrue(pBytes > read[1]);
+                    read[0] = pClazzes;
+                    read[1] = pBytes;
+                }
+                public void unitAdded( final ClazzpathUnit pUnit, final int pUnits, final int pTotalUnits, final long pClazzes, final long pBytes ) {
+                    assertEquals(2, pTotalUnits);
+                    assertEquals(read[0], pClazzes);
+                    assertEquals(read[1], pBytes);
+                    added.add(pUnit + " " + pUnits);
+                }
+            })
+            .addClazzpathUnits(paths)
+            .get(1, TimeUnit.MINUTES);
+
+        assertEquals(Arrays.asList("jar1.jar 1", "jar2 2"), added);
+        assertEquals(2, units.size());
+        assertEquals("jar2", units.get(1).toString());
+        assertEquals(clazzes, read[0]);
+        assertEquals(bytes, read[1]);
+        assertSameGraph(expected, cp);
+
+        final List<String> lines = new ArrayList<>();
+        new AsyncClazzpath(new Clazzpath())
+            .setConsole(lines::add)
+            .addClazzpathUnit(Paths.get("jar1.jar"), "jar1")
+            .get(1, TimeUnit.MINUTES);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("added jar1 (1/1 units, "));
+    }
+
+    @Test
+    public void testShouldOnlyAddWholeUnitsWhenCancelled() throws Exception {
+
+        final Clazzpath expected = new Clazzpath();
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Clazzpath cp = new Clazzpath();
+        final AtomicReference<CompletableFuture<?>> running = new AtomicReference<>();
+        final CompletableFuture<List<ClazzpathUnit>> future = new AsyncClazzpath(cp, executor)
+            .setProgressListener(new ProgressListener() {
+                public void clazzRead( final String pUnitId, final long pClazzes, final long pBytes ) {
+                    if (pUnitId.equals("jar2.jar") && pClazzes > 70) {
+                        while (running.get() == null) {
+                            Thread.yield();
+                        }
+                        running.get().cancel(false);
+                    }
+                }
+            })
+            .addClazzpathUnits(Arrays.asList(Paths.get("jar1.jar"), Paths.get("jar2.jar"), Paths.get("jar3using1.jar")));
+        running.set(future);
+
+        try {
+            future.get(1, TimeUnit.MINUTES);
+            fail();
+        } catch (CancellationException e) {
+            // as asked
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertSameGraph(expected, cp);
+    }
+
+    @Test
+    public void testShouldOnlyAddMembersOfWholeUnitsWhenCancelled() throws Exception {
+
+        final Clazzpath expected = new Clazzpath(false, true);
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+        final Clazzpath other = new Clazzpath();
+        other.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Clazzpath cp = new Clazzpath(false, true);
+        final AtomicReference<CompletableFuture<?>> running = new AtomicReference<>();
+        final CompletableFuture<List<ClazzpathUnit>> future = new AsyncClazzpath(cp, executor)
+            .setProgressListener(new ProgressListener() {
+                public void clazzRead( final String pUnitId, final long pClazzes, final long pBytes ) {
+                    if (pUnitId.equals("jar2.jar") && pClazzes > 70) {
+                        while (running.get() == null) {
+                            Thread.yield();
+                        }
+                        running.get().cancel(false);
+                    }
+                }
+            })
+            .addClazzpathUnits(Arrays.asList(Paths.get("jar1.jar"), Paths.get("jar2.jar")));
+        running.set(future);
+
+        try {
+            future.get(1, TimeUnit.MINUTES);
+            fail();
+        } catch (CancellationException e) {
+            // as asked
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertSameGraph(expected, cp);
+        for (Clazz clazz : expected.getClazzes()) {
+            assertEquals(expected.getMemberGraph().getMembers(clazz.getName()), cp.getMemberGraph().getMembers(clazz.getName()));
+        }
+        for (Clazz clazz : other.getClazzes()) {
+            if (expected.getClazz(clazz.getName()) == null) {
+                assertTrue(clazz.getName(), cp.getMemberGraph().getMembers(clazz.getName()).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testShouldKeepAddedUnitsOnFailure() throws Exception {
+
+        final Clazzpath cp = new Clazzpath();
+        try {
+            new AsyncClazzpath(cp)
+                .addClazzpathUnits(Arrays.asList(Paths.get("jar1.jar"), Paths.get("no-such.jar")))
+                .get(1, TimeUnit.MINUTES);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(1, cp.getUnits().length);
+    }
+
+    @Test
+    public void testShouldFailOnErrors() throws Exception {
+
+        final Error error = new StackOverflowError();
+        try {
+            new AsyncClazzpath(new Clazzpath())
+                .setProgressListener(new ProgressListener() {
+                    public void clazzRead( final String pUnitId, final long pClazzes, final long pBytes ) {
+                        throw error;
+                    }
+                })
+                .addClazzpathUnit(Paths.get("jar1.jar"), "jar1")
+                .get(1, TimeUnit.MINUTES);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+}
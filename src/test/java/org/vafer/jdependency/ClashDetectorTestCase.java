@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClashDetectorTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path resourcePath( String filename ) {
+        return Paths.get(filename);
+    }
+
+    @Test
+    public void testShouldFindClashesLikeClazzpath() throws IOException {
+
+        final ClashDetector detector = new ClashDetector();
+        detector.addUnit(resourcePath("jar1.jar"), "jar1");
+        detector.addUnit(resourcePath("jar1"), "foo");
+        detector.addUnit(resourcePath("jar2.jar"), "jar2");
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(resourcePath("jar1.jar"), "jar1");
+        cp.addClazzpathUnit(resourcePath("jar1"), "foo");
+        cp.addClazzpathUnit(resourcePath("jar2.jar"), "jar2");
+
+        final Map<String, Set<String>> clashes = detector.getClashes();
+
+        assertEquals(cp.getClashedClazzes().size(), clashes.size());
+        for (Clazz clazz : cp.getClashedClazzes()) {
+            assertEquals(clazz.getClazzpathUnits().size(), clashes.get(clazz.getName()).size());
+        }
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("jar1", "foo")), clashes.get("org.apache.commons.io.IOUtils"));
+    }
+
+    @Test
+    public void testShouldNotReportSameVersions() throws IOException {
+
+        final ClashDetector detector = new ClashDetector(true);
+        detector.addUnit(resourcePath("jar1.jar"));
+        detector.addUnit(resourcePath("jar1"));
+        detector.addUnit(resourcePath("jar1-missing.jar"));
+
+        assertEquals(59, detector.getClashes().size());
+        assertEquals(0, detector.getVersionClashes().size());
+    }
+
+    @Test
+    public void testShouldReportDifferentVersions() throws IOException {
+
+        final String name = "org/apache/commons/io/IOUtils.class";
+        final byte[] original = Files.readAllBytes(resourcePath("jar1").resolve(name));
+
+        // same size, different content
+        final byte[] patched = original.clone();
+        patched[patched.length - 1] ^= 1;
+        final File same = folder.newFolder("same");
+        Files.createDirectories(same.toPath().resolve(name).getParent());
+        Files.write(same.toPath().resolve(name), patched);
+
+        // different size
+        final File larger = folder.newFolder("larger");
+        Files.createDirectories(larger.toPath().resolve(name).getParent());
+        Files.write(larger.toPath().resolve(name), Arrays.copyOf(original, original.length + 1));
+
+        final ClashDetector detector = new ClashDetector();
+        detector.addUnit(resourcePath("jar1.jar"), "jar1");
+        detector.addUnit(same, "same");
+
+        Map<String, Set<String>> clashes = detector.getVersionClashes();
+        assertEquals(1, clashes.size());
+        assertTrue(clashes.containsKey("org.apache.commons.io.IOUtils"));
+
+        detector.addUnit(larger, "larger");
+
+        clashes = detector.getVersionClashes();
+        assertEquals(1, clashes.size());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("jar1", "same", "larger")), clashes.get("org.apache.commons.io.IOUtils"));
+    }
+}
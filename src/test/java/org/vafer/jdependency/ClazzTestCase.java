@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClazzTestCase {
+
+    @Test
+    public void testShouldAddAndRemoveManyDependencies() {
+
+        final Clazz clazz = new Clazz("a.A");
+        final List<Clazz> deps = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Clazz dep = new Clazz("b.B" + i);
+            deps.add(dep);
+            clazz.addDependency(dep, EnumSet.of(DependencyKind.FIELD));
+            clazz.addDependency(dep, EnumSet.of(DependencyKind.CODE));
+        }
+
+        assertEquals(100, clazz.getDependencies().size());
+        assertEquals(new HashSet<>(deps), new HashSet<>(clazz.getDependencies()));
+        assertEquals(EnumSet.of(DependencyKind.FIELD, DependencyKind.CODE), clazz.getDependencyKinds(deps.get(42)));
+
+        for (int i = 0; i < 100; i += 2) {
+            clazz.removeDependency(deps.get(i));
+        }
+
+        assertEquals(50, clazz.getDependencies().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 1, clazz.getDependencies().contains(deps.get(i)));
+            assertEquals(i % 2 == 1, deps.get(i).getReferences().contains(clazz));
+        }
+        assertTrue(clazz.getDependencyKinds(deps.get(42)).isEmpty());
+    }
+
+    @Test
+    public void testShouldTrackSingleAndMultipleUnits() {
+
+        final ClazzpathUnit u1 = new ClazzpathUnit("u1", new HashMap<>(), new HashMap<>());
+        final ClazzpathUnit u2 = new ClazzpathUnit("u2", new HashMap<>(), new HashMap<>());
+        final Clazz clazz = new Clazz("a.A");
+
+        assertTrue(clazz.getClazzpathUnits().isEmpty());
+        assertTrue(clazz.getVersions().isEmpty());
+
+        clazz.addClazzpathUnit(u1, "x");
+        assertEquals(1, clazz.getClazzpathUnits().size());
+        assertEquals(1, clazz.getVersions().size());
+
+        clazz.addClazzpathUnit(u2, "y");
+        final Set<ClazzpathUnit> units = clazz.getClazzpathUnits();
+        assertTrue(units.contains(u1));
+        assertTrue(units.contains(u2));
+        assertEquals(2, clazz.getVersions().size());
+
+        clazz.removeClazzpathUnit(u1);
+        assertFalse(clazz.getClazzpathUnits().contains(u1));
+        assertTrue(clazz.getClazzpathUnits().contains(u2));
+        assertEquals(1, clazz.getVersions().size());
+
+        clazz.removeClazzpathUnit(u2);
+        assertTrue(clazz.getClazzpathUnits().isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClazzVisitorFactoryTestCase {
+
+    @Test
+    public void testShouldVisitClazzesInSamePass() throws IOException {
+
+        final Set<String> visited = new TreeSet<>();
+        final Map<String, Integer> methods = new HashMap<>();
+
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzVisitorFactory((unit, name) -> new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit( int version, int access, String n, String signature, String superName, String[] interfaces ) {
+                visited.add(unit + ':' + n.replace('/', '.'));
+            }
+        });
+        cp.addClazzVisitorFactory((unit, name) -> name.endsWith("Utils") ? new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod( int access, String n, String descriptor, String signature, String[] exceptions ) {
+                methods.merge(name, 1, Integer::sum);
+                return null;
+            }
+        } : null);
+
+        final ClazzpathUnit unit = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final Set<String> expected = new TreeSet<>();
+        for (Clazz clazz : unit.getClazzes()) {
+            expected.add("jar1.jar:" + clazz.getName());
+        }
+        assertEquals(expected, visited);
+        assertTrue(methods.get("org.apache.commons.io.IOUtils") > 10);
+        assertEquals(unit.getNameIndex().matching("**Utils").size(), methods.size());
+
+        // the other analyses are unaffected
+        final Clazzpath plain = new Clazzpath(false, true);
+        plain.addClazzpathUnit(Paths.get("jar1.jar"));
+        for (Clazz clazz : plain.getClazzes()) {
+            assertEquals(clazz.getDependencies(), cp.getClazz(clazz.getName()).getDependencies());
+            assertEquals(plain.getMemberGraph().getMembers(clazz.getName()), cp.getMemberGraph().getMembers(clazz.getName()));
+        }
+    }
+
+    @Test
+    public void testShouldHandleResourcesOfJarsAndDirectories() throws IOException {
+
+        final Map<String, Set<String>> names = new HashMap<>();
+        final Map<String, Integer> sizes = new HashMap<>();
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addResourceHandler((unit, name, in) -> {
+            names.computeIfAbsent(unit, k -> new HashSet<>()).add(name);
+            sizes.put(unit + ':' + name, IOUtils.toByteArray(in).length);
+        });
+
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar1"));
+
+        assertEquals(59, cp.getClazzes().size());
+        assertEquals(5, names.get("jar1.jar").size());
+        assertEquals(names.get("jar1.jar"), names.get("jar1"));
+        assertTrue(names.get("jar1").contains("META-INF/maven/commons-io/commons-io/pom.xml"));
+        assertEquals(186, (int) sizes.get("jar1.jar:META-INF/NOTICE.txt"));
+        assertEquals(186, (int) sizes.get("jar1:META-INF/NOTICE.txt"));
+    }
+}
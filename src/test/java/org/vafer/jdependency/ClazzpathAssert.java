@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Assertions on clazzpaths built in different ways from the same units.
+ */
+final class ClazzpathAssert {
+
+    private ClazzpathAssert() {
+    }
+
+    /**
+     * Asserts the same clazzes, units and dependencies with the same kinds.
+     */
+    static void assertSameGraph( final Clazzpath pExpected, final Clazzpath pActual ) {
+        assertEquals(pExpected.getClazzes(), pActual.getClazzes());
+        assertEquals(pExpected.getMissingClazzes(), pActual.getMissingClazzes());
+        assertEquals(pExpected.getClashedClazzes(), pActual.getClashedClazzes());
+        assertEquals(pExpected.getUnits().length, pActual.getUnits().length);
+        for (Clazz clazz : pExpected.getClazzes()) {
+            final Clazz actual = pActual.getClazz(clazz.getName());
+            final String name = clazz.getName();
+            assertEquals(name, clazz.getDependencies(), actual.getDependencies());
+            assertEquals(name, clazz.getWeakDependencies(), actual.getWeakDependencies());
+            assertEquals(name, clazz.getVersions(), actual.getVersions());
+            for (Clazz dependency : clazz.getDependencies()) {
+                assertEquals(name, clazz.getDependencyKinds(dependency), actual.getDependencyKinds(dependency));
+            }
+            for (Clazz dependency : clazz.getWeakDependencies()) {
+                assertEquals(name, clazz.getDependencyKinds(dependency), actual.getDependencyKinds(dependency));
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClazzpathQueryTestCase {
+
+    private static final String OUTPUT = "org.apache.commons.io.output.";
+
+    @Test
+    public void testShouldSelectByPrefix() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final Set<Clazz> expected = new HashSet<>();
+        for (Clazz clazz : cp.getClazzes()) {
+            if (clazz.getName().startsWith(OUTPUT)) {
+                expected.add(clazz);
+            }
+        }
+
+        assertEquals(expected, cp.query().prefix(OUTPUT).present().execute());
+        assertEquals(0, cp.query().prefix(OUTPUT).missing().count());
+        assertTrue(cp.query().prefix("java.lang.").missing().execute().contains(new Clazz("java.lang.String")));
+    }
+
+    @Test
+    public void testShouldFindClazzesReferencedFromOutside() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final Set<Clazz> expected = new HashSet<>();
+        for (Clazz clazz : cp.getClazzes()) {
+            if (clazz.getName().startsWith(OUTPUT)) {
+                for (Clazz reference : clazz.getReferences()) {
+                    if (!reference.getName().startsWith(OUTPUT)) {
+                        expected.add(clazz);
+                    }
+                }
+            }
+        }
+
+        final Set<Clazz> actual = cp.query()
+            .prefix(OUTPUT)
+            .referencedFrom(c -> !c.getName().startsWith(OUTPUT))
+            .execute();
+
+        assertFalse(actual.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testShouldFindMissingClazzesReachableFromUnit() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit artifact = cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+        final ClazzpathUnit dependency = cp.addClazzpathUnit(Paths.get("jar1-missing.jar"));
+
+        assertEquals(0, cp.query().from(artifact).dependencies().excludePrefix("java.").missing().count());
+
+        final Set<Clazz> missing = cp.query()
+            .from(dependency)
+            .dependencies()
+            .excludePrefix("java.")
+            .missing()
+            .execute();
+
+        assertEquals(2, missing.size());
+        assertTrue(missing.contains(new Clazz("org.apache.commons.io.input.ProxyInputStream")));
+        assertTrue(missing.contains(new Clazz("org.apache.commons.io.output.ProxyOutputStream")));
+
+        // excluded packages are not walked through
+        final Set<Clazz> pruned = cp.query()
+            .from(dependency)
+            .dependencies()
+            .excludePrefix("java.")
+            .excludePrefix("org.apache.commons.io.output.")
+            .missing()
+            .execute();
+
+        assertEquals(1, pruned.size());
+        assertTrue(pruned.contains(new Clazz("org.apache.commons.io.input.ProxyInputStream")));
+
+        // direct dependencies only
+        final Set<Clazz> direct = cp.query().from(artifact).dependencies().depth(1).present().execute();
+        assertEquals(1, direct.size());
+        assertTrue(direct.contains(new Clazz("org.apache.commons.io.IOUtils")));
+    }
+
+    @Test
+    public void testShouldSelectClashes() throws IOException {
+
+        final Clazzpath cp = new Clazzpath(true);
+        final ClazzpathUnit a = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar1"));
+
+        assertEquals(59, cp.query().clashed().count());
+        assertEquals(0, cp.query().versionsDiffer().count());
+        assertEquals(
+            cp.query().prefix("org.apache.commons.io.filefilter.").present().count(),
+            cp.query().prefix("org.apache.commons.io.filefilter.").clashed().count());
+
+        cp.removeClazzpathUnit(a);
+
+        assertEquals(0, cp.query().clashed().count());
+        assertEquals(59, cp.query().present().count());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClazzpathSnapshotTestCase {
+
+    private static Clazzpath clazzpath( String... pUnits ) throws IOException {
+        final Clazzpath cp = new Clazzpath();
+        for (String unit : pUnits) {
+            cp.addClazzpathUnit(Paths.get(unit), unit);
+        }
+        return cp;
+    }
+
+    private static Set<String> names( Set<Clazz> pClazzes ) {
+        final Set<String> all = new TreeSet<>();
+        for (Clazz clazz : pClazzes) {
+            all.add(clazz.getName());
+        }
+        return all;
+    }
+
+    private static Set<String> edges( Clazzpath pClazzpath ) {
+        final Set<String> all = new HashSet<>();
+        for (Clazz clazz : pClazzpath.getClazzes()) {
+            for (Clazz dependency : clazz.getDependencies()) {
+                all.add(clazz + "->" + dependency);
+            }
+        }
+        return all;
+    }
+
+    private static <T> Set<T> minus( Set<T> a, Set<T> b ) {
+        final Set<T> all = new TreeSet<>(a);
+        all.removeAll(b);
+        return all;
+    }
+
+    @Test
+    public void testShouldAssignSortedIds() throws IOException {
+
+        final ClazzpathSnapshot s1 = clazzpath("jar1.jar", "jar2.jar", "jar1").getSnapshot();
+        final ClazzpathSnapshot s2 = clazzpath("jar1", "jar2.jar", "jar1.jar").getSnapshot();
+
+        assertEquals(s1.getNames(), s2.getNames());
+
+        final List<String> sorted = new ArrayList<>(s1.getNames());
+        sorted.sort(null);
+        assertEquals(sorted, s1.getNames());
+
+        final int id = s1.getId("org.apache.commons.io.IOUtils");
+        assertEquals("org.apache.commons.io.IOUtils", s1.getName(id));
+        assertTrue(s1.isClashed(id));
+
+        final int[] dependencies = s1.getDependencies(id);
+        for (int i = 1; i < dependencies.length; i++) {
+            assertTrue(dependencies[i - 1] < dependencies[i]);
+        }
+        assertEquals(dependencies.length, s1.getDependencyNames(id).size());
+    }
+
+    @Test
+    public void testShouldDiffLikeSets() throws IOException {
+
+        final Clazzpath a = clazzpath("jar1-missing.jar", "jar3using1.jar");
+        final Clazzpath b = clazzpath("jar1.jar", "jar2.jar", "jar3using1.jar");
+
+        final Set<String> added = new TreeSet<>();
+        final Set<String> removed = new TreeSet<>();
+        final Set<String> missingAdded = new TreeSet<>();
+        final Set<String> missingRemoved = new TreeSet<>();
+        final Set<String> clashAdded = new TreeSet<>();
+        final Set<String> edgesAdded = new HashSet<>();
+        final Set<String> edgesRemoved = new HashSet<>();
+
+        a.getSnapshot().diff(b.getSnapshot(), new ClazzpathSnapshot.DiffListener() {
+            public void clazzAdded( String pName ) { added.add(pName); }
+            public void clazzRemoved( String pName ) { removed.add(pName); }
+            public void missingAdded( String pName ) { missingAdded.add(pName); }
+            public void missingRemoved( String pName ) { missingRemoved.add(pName); }
+            public void clashAdded( String pName ) { clashAdded.add(pName); }
+            public void dependencyAdded( String pFrom, String pTo ) { edgesAdded.add(pFrom + "->" + pTo); }
+            public void dependencyRemoved( String pFrom, String pTo ) { edgesRemoved.add(pFrom + "->" + pTo); }
+        });
+
+        assertEquals(minus(names(b.getClazzes()), names(a.getClazzes())), added);
+        assertEquals(minus(names(a.getClazzes()), names(b.getClazzes())), removed);
+        assertEquals(minus(names(b.getMissingClazzes()), names(a.getMissingClazzes())), missingAdded);
+        assertEquals(minus(names(a.getMissingClazzes()), names(b.getMissingClazzes())), missingRemoved);
+        assertEquals(names(b.getClashedClazzes()), clashAdded);
+        assertEquals(minus(edges(b), edges(a)), edgesAdded);
+        assertEquals(minus(edges(a), edges(b)), edgesRemoved);
+
+        assertTrue(added.size() > 0);
+        assertTrue(missingRemoved.size() > 0);
+    }
+}
@@ -29,6 +29,7 @@ import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -157,6 +158,54 @@ public class ClazzpathTestCase {
 
     }
 
+    @Test
+    public void testShouldFindTransitiveReferences() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit artifact = addClazzpathUnit.to(cp, "jar3using1");
+        final ClazzpathUnit dependency = addClazzpathUnit.to(cp, "jar1");
+
+        final Clazz clazz = cp.getClazz("org.apache.commons.io.IOUtils");
+        assertNotNull(clazz);
+
+        assertEquals(clazz.getReferences(), clazz.getTransitiveReferences(1, null));
+
+        final Set<Clazz> impacted = clazz.getTransitiveReferences();
+        assertTrue(impacted.containsAll(clazz.getReferences()));
+        assertTrue(impacted.containsAll(artifact.getClazzes()));
+
+        final Set<Clazz> impactedArtifact = clazz.getTransitiveReferences(Integer.MAX_VALUE, u -> u == artifact);
+        assertEquals(artifact.getClazzes(), impactedArtifact);
+
+        assertEquals(impacted, cp.getTransitiveReferences(Arrays.asList(clazz)));
+        assertTrue(dependency.getTransitiveReferences().containsAll(artifact.getClazzes()));
+        assertTrue(artifact.getTransitiveReferences().isEmpty());
+    }
+
+    @Test
+    public void testShouldRecordDependencyKinds() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        addClazzpathUnit.to(cp, "jar1");
+
+        final Clazz filter = cp.getClazz("org.apache.commons.io.filefilter.AgeFileFilter");
+        final Clazz parent = cp.getClazz("org.apache.commons.io.filefilter.AbstractFileFilter");
+
+        assertTrue(filter.getDependencyKinds(parent).contains(DependencyKind.INHERITANCE));
+        assertTrue(filter.getDependencyKinds(filter).isEmpty());
+
+        final Set<Clazz> all = filter.getTransitiveDependencies();
+        final Set<Clazz> inheritance = filter.getTransitiveDependencies(EnumSet.of(DependencyKind.INHERITANCE));
+
+        assertTrue(inheritance.contains(parent));
+        assertTrue(inheritance.size() < all.size());
+        assertTrue(all.containsAll(inheritance));
+        assertEquals(all, filter.getTransitiveDependencies(EnumSet.allOf(DependencyKind.class)));
+
+        assertTrue(parent.getTransitiveReferences(1, null, EnumSet.of(DependencyKind.INHERITANCE)).contains(filter));
+        assertTrue(parent.getTransitiveReferences(1, null, EnumSet.of(DependencyKind.ANNOTATION)).isEmpty());
+    }
+
     @Test
     public void testShouldRemoveClasspathUnit() throws IOException {
 
@@ -17,6 +17,7 @@ package org.vafer.jdependency;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertThrows;
 
 import java.io.FileInputStream;
@@ -24,6 +25,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.vafer.jdependency.utils.DependencyUtils;
@@ -63,6 +66,25 @@ public final class DependencyUtilsTestCase {
 
     }
 
+    static class Generic<T extends Comparable<T>> {
+        Map.Entry<String, List<T>> entry;
+    }
+
+    @Test
+    public void testShouldFindDependenciesInSignatures() throws Exception {
+        final Set<String> dependencies = DependencyUtils.getDependenciesOfClass(Generic.class);
+
+        assertTrue(dependencies.toString(), dependencies.containsAll(Arrays.asList(
+                "org.vafer.jdependency.DependencyUtilsTestCase$Generic",
+                "java.lang.Comparable",
+                "java.util.Map$Entry",
+                "java.lang.String",
+                "java.util.List"
+                )));
+
+        assertEquals(dependencies, DependencyUtils.getDependenciesOfClass(Generic.class));
+    }
+
     //@Test
     public void testShouldFindDependenciesOfClassObject() throws Exception {
         final Set<String> dependencies = DependencyUtils.getDependenciesOfClass(Object.class);
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DominatorTreeTestCase {
+
+    private static Set<Clazz> reachable( final Collection<Clazz> pRoots, final BiPredicate<Clazz, Clazz> pFollow ) {
+        final Set<Clazz> reachable = new HashSet<>();
+        final ArrayDeque<Clazz> queue = new ArrayDeque<>();
+        for (Clazz root : pRoots) {
+            if (pFollow.test(null, root) && reachable.add(root)) {
+                queue.add(root);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final Clazz clazz = queue.poll();
+            for (Clazz dependency : clazz.getDependencies()) {
+                if (pFollow.test(clazz, dependency) && reachable.add(dependency)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private static long size( final Set<Clazz> pClazzes ) {
+        long size = 0;
+        for (Clazz clazz : pClazzes) {
+            size += clazz.getSize();
+        }
+        return size;
+    }
+
+    @Test
+    public void testShouldRetainWhatIsOnlyReachableThroughAClazz() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ClazzpathUnit main = cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final Set<Clazz> roots = main.getClazzes();
+        final DominatorTree tree = cp.getDominatorTree(roots);
+        final Set<Clazz> all = reachable(roots, (from, to) -> true);
+        assertEquals(all.size(), tree.size());
+
+        int retaining = 0;
+        for (Clazz clazz : all) {
+            final Set<Clazz> retained = new HashSet<>(all);
+            retained.removeAll(reachable(roots, (from, to) -> !to.equals(clazz)));
+
+            assertTrue(tree.isReachable(clazz));
+            assertEquals(retained, tree.getRetained(clazz));
+            assertEquals(retained.size(), tree.getRetainedCount(clazz));
+            assertEquals(size(retained), tree.getRetainedSize(clazz));
+
+            final Clazz dominator = tree.getDominator(clazz);
+            if (dominator != null) {
+                assertTrue(tree.getRetained(dominator).contains(clazz));
+                assertTrue(tree.getRetainedCount(dominator) > tree.getRetainedCount(clazz));
+            }
+            if (retained.size() > 1) {
+                retaining++;
+            }
+        }
+        assertTrue(retaining > 0);
+
+        // everything hangs off the single root
+        assertNull(tree.getDominator(roots.iterator().next()));
+        assertEquals(all.size(), tree.getRetainedCount(roots.iterator().next()));
+        assertTrue(tree.getRetainedSize(roots.iterator().next()) > 0);
+
+        final Clazz unreachable = cp.getClazz("org.apache.commons.io.HexDump");
+        assertFalse(all.contains(unreachable));
+        assertFalse(tree.isReachable(unreachable));
+        assertEquals(0, tree.getRetainedCount(unreachable));
+        assertTrue(tree.getRetained(unreachable).isEmpty());
+    }
+
+    @Test
+    public void testShouldRetainWhatIsOnlyReachableThroughAUnit() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit jar1 = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ClazzpathUnit jar2 = cp.addClazzpathUnit(Paths.get("jar2.jar"));
+        final ClazzpathUnit main = cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final Set<Clazz> roots = main.getClazzes();
+        final DominatorTree tree = cp.getDominatorTree(roots);
+        final Set<Clazz> all = reachable(roots, (from, to) -> true);
+
+        for (ClazzpathUnit unit : new ClazzpathUnit[] { jar1, jar2, main }) {
+            // cut every way into the unit that does not come from within
+            final Set<Clazz> retained = new HashSet<>(all);
+            retained.removeAll(reachable(roots, (from, to) -> {
+                final Set<ClazzpathUnit> units = to.getClazzpathUnits();
+                if (!units.contains(unit) || units.size() > 1) {
+                    return true;
+                }
+                return from != null && !Collections.disjoint(from.getClazzpathUnits(), units);
+            }));
+
+            assertEquals(unit.toString(), retained.size(), tree.getRetainedCount(unit));
+            assertEquals(unit.toString(), size(retained), tree.getRetainedSize(unit));
+        }
+
+        assertEquals(all.size(), tree.getRetainedCount(main));
+        assertTrue(tree.getRetainedCount(jar1) > 0);
+    }
+}
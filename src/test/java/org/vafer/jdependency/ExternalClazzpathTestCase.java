@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalClazzpathTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path resourcePath( String filename ) {
+        return Paths.get(filename);
+    }
+
+    private static Set<String> names( Set<Clazz> clazzes ) {
+        return clazzes.stream().map(Clazz::getName).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Test
+    public void testShouldAnswerLikeClazzpath() throws IOException {
+
+        final Path directory = folder.newFolder().toPath();
+
+        // a tiny buffer to get many segments and merges
+        try (ExternalClazzpath ecp = new ExternalClazzpath(directory, 100)) {
+
+            final Clazzpath cp = new Clazzpath();
+            for (String unit : new String[] { "jar1-missing.jar", "jar2.jar", "jar3using1", "jar1.jar" }) {
+                ecp.addClazzpathUnit(resourcePath(unit), unit);
+                cp.addClazzpathUnit(resourcePath(unit), unit);
+            }
+
+            final List<String> clazzes = new ArrayList<>();
+            ecp.forEachClazz(clazzes::add);
+            assertEquals(new ArrayList<>(names(cp.getClazzes())), clazzes);
+
+            final List<String> missing = new ArrayList<>();
+            ecp.forEachMissingClazz(missing::add);
+            assertEquals(new ArrayList<>(names(cp.getMissingClazzes())), missing);
+
+            final Map<String, Set<String>> clashed = new HashMap<>();
+            ecp.forEachClashedClazz(clashed::put);
+            assertEquals(names(cp.getClashedClazzes()), clashed.keySet());
+
+            for (Clazz clazz : cp.getClazzes()) {
+                final String name = clazz.getName();
+                assertEquals(name, names(clazz.getDependencies()), ecp.getDependencies(name));
+                assertEquals(name, names(clazz.getReferences()), ecp.getReferences(name));
+                assertEquals(name, clazz.getClazzpathUnits().size(), ecp.getClazzpathUnits(name).size());
+            }
+
+            final Clazz main = cp.getClazz("Main");
+            assertEquals(names(main.getTransitiveDependencies()), ecp.getTransitiveDependencies("Main"));
+
+            final Clazz copy = cp.getClazz("org.apache.commons.io.IOUtils");
+            assertEquals(names(copy.getTransitiveReferences()), ecp.getTransitiveReferences("org.apache.commons.io.IOUtils"));
+
+            assertTrue(ecp.getDiskSize() > 0);
+        }
+
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testShouldCloseTheInputStream() throws IOException {
+        final AtomicBoolean closed = new AtomicBoolean();
+        try (ExternalClazzpath ecp = new ExternalClazzpath(folder.newFolder().toPath())) {
+            ecp.addClazzpathUnit(new FilterInputStream(Files.newInputStream(resourcePath("jar1.jar"))) {
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                }
+            }, "jar1");
+            assertTrue(ecp.getClazzpathUnits("org.apache.commons.io.IOUtils").contains("jar1"));
+        }
+        assertTrue(closed.get());
+    }
+}
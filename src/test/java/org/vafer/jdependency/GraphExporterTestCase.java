@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphExporterTestCase {
+
+    private Clazzpath cp;
+
+    @Before
+    public void setUp() throws IOException {
+        cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar3using1.jar"), "jar3using1");
+        cp.addClazzpathUnit(Paths.get("jar1.jar"), "jar1");
+    }
+
+    private List<String> export( GraphExporter.Format pFormat, GraphExporter.Level pLevel ) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GraphExporter(pFormat, pLevel).export(cp, out);
+        return Arrays.asList(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+    }
+
+    private int edges() {
+        int edges = 0;
+        for (Clazz clazz : cp.getClazzes()) {
+            edges += clazz.getDependencies().size();
+        }
+        return edges;
+    }
+
+    @Test
+    public void testShouldExportEdgeList() throws IOException {
+        final List<String> lines = export(GraphExporter.Format.CSV, GraphExporter.Level.CLASS);
+        assertEquals("source,target,kinds,weight", lines.get(0));
+        assertEquals(edges() + 1, lines.size());
+        assertTrue(lines.contains("\"Main\",\"org.apache.commons.io.IOUtils\",CODE,1"));
+    }
+
+    @Test
+    public void testShouldExportJsonLines() throws IOException {
+        final List<String> lines = export(GraphExporter.Format.JSONL, GraphExporter.Level.CLASS);
+        final int nodes = cp.getClazzes().size() + cp.getMissingClazzes().size();
+        assertEquals(nodes + edges(), lines.size());
+        assertTrue(lines.contains("{\"type\":\"node\",\"id\":\"java.lang.String\",\"missing\":true}"));
+        assertTrue(lines.contains("{\"type\":\"edge\",\"source\":\"Main\",\"target\":\"org.apache.commons.io.IOUtils\",\"kinds\":[\"CODE\"],\"weight\":1}"));
+    }
+
+    @Test
+    public void testShouldExportWellFormedGraphML() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GraphExporter(GraphExporter.Format.GRAPHML, GraphExporter.Level.CLASS).export(cp, out);
+
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(cp.getClazzes().size() + cp.getMissingClazzes().size(), document.getElementsByTagName("node").getLength());
+        assertEquals(edges(), document.getElementsByTagName("edge").getLength());
+    }
+
+    @Test
+    public void testShouldWriteWellFormedGraphMLForAnyName() throws Exception {
+        cp.addClazzpathUnit(Arrays.asList("a\u0001b", "c\td", "e\uD800f", "g\uFFFFh"), "odd");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GraphExporter(GraphExporter.Format.GRAPHML, GraphExporter.Level.CLASS).export(cp, out);
+
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(out.toByteArray()));
+
+        final Set<String> ids = new HashSet<>();
+        final NodeList nodes = document.getElementsByTagName("node");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            ids.add(((Element) nodes.item(i)).getAttribute("id"));
+        }
+        assertTrue(ids.contains("a\uFFFDb"));
+        assertTrue(ids.contains("c\td"));
+        assertTrue(ids.contains("e\uFFFDf"));
+        assertTrue(ids.contains("g\uFFFDh"));
+    }
+
+    @Test
+    public void testShouldOnlyWriteEdgesBetweenNodes() throws IOException {
+        cp.removeClazzpathUnit(cp.getUnits()[1]);
+
+        final Set<String> nodes = new HashSet<>();
+        final Set<String> targets = new HashSet<>();
+        for (String line : export(GraphExporter.Format.JSONL, GraphExporter.Level.CLASS)) {
+            if (line.startsWith("{\"type\":\"node\"")) {
+                nodes.add(line.split("\"")[7]);
+            } else {
+                targets.add(line.split("\"")[11]);
+            }
+        }
+        assertTrue(targets.contains("org.apache.commons.io.IOUtils"));
+        assertTrue(nodes.containsAll(targets));
+    }
+
+    @Test
+    public void testShouldAggregatePackagesAndUnits() throws IOException {
+        final List<String> packages = export(GraphExporter.Format.DOT, GraphExporter.Level.PACKAGE);
+        assertEquals("digraph clazzpath {", packages.get(0));
+        assertEquals("}", packages.get(packages.size() - 1));
+        assertTrue(packages.contains("  \"\" -> \"org.apache.commons.io\" [kinds=\"CODE\", weight=1];"));
+
+        final List<String> units = export(GraphExporter.Format.CSV, GraphExporter.Level.UNIT);
+        assertEquals(Arrays.asList("source,target,kinds,weight", "\"jar3using1\",\"jar1\",CODE,1"), units);
+    }
+}
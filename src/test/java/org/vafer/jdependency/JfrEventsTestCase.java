@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class JfrEventsTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<RecordedEvent> events( final List<RecordedEvent> pEvents, final String pName ) {
+        return pEvents.stream().filter(e -> e.getEventType().getName().equals(pName)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testShouldRecordUnitsAndClasses() throws Exception {
+        assumeFalse("no JFR events on Java 8", System.getProperty("java.specification.version").startsWith("1."));
+        assumeTrue(FlightRecorder.isAvailable());
+
+        final Path file = folder.newFile("analysis.jfr").toPath();
+        final ClazzpathUnit unit;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.vafer.jdependency.ClassAnalysis");
+            recording.enable("org.vafer.jdependency.UnitIngestion");
+            recording.start();
+            unit = new Clazzpath().addClazzpathUnit(Paths.get("jar1.jar"), "jar1");
+            recording.stop();
+            recording.dump(file);
+        }
+        final List<RecordedEvent> all = RecordingFile.readAllEvents(file);
+
+        final List<RecordedEvent> units = events(all, "org.vafer.jdependency.UnitIngestion");
+        assertEquals(1, units.size());
+        assertEquals("jar1", units.get(0).getString("unitId"));
+        assertEquals(unit.getClazzes().size(), units.get(0).getInt("classes"));
+        assertTrue(units.get(0).getLong("bytes") > 0);
+        assertTrue(units.get(0).getInt("dependencies") > 0);
+
+        final Set<String> names = new HashSet<>();
+        for (RecordedEvent event : events(all, "org.vafer.jdependency.ClassAnalysis")) {
+            assertEquals("jar1", event.getString("unitId"));
+            assertTrue(event.getInt("bytes") > 0);
+            assertTrue(event.getInt("dependencies") >= 0);
+            names.add(event.getString("className"));
+        }
+        assertEquals(unit.getClazzes().stream().map(Clazz::getName).collect(Collectors.toSet()), names);
+    }
+}
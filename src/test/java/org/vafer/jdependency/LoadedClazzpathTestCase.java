@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LoadedClazzpathTestCase {
+
+    private static final String[] LOADED = {
+        "org.apache.commons.io.IOUtils",
+        "org.apache.commons.io.FileUtils",
+        "org.apache.commons.io.output.NullOutputStream",
+    };
+
+    private static URLClassLoader loader() throws IOException {
+        // no parent, so the classes come from the jar only
+        return new URLClassLoader(new URL[] { Paths.get("jar1.jar").toUri().toURL() }, null);
+    }
+
+    private static List<Class<?>> load( final ClassLoader pLoader ) throws ClassNotFoundException {
+        final List<Class<?>> classes = new ArrayList<>();
+        for (String name : LOADED) {
+            classes.add(Class.forName(name, false, pLoader));
+        }
+        classes.add(String.class);
+        classes.add(int[].class);
+        return classes;
+    }
+
+    @Test
+    public void testShouldAnalyseLoadedClasses() throws Exception {
+
+        final Clazzpath expected = new Clazzpath();
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        try (URLClassLoader loader = loader()) {
+
+            final Clazzpath cp = new Clazzpath();
+            final List<ClazzpathUnit> units = new LoadedClazzpath(cp, LoadedClazzpath.Mode.DEPENDENCIES).addClasses(load(loader));
+
+            assertEquals(2, units.size());
+            final ClazzpathUnit jar = units.get(0);
+            assertEquals(Paths.get("jar1.jar").toUri().toURL().toString(), jar.toString());
+            assertEquals(LOADED.length, jar.getClazzes().size());
+            assertEquals(LoadedClazzpath.NO_CODE_SOURCE, units.get(1).toString());
+
+            for (String name : LOADED) {
+                assertEquals(expected.getClazz(name).getDependencies(), cp.getClazz(name).getDependencies());
+            }
+            assertNotNull(cp.getClazz("java.lang.String"));
+        }
+    }
+
+    @Test
+    public void testShouldRecordLoadedNamesOnly() throws Exception {
+
+        try (URLClassLoader loader = loader()) {
+
+            final Clazzpath cp = new Clazzpath();
+            new LoadedClazzpath(cp, LoadedClazzpath.Mode.NAMES).addClasses(load(loader));
+
+            assertEquals(LOADED.length + 1, cp.getClazzes().size());
+            assertTrue(cp.getMissingClazzes().isEmpty());
+            for (String name : LOADED) {
+                assertTrue(cp.getClazz(name).getDependencies().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testShouldAddCodeSourcesOfClassLoader() throws Exception {
+
+        final Clazzpath expected = new Clazzpath();
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        try (URLClassLoader loader = loader()) {
+
+            final Clazzpath cp = new Clazzpath();
+            final List<ClazzpathUnit> units = new LoadedClazzpath(cp, LoadedClazzpath.Mode.DEPENDENCIES).addClassLoader(loader);
+
+            assertEquals(1, units.size());
+            assertEquals(expected.getClazzes(), cp.getClazzes());
+
+            // what is loaded compared to what could be
+            final Clazzpath loaded = new Clazzpath();
+            new LoadedClazzpath(loaded, LoadedClazzpath.Mode.NAMES).addClasses(load(loader));
+            final List<Clazz> unused = new ArrayList<>(cp.getClazzes());
+            unused.removeAll(loaded.getClazzes());
+            assertEquals(cp.getClazzes().size() - LOADED.length, unused.size());
+        }
+    }
+}
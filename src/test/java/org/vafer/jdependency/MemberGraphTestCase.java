@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class MemberGraphTestCase {
+
+    private static File resourceFile( String filename ) {
+        return Paths.get(filename).toFile();
+    }
+
+    @Test
+    public void testShouldRequireMemberAnalysis() {
+        final Clazzpath cp = new Clazzpath();
+        assertThrows(IllegalStateException.class, () -> cp.getMemberGraph());
+    }
+
+    @Test
+    public void testShouldListDeclaredMembers() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzpathUnit(resourceFile("jar3using1.jar"));
+
+        final Set<String> members = cp.getMemberGraph().getMembers("Main");
+        assertEquals(2, members.size());
+        assertTrue(members.contains("Main#<init>()V"));
+        assertTrue(members.contains("Main#main([Ljava/lang/String;)V"));
+    }
+
+    @Test
+    public void testShouldFindReachableMembers() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzpathUnit(resourceFile("jar3using1.jar"));
+        cp.addClazzpathUnit(resourceFile("jar1.jar"));
+
+        final ReachableMembers reachable = cp.getMemberGraph().getReachableMembers(Arrays.asList("Main#main"));
+
+        assertTrue(reachable.contains("Main#main([Ljava/lang/String;)V"));
+        assertTrue(reachable.contains("org.apache.commons.io.IOUtils#copy(Ljava/io/InputStream;Ljava/io/OutputStream;)I"));
+        assertTrue(reachable.contains("org.apache.commons.io.IOUtils#copyLarge(Ljava/io/InputStream;Ljava/io/OutputStream;)J"));
+        assertTrue(reachable.contains("org.apache.commons.io.IOUtils#<clinit>()V"));
+        assertFalse(reachable.contains("Main#<init>()V"));
+        assertFalse(reachable.contains("org.apache.commons.io.IOUtils#toString(Ljava/io/InputStream;)Ljava/lang/String;"));
+
+        final Set<String> clazzes = reachable.getClazzNames();
+        assertTrue(clazzes.contains("org.apache.commons.io.IOUtils"));
+        assertFalse(clazzes.contains("org.apache.commons.io.FileUtils"));
+
+        // class level reachability keeps a lot more
+        final Clazz main = cp.getClazz("Main");
+        assertTrue(main.getTransitiveDependencies().size() > clazzes.size());
+    }
+
+    @Test
+    public void testShouldForgetRemovedClazzes() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        final ClazzpathUnit unit = cp.addClazzpathUnit(resourceFile("jar3using1.jar"));
+        cp.removeClazzpathUnit(unit);
+
+        assertTrue(cp.getMemberGraph().getMembers("Main").isEmpty());
+        assertEquals(0, cp.getMemberGraph().getReachableMembers(Collections.singleton("Main")).size());
+    }
+
+    @Test
+    public void testShouldNotGrowWhenAddingClazzesAgain() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        final ClazzpathUnit unit = cp.addClazzpathUnit(resourceFile("jar3using1.jar"));
+        final int edges = cp.getMemberGraph().getTable().getEdgeCount();
+        final int members = cp.getMemberGraph().getTable().getMemberCount();
+
+        for (int i = 0; i < 3; i++) {
+            cp.removeClazzpathUnit(cp.getUnits()[0]);
+            cp.addClazzpathUnit(resourceFile("jar3using1.jar"));
+        }
+        assertEquals(edges, cp.getMemberGraph().getTable().getEdgeCount());
+        assertEquals(members, cp.getMemberGraph().getTable().getMemberCount());
+        assertTrue(cp.getMemberGraph().getReachableMembers(Collections.singleton("Main")).size() > 0);
+    }
+
+    private static ClassWriter clazz( final String pName, final int pAccess, final String pSuperName, final String... pInterfaces ) {
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | pAccess, pName, null, pSuperName, pInterfaces);
+        if ((pAccess & Opcodes.ACC_INTERFACE) == 0) {
+            final MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            init.visitCode();
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, pSuperName, "<init>", "()V", false);
+            init.visitInsn(Opcodes.RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+        }
+        return writer;
+    }
+
+    private static MethodVisitor method( final ClassWriter pWriter, final int pAccess, final String pName, final String pDescriptor ) {
+        final MethodVisitor method = pWriter.visitMethod(Opcodes.ACC_PUBLIC | pAccess, pName, pDescriptor, null, null);
+        method.visitCode();
+        return method;
+    }
+
+    private static void end( final MethodVisitor pMethod ) {
+        pMethod.visitInsn(Opcodes.RETURN);
+        pMethod.visitMaxs(0, 0);
+        pMethod.visitEnd();
+    }
+
+    /**
+     * `B extends A implements I` where only `A` implements `I.m()`, and `T`
+     * only shows up in the signature of a called method.
+     */
+    private static byte[] hierarchy() throws IOException {
+
+        final ClassWriter i = clazz("p/I", Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "java/lang/Object");
+        i.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "m", "()V", null, null).visitEnd();
+
+        final ClassWriter a = clazz("p/A", 0, "java/lang/Object");
+        end(method(a, 0, "m", "()V"));
+        end(method(a, 0, "unused", "()V"));
+
+        final ClassWriter b = clazz("p/B", 0, "p/A", "p/I");
+
+        final ClassWriter t = clazz("p/T", 0, "java/lang/Object");
+
+        final ClassWriter main = clazz("p/Main", 0, "java/lang/Object");
+        final MethodVisitor run = method(main, Opcodes.ACC_STATIC, "run", "()V");
+        run.visitTypeInsn(Opcodes.NEW, "p/B");
+        run.visitInsn(Opcodes.DUP);
+        run.visitMethodInsn(Opcodes.INVOKESPECIAL, "p/B", "<init>", "()V", false);
+        run.visitMethodInsn(Opcodes.INVOKEINTERFACE, "p/I", "m", "()V", true);
+        run.visitInsn(Opcodes.ACONST_NULL);
+        run.visitMethodInsn(Opcodes.INVOKESTATIC, "p/Main", "take", "(Lp/T;)V", false);
+        end(run);
+        end(method(main, Opcodes.ACC_STATIC, "take", "(Lp/T;)V"));
+
+        return jar(new String[] { "p/I", "p/A", "p/B", "p/T", "p/Main" }, i, a, b, t, main);
+    }
+
+    private static byte[] jar( final String[] pNames, final ClassWriter... pWriters ) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            for (int n = 0; n < pWriters.length; n++) {
+                pWriters[n].visitEnd();
+                out.putNextEntry(new JarEntry(pNames[n] + ".class"));
+                out.write(pWriters[n].toByteArray());
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ReachableMembers reachable( final byte[] pJar, final String pEntryPoint ) throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzpathUnit(new ByteArrayInputStream(pJar), "jar");
+        return cp.getMemberGraph().getReachableMembers(Collections.singleton(pEntryPoint));
+    }
+
+    @Test
+    public void testShouldReachInheritedImplementations() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzpathUnit(new ByteArrayInputStream(hierarchy()), "hierarchy");
+
+        final ReachableMembers reachable = cp.getMemberGraph().getReachableMembers(Arrays.asList("p.Main#run"));
+
+        assertTrue(reachable.contains("p.A#m()V"));
+        assertFalse(reachable.contains("p.A#unused()V"));
+        assertThrows(IllegalArgumentException.class, () -> reachable.contains("p.A"));
+    }
+
+    @Test
+    public void testShouldNeedTypesOfReachableSignatures() throws IOException {
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.addClazzpathUnit(new ByteArrayInputStream(hierarchy()), "hierarchy");
+
+        assertTrue(cp.getMemberGraph().getReachableMembers(Arrays.asList("p.Main#run")).getClazzNames().contains("p.T"));
+        assertFalse(cp.getMemberGraph().getReachableMembers(Arrays.asList("p.A#m")).getClazzNames().contains("p.T"));
+    }
+
+    @Test
+    public void testShouldKeepSerializationHooksOfInstantiatedClazzes() throws IOException {
+
+        final String[] hooks = {
+            "writeObject", "(Ljava/io/ObjectOutputStream;)V",
+            "readObject", "(Ljava/io/ObjectInputStream;)V",
+            "readObjectNoData", "()V",
+            "writeReplace", "()Ljava/lang/Object;",
+            "readResolve", "()Ljava/lang/Object;",
+        };
+        final ClassWriter serializable = clazz("p/S", 0, "java/lang/Object", "java/io/Serializable");
+        final ClassWriter plain = clazz("p/P", 0, "java/lang/Object");
+        for (ClassWriter writer : new ClassWriter[] { serializable, plain }) {
+            for (int h = 0; h < hooks.length; h += 2) {
+                final MethodVisitor hook = method(writer, Opcodes.ACC_PRIVATE, hooks[h], hooks[h + 1]);
+                if (hooks[h + 1].endsWith("Ljava/lang/Object;")) {
+                    hook.visitVarInsn(Opcodes.ALOAD, 0);
+                    hook.visitInsn(Opcodes.ARETURN);
+                    hook.visitMaxs(0, 0);
+                    hook.visitEnd();
+                } else {
+                    end(hook);
+                }
+            }
+            end(method(writer, Opcodes.ACC_PRIVATE, "unused", "()V"));
+        }
+
+        final ClassWriter main = clazz("p/Main", 0, "java/lang/Object");
+        final MethodVisitor run = method(main, Opcodes.ACC_STATIC, "run", "()V");
+        for (String name : new String[] { "p/S", "p/P" }) {
+            run.visitTypeInsn(Opcodes.NEW, name);
+            run.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "()V", false);
+        }
+        end(run);
+
+        final ReachableMembers reachable = reachable(jar(new String[] { "p/S", "p/P", "p/Main" }, serializable, plain, main), "p.Main#run");
+        for (int h = 0; h < hooks.length; h += 2) {
+            assertTrue(hooks[h], reachable.contains("p.S#" + hooks[h] + hooks[h + 1]));
+            assertFalse(hooks[h], reachable.contains("p.P#" + hooks[h] + hooks[h + 1]));
+        }
+        assertFalse(reachable.contains("p.S#unused()V"));
+    }
+
+    @Test
+    public void testShouldKeepValuesOfInitializedEnums() throws IOException {
+
+        final ClassWriter e = clazz("p/E", Opcodes.ACC_ENUM, "java/lang/Enum");
+        e.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "A", "Lp/E;", null, null).visitEnd();
+        final MethodVisitor values = method(e, Opcodes.ACC_STATIC, "values", "()[Lp/E;");
+        values.visitInsn(Opcodes.ACONST_NULL);
+        values.visitInsn(Opcodes.ARETURN);
+        values.visitMaxs(0, 0);
+        values.visitEnd();
+        final MethodVisitor valueOf = method(e, Opcodes.ACC_STATIC, "valueOf", "(Ljava/lang/String;)Lp/E;");
+        valueOf.visitInsn(Opcodes.ACONST_NULL);
+        valueOf.visitInsn(Opcodes.ARETURN);
+        valueOf.visitMaxs(0, 0);
+        valueOf.visitEnd();
+        end(method(e, Opcodes.ACC_STATIC, "unused", "()V"));
+
+        final ClassWriter main = clazz("p/Main", 0, "java/lang/Object");
+        final MethodVisitor run = method(main, Opcodes.ACC_STATIC, "run", "()V");
+        run.visitFieldInsn(Opcodes.GETSTATIC, "p/E", "A", "Lp/E;");
+        run.visitInsn(Opcodes.POP);
+        end(run);
+
+        final byte[] jar = jar(new String[] { "p/E", "p/Main" }, e, main);
+        final ReachableMembers reachable = reachable(jar, "p.Main#run");
+        assertTrue(reachable.contains("p.E#values()[Lp/E;"));
+        assertTrue(reachable.contains("p.E#valueOf(Ljava/lang/String;)Lp/E;"));
+        assertFalse(reachable.contains("p.E#unused()V"));
+
+        assertFalse(reachable(jar, "p.Main#<init>").contains("p.E#values()[Lp/E;"));
+    }
+
+    @Test
+    public void testShouldNeedTypesOfAnnotations() throws IOException {
+
+        final ClassWriter c = clazz("p/C", 0, "java/lang/Object");
+        final AnnotationVisitor annotation = c.visitAnnotation("Lp/ClassAnnotation;", true);
+        annotation.visitEnum("kind", "Lp/Kind;", "X");
+        annotation.visit("type", Type.getObjectType("p/Value"));
+        annotation.visitAnnotation("nested", "Lp/Nested;").visitEnd();
+        annotation.visitEnd();
+        final FieldVisitor f = c.visitField(Opcodes.ACC_STATIC, "f", "I", null, null);
+        f.visitAnnotation("Lp/FieldAnnotation;", true).visitEnd();
+        f.visitEnd();
+        final MethodVisitor m = method(c, Opcodes.ACC_STATIC, "m", "()V");
+        m.visitAnnotation("Lp/MethodAnnotation;", true).visitEnd();
+        m.visitFieldInsn(Opcodes.GETSTATIC, "p/C", "f", "I");
+        m.visitInsn(Opcodes.POP);
+        end(m);
+        final MethodVisitor unused = method(c, Opcodes.ACC_STATIC, "unused", "()V");
+        unused.visitAnnotation("Lp/Unused;", true).visitEnd();
+        end(unused);
+
+        final Set<String> names = reachable(jar(new String[] { "p/C" }, c), "p.C#m").getClazzNames();
+        for (String name : new String[] { "p.ClassAnnotation", "p.Kind", "p.Value", "p.Nested", "p.FieldAnnotation", "p.MethodAnnotation" }) {
+            assertTrue(name, names.contains(name));
+        }
+        assertFalse(names.contains("p.Unused"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NameIndexTestCase {
+
+    private static List<Clazz> filter( final Collection<Clazz> pClazzes, final Predicate<String> pPredicate ) {
+        final List<Clazz> all = new ArrayList<>();
+        for (Clazz clazz : new TreeSet<>(pClazzes)) {
+            if (pPredicate.test(clazz.getName())) {
+                all.add(clazz);
+            }
+        }
+        return all;
+    }
+
+    @Test
+    public void testShouldLookupByPrefixAndPackage() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final NameIndex index = cp.getNameIndex();
+        assertEquals(cp.getClazzes().size(), index.size());
+        assertEquals(filter(cp.getClazzes(), n -> true), index.getClazzes());
+
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.startsWith("org.apache.commons.io.")),
+            index.inPackage("org.apache.commons.io", true));
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.startsWith("org.apache.commons.io.") && n.indexOf('.', 22) < 0),
+            index.inPackage("org.apache.commons.io", false));
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.startsWith("org.apache.commons.io.File")),
+            index.withPrefix("org.apache.commons.io.File"));
+        assertTrue(index.withPrefix("com.acme.").isEmpty());
+
+        assertSame(cp.getClazz("org.apache.commons.io.IOUtils"), index.getClazz("org.apache.commons.io.IOUtils"));
+        assertNull(index.getClazz("org.apache.commons.io.IOUtil"));
+
+        assertEquals(
+            filter(cp.getMissingClazzes(), n -> n.startsWith("java.lang.") && n.indexOf('.', 10) < 0),
+            cp.getMissingNameIndex().inPackage("java.lang", false));
+    }
+
+    @Test
+    public void testShouldMatchGlobs() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final NameIndex index = cp.getNameIndex();
+
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.matches("org\\.apache\\.commons\\.io\\.[^.]*Utils")),
+            index.matching("org.apache.commons.io.*Utils"));
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.startsWith("org.apache.") && n.endsWith("Stream")),
+            index.matching("org.apache.**Stream"));
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.matches("org\\.apache\\.commons\\.io\\.[^.]*\\.Null[^.]*")),
+            index.matching("org.apache.commons.io.*.Null*"));
+        assertEquals(
+            filter(cp.getClazzes(), n -> n.matches("org\\.apache\\.commons\\.io\\.IOUtil[^.]")),
+            index.matching("org.apache.commons.io.IOUtil?"));
+
+        assertEquals(1, index.matching("org.apache.commons.io.IOUtils").size());
+        assertTrue(index.matching("org.apache.commons.io.IOUtil").isEmpty());
+        assertFalse(index.matching("**$*").isEmpty());
+    }
+
+    @Test
+    public void testShouldIndexUnit() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit unit = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final NameIndex index = unit.getNameIndex();
+        assertEquals(unit.getClazzes().size(), index.size());
+        assertEquals(filter(unit.getClazzes(), n -> n.startsWith("org.apache.commons.io.output.")),
+            index.inPackage("org.apache.commons.io.output", false));
+        assertSame(index, unit.getNameIndex());
+    }
+
+    @Test
+    public void testShouldFollowRemovals() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit unit = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final int before = cp.getNameIndex().size();
+        cp.removeClazzpathUnit(unit);
+
+        assertEquals(before - unit.getClazzes().size(), cp.getNameIndex().size());
+        assertTrue(cp.getNameIndex().inPackage("org.apache.commons.io.output", false).isEmpty());
+    }
+}
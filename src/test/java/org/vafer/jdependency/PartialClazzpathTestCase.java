@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.vafer.jdependency.ClazzpathAssert.assertSameGraph;
+
+public class PartialClazzpathTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PartialClazzpath partial( final String... pUnits ) throws IOException {
+        final PartialClazzpath partial = new PartialClazzpath();
+        for (String unit : pUnits) {
+            partial.addClazzpathUnit(Paths.get(unit));
+        }
+        return partial;
+    }
+
+    private static PartialClazzpath roundtrip( final PartialClazzpath pPartial ) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pPartial.writeTo(out);
+        return PartialClazzpath.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testShouldMergeAssociatively() throws IOException {
+
+        final Clazzpath expected = new Clazzpath(true);
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+        expected.addClazzpathUnit(Paths.get("jar2.jar"));
+        expected.addClazzpathUnit(Paths.get("jar3using1.jar"));
+        expected.addClazzpathUnit(Paths.get("jar1"));
+
+        final PartialClazzpath a = roundtrip(partial("jar1.jar"));
+        final PartialClazzpath b = roundtrip(partial("jar2.jar", "jar3using1.jar"));
+        final PartialClazzpath c = roundtrip(partial("jar1"));
+
+        // missing on its own, resolved by the merge
+        assertTrue(b.getUnresolved().contains("org.apache.commons.io.IOUtils"));
+        assertTrue(a.merge(b).getUnresolved().stream().allMatch(n -> n.startsWith("java")));
+
+        assertSameGraph(expected, a.merge(b).merge(c).toClazzpath(true));
+        assertSameGraph(expected, a.merge(b.merge(c)).toClazzpath(true));
+        assertSameGraph(expected, PartialClazzpath.merge(Arrays.asList(a, b, c)).toClazzpath(true));
+        assertSameGraph(expected, roundtrip(a.merge(b).merge(c)).toClazzpath(true));
+
+        assertEquals(Arrays.asList("jar1.jar", "jar2.jar", "jar3using1.jar", "jar1"), a.merge(b).merge(c).getUnits());
+    }
+
+    /**
+     * Writes the partial of the units given as arguments, for the test below.
+     */
+    public static void main( final String[] pArgs ) throws IOException {
+        final PartialClazzpath partial = partial(Arrays.copyOfRange(pArgs, 1, pArgs.length));
+        try (OutputStream out = Files.newOutputStream(Paths.get(pArgs[0]))) {
+            partial.writeTo(out);
+        }
+    }
+
+    @Test
+    public void testShouldMergePartialsOfOtherProcesses() throws Exception {
+
+        final Clazzpath expected = new Clazzpath();
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+        expected.addClazzpathUnit(Paths.get("jar2.jar"));
+        expected.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final String[][] shards = { { "jar1.jar" }, { "jar2.jar", "jar3using1.jar" } };
+
+        final List<Process> processes = new ArrayList<>();
+        final List<Path> results = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            final Path result = folder.getRoot().toPath().resolve("shard" + i);
+            final List<String> command = new ArrayList<>(Arrays.asList(
+                java, "-cp", System.getProperty("java.class.path"), PartialClazzpathTestCase.class.getName(), result.toString()));
+            command.addAll(Arrays.asList(shards[i]));
+            processes.add(new ProcessBuilder(command).inheritIO().directory(new File(".")).start());
+            results.add(result);
+        }
+
+        PartialClazzpath all = new PartialClazzpath();
+        for (int i = 0; i < shards.length; i++) {
+            assertTrue(processes.get(i).waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, processes.get(i).exitValue());
+            try (InputStream in = Files.newInputStream(results.get(i))) {
+                all = all.merge(PartialClazzpath.readFrom(in));
+            }
+        }
+
+        assertSameGraph(expected, all.toClazzpath(false));
+    }
+
+    @Test
+    public void testShouldRejectOlderFormats() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        partial("jar1.jar").writeTo(out);
+        final byte[] bytes = out.toByteArray();
+        // the version follows the magic number
+        bytes[7] = 1;
+
+        final IOException e = assertThrows(IOException.class, () -> PartialClazzpath.readFrom(new ByteArrayInputStream(bytes)));
+        assertEquals("unsupported partial clazzpath version 1", e.getMessage());
+    }
+}
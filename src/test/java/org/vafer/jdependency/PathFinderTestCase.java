@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathFinderTestCase {
+
+    private static Map<Clazz, Integer> distances( final Collection<Clazz> pRoots ) {
+        final Map<Clazz, Integer> distances = new HashMap<>();
+        final ArrayDeque<Clazz> queue = new ArrayDeque<>(pRoots);
+        for (Clazz root : pRoots) {
+            distances.put(root, 0);
+        }
+        while (!queue.isEmpty()) {
+            final Clazz clazz = queue.poll();
+            for (Clazz dependency : clazz.getDependencies()) {
+                if (!distances.containsKey(dependency)) {
+                    distances.put(dependency, distances.get(clazz) + 1);
+                    queue.add(dependency);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static void assertPath( final Collection<Clazz> pRoots, final Clazz pTarget, final List<Clazz> pPath ) {
+        assertTrue(pRoots.contains(pPath.get(0)));
+        assertEquals(pTarget, pPath.get(pPath.size() - 1));
+        assertEquals(pPath.size(), new HashSet<>(pPath).size());
+        for (int i = 1; i < pPath.size(); i++) {
+            assertTrue(pPath.get(i - 1).getDependencies().contains(pPath.get(i)));
+        }
+    }
+
+    private static void allPaths( final List<Clazz> pPath, final Clazz pTarget, final int pMaxSize, final List<List<Clazz>> pAll ) {
+        final Clazz last = pPath.get(pPath.size() - 1);
+        if (last.equals(pTarget)) {
+            pAll.add(new ArrayList<>(pPath));
+            return;
+        }
+        if (pPath.size() == pMaxSize) {
+            return;
+        }
+        for (Clazz dependency : last.getDependencies()) {
+            if (!pPath.contains(dependency)) {
+                pPath.add(dependency);
+                allPaths(pPath, pTarget, pMaxSize, pAll);
+                pPath.remove(pPath.size() - 1);
+            }
+        }
+    }
+
+    @Test
+    public void testShouldFindShortestPaths() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ClazzpathUnit main = cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final Set<Clazz> roots = main.getClazzes();
+        final Map<Clazz, Integer> distances = distances(roots);
+
+        final Set<Clazz> all = cp.getClazzes();
+        all.addAll(cp.getMissingClazzes());
+        int reachable = 0;
+        for (Clazz target : all) {
+            final List<Clazz> path = cp.getShortestPath(roots, target);
+            final Integer distance = distances.get(target);
+            assertEquals(distance != null, cp.reaches(roots, target));
+            if (distance == null) {
+                assertTrue(path.isEmpty());
+            } else {
+                reachable++;
+                assertPath(roots, target, path);
+                assertEquals(distance + 1, path.size());
+            }
+        }
+        assertTrue(reachable > 10);
+        assertTrue(reachable < all.size());
+
+        final Clazz root = roots.iterator().next();
+        assertEquals(Collections.singletonList(root), cp.getShortestPath(roots, root));
+    }
+
+    @Test
+    public void testShouldFindKShortestPaths() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final List<Clazz> roots = Collections.singletonList(cp.getClazz("org.apache.commons.io.FileUtils"));
+        final Clazz target = cp.getMissingNameIndex().getClazz("java.io.OutputStream");
+
+        final List<List<Clazz>> expected = new ArrayList<>();
+        allPaths(new ArrayList<>(roots), target, 8, expected);
+
+        // asking for more than there are
+        final List<List<Clazz>> paths = cp.getShortestPaths(roots, target, expected.size() + 5);
+        assertEquals(expected.size(), paths.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(paths));
+        for (int i = 0; i < paths.size(); i++) {
+            assertPath(roots, target, paths.get(i));
+            if (i > 0) {
+                assertTrue(paths.get(i - 1).size() <= paths.get(i).size());
+            }
+        }
+
+        // the shortest ones first
+        final List<List<Clazz>> three = cp.getShortestPaths(roots, target, 3);
+        assertEquals(paths.subList(0, 3), three);
+        expected.sort((a, b) -> a.size() - b.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.get(i).size(), three.get(i).size());
+        }
+    }
+
+    @Test
+    public void testShouldRestrictKinds() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final List<Clazz> roots = Collections.singletonList(cp.getClazz("org.apache.commons.io.output.ProxyOutputStream"));
+        final Clazz target = cp.getMissingNameIndex().getClazz("java.io.FilterOutputStream");
+
+        assertEquals(2, cp.getShortestPath(roots, target, EnumSet.of(DependencyKind.INHERITANCE)).size());
+        assertTrue(cp.getShortestPath(roots, target, EnumSet.of(DependencyKind.ANNOTATION)).isEmpty());
+        assertFalse(cp.getShortestPaths(roots, target, 3, EnumSet.of(DependencyKind.INHERITANCE)).isEmpty());
+    }
+}
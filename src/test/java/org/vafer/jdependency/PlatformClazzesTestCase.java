@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlatformClazzesTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShouldListPlatformClazzes() {
+
+        final PlatformClazzes platform = PlatformClazzes.current();
+
+        assertTrue(platform.contains("java.lang.String"));
+        assertTrue(platform.contains("java.util.Map$Entry"));
+        assertFalse(platform.contains("org.apache.commons.io.IOUtils"));
+        assertTrue(platform.size() > 1000);
+    }
+
+    @Test
+    public void testShouldReadNamesFromCache() throws IOException {
+
+        final Path dir = folder.getRoot().toPath();
+
+        final PlatformClazzes listed = PlatformClazzes.cached(dir);
+        assertTrue(listed.contains("java.lang.Object"));
+
+        final Path cache = dir.resolve(PlatformClazzes.cacheName());
+        assertEquals(listed.getNames(), Files.readAllLines(cache, StandardCharsets.UTF_8));
+
+        // a cache file is trusted as it is
+        Files.write(cache, Arrays.asList("java.lang.Object", "java.lang.String"), StandardCharsets.UTF_8);
+        final PlatformClazzes cached = PlatformClazzes.cached(dir);
+        assertEquals(2, cached.size());
+        assertTrue(cached.contains("java.lang.String"));
+        assertFalse(cached.contains("java.util.List"));
+    }
+
+    @Test
+    public void testShouldResolvePlatformClazzes() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        assertFalse(cp.getMissingClazzes().isEmpty());
+
+        // resolves what is already missing
+        final ClazzpathUnit platform = cp.addPlatformUnit(PlatformClazzes.current());
+        assertTrue(cp.getMissingClazzes().isEmpty());
+        assertTrue(cp.getMissingNameIndex().getClazzes().isEmpty());
+
+        // and what is added later
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+        assertTrue(cp.getMissingClazzes().isEmpty());
+
+        final Clazz string = cp.getClazz("java.lang.String");
+        assertNotNull(string);
+        assertTrue(string.getClazzpathUnits().contains(platform));
+        assertTrue(string.getDependencies().isEmpty());
+        assertFalse(string.getReferences().isEmpty());
+        assertEquals(string, platform.getClazz("java.lang.String"));
+        assertTrue(cp.getClashedClazzes().isEmpty());
+
+        cp.removeClazzpathUnit(platform);
+        assertNull(cp.getClazz("java.lang.String"));
+        assertEquals(2, cp.getUnits().length);
+    }
+
+    @Test
+    public void testShouldClashWithThePlatformInAnyOrder() throws IOException {
+
+        for (boolean platformFirst : new boolean[] { true, false }) {
+
+            final Clazzpath cp = new Clazzpath();
+            ClazzpathUnit platform = platformFirst ? cp.addPlatformUnit(PlatformClazzes.current()) : null;
+            final ClazzpathUnit shadow = cp.addClazzpathUnit(Collections.singleton("java.lang.Runnable"), "shadow");
+            cp.addClazzpathUnit(Paths.get("jar1.jar"));
+            if (!platformFirst) {
+                platform = cp.addPlatformUnit(PlatformClazzes.current());
+            }
+
+            final Clazz runnable = cp.getClazz("java.lang.Runnable");
+            assertEquals(new HashSet<>(Arrays.asList(shadow, platform)), runnable.getClazzpathUnits());
+            assertEquals(Collections.singleton(runnable), cp.getClashedClazzes());
+            assertEquals(runnable, platform.getClazz("java.lang.Runnable"));
+            assertTrue(cp.getMissingClazzes().isEmpty());
+
+            cp.removeClazzpathUnit(platform);
+            assertTrue(cp.getClashedClazzes().isEmpty());
+            assertEquals(Collections.singleton(shadow), runnable.getClazzpathUnits());
+        }
+    }
+}
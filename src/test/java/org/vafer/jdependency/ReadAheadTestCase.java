@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+import org.vafer.jdependency.utils.ReadAhead;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ReadAheadTestCase {
+
+    private static Iterator<Integer> sources( final int pCount, final AtomicInteger pTaken ) {
+        final Iterator<Integer> all = IntStream.range(0, pCount).iterator();
+        return new Iterator<Integer>() {
+            public boolean hasNext() {
+                return all.hasNext();
+            }
+
+            public Integer next() {
+                pTaken.incrementAndGet();
+                return all.next();
+            }
+        };
+    }
+
+    @Test
+    public void testShouldHandOutInOrderWithinTheWindow() throws Exception {
+        final AtomicInteger taken = new AtomicInteger();
+        try (ReadAhead<Integer> reads = new ReadAhead<>(sources(200, taken), i -> {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[] { i.byteValue() };
+        }, 8)) {
+            int consumed = 0;
+            while (reads.hasNext()) {
+                assertTrue(taken.get() <= consumed + 8);
+                final ReadAhead.Read<Integer> read = reads.next();
+                assertEquals(consumed, (int) read.getSource());
+                assertArrayEquals(new byte[] { (byte) consumed }, read.getBytes());
+                consumed++;
+            }
+            assertEquals(200, consumed);
+        }
+    }
+
+    @Test
+    public void testShouldPassOnFailedReads() throws Exception {
+        final IOException failure = new IOException("broken");
+        try (ReadAhead<Integer> reads = new ReadAhead<>(sources(3, new AtomicInteger()), i -> {
+            if (i == 1) {
+                throw failure;
+            }
+            if (i == 2) {
+                throw new IllegalStateException("bug");
+            }
+            return new byte[0];
+        })) {
+            assertEquals(0, reads.next().getBytes().length);
+            assertSame(failure, assertThrows(IOException.class, () -> reads.next().getBytes()));
+            final IOException wrapped = assertThrows(IOException.class, () -> reads.next().getBytes());
+            assertTrue(wrapped.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testShouldCancelOnClose() throws Exception {
+        final CountDownLatch never = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger interrupted = new AtomicInteger();
+        final AtomicInteger taken = new AtomicInteger();
+
+        final ReadAhead<Integer> reads = new ReadAhead<>(sources(100, taken), i -> {
+            started.incrementAndGet();
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+            return null;
+        }, 4);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (started.get() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        reads.close();
+
+        assertFalse(reads.hasNext());
+        assertEquals(4, taken.get());
+        while (interrupted.get() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, interrupted.get());
+    }
+}
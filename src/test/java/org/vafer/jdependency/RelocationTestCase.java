@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RelocationTestCase {
+
+    private static Set<String> names( final Set<Clazz> pClazzes, final Relocation pRelocation ) {
+        final Set<String> names = new TreeSet<>();
+        for (Clazz clazz : pClazzes) {
+            names.add(pRelocation == null ? clazz.getName() : pRelocation.relocate(clazz.getName()));
+        }
+        return names;
+    }
+
+    @Test
+    public void testShouldRelocateByMostSpecificPackage() {
+        final Relocation relocation = new Relocation()
+            .addRule("com.google", "shaded.com.google")
+            .addRule("com.google.common.", "guava");
+
+        assertEquals("shaded.com.google.Foo", relocation.relocate("com.google.Foo"));
+        assertEquals("shaded.com.google.gson.Gson", relocation.relocate("com.google.gson.Gson"));
+        assertEquals("guava.base.Strings", relocation.relocate("com.google.common.base.Strings"));
+        assertEquals("com.googlex.Foo", relocation.relocate("com.googlex.Foo"));
+        assertEquals("Main", relocation.relocate("Main"));
+    }
+
+    @Test
+    public void testShouldRelocateTheGraph() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final Relocation relocation = new Relocation()
+            .addRule("org.apache.commons.io", "shaded.io")
+            .addRule("java.io", "shaded.java.io");
+        final Relocation.Result result = relocation.apply(cp);
+        final Clazzpath relocated = result.getClazzpath();
+
+        assertTrue(result.getCollisions().isEmpty());
+        assertEquals(names(cp.getClazzes(), relocation), names(relocated.getClazzes(), null));
+        assertEquals(names(cp.getMissingClazzes(), relocation), names(relocated.getMissingClazzes(), null));
+        assertNotNull(relocated.getMissingNameIndex().getClazz("shaded.java.io.File"));
+        assertNull(relocated.getClazz("org.apache.commons.io.FileUtils"));
+        assertEquals(2, relocated.getUnits().length);
+
+        for (Clazz clazz : cp.getClazzes()) {
+            final Clazz moved = relocated.getClazz(relocation.relocate(clazz.getName()));
+            assertEquals(names(clazz.getDependencies(), relocation), names(moved.getDependencies(), null));
+            for (Clazz dependency : clazz.getDependencies()) {
+                final Clazz movedDependency = relocated.getNameIndex().getClazz(relocation.relocate(dependency.getName()));
+                if (movedDependency != null) {
+                    assertEquals(clazz.getDependencyKinds(dependency), moved.getDependencyKinds(movedDependency));
+                }
+            }
+            assertEquals(clazz.getSize(), moved.getSize());
+            assertEquals(clazz.getClazzpathUnits().iterator().next().toString(), moved.getClazzpathUnits().iterator().next().toString());
+        }
+
+        // the original is left alone
+        assertNotNull(cp.getClazz("org.apache.commons.io.FileUtils"));
+
+        // copied once, with the rules at the time of applying them
+        relocation.addRule("org.apache.commons.io.filefilter", "filters");
+        assertSame(relocated, result.getClazzpath());
+        assertNotNull(relocation.apply(cp).getClazzpath().getClazz("filters.IOFileFilter"));
+        assertNull(relocated.getClazz("filters.IOFileFilter"));
+    }
+
+    @Test
+    public void testShouldReportCollisions() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Arrays.asList("shaded.io.FileUtils", "a.Foo", "b.Foo", "b.Bar"), "other");
+
+        final Relocation.Result result = new Relocation()
+            .addRule("org.apache.commons.io", "shaded.io")
+            .addRule("a", "c")
+            .addRule("b", "c")
+            .apply(cp);
+
+        assertEquals(new TreeSet<>(Arrays.asList("c.Foo", "shaded.io.FileUtils")), result.getCollisions().keySet());
+        assertEquals(names(result.getCollisions().get("c.Foo"), null), new TreeSet<>(Arrays.asList("a.Foo", "b.Foo")));
+        assertEquals(names(result.getCollisions().get("shaded.io.FileUtils"), null),
+            new TreeSet<>(Arrays.asList("org.apache.commons.io.FileUtils", "shaded.io.FileUtils")));
+
+        // both units now provide it
+        final Clazz collided = result.getClazzpath().getClazz("shaded.io.FileUtils");
+        assertEquals(2, collided.getClazzpathUnits().size());
+        assertTrue(result.getClazzpath().getClashedClazzes().contains(collided));
+    }
+}
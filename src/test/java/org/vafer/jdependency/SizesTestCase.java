@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SizesTestCase {
+
+    private static void assertSizes( final ClazzpathUnit pExpected, final ClazzpathUnit pActual ) {
+        assertEquals(pExpected.getClazzSize(), pActual.getClazzSize());
+        assertEquals(pExpected.getCompressedClazzSize(), pActual.getCompressedClazzSize());
+        assertEquals(pExpected.getResourceCount(), pActual.getResourceCount());
+        assertEquals(pExpected.getResourceSize(), pActual.getResourceSize());
+        assertEquals(pExpected.getCompressedResourceSize(), pActual.getCompressedResourceSize());
+        for (Clazz clazz : pExpected.getClazzes()) {
+            final Clazz other = pActual.getClazz(clazz.getName());
+            assertEquals(clazz.getSize(), other.getSize());
+            assertEquals(clazz.getCompressedSize(), other.getCompressedSize());
+        }
+    }
+
+    @Test
+    public void testShouldRecordSizesWhileReading() throws IOException {
+
+        final Path jar = Paths.get("jar1.jar");
+        final ClazzpathUnit unit = new Clazzpath().addClazzpathUnit(jar);
+
+        long clazzSize = 0;
+        long compressedClazzSize = 0;
+        int resourceCount = 0;
+        long resourceSize = 0;
+        long compressedResourceSize = 0;
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (Clazzpath.isValidResourceName(entry.getName())) {
+                    final Clazz clazz = unit.getClazz(Clazzpath.toClazzName(entry.getName()));
+                    assertEquals(entry.getSize(), clazz.getSize());
+                    assertEquals(entry.getCompressedSize(), clazz.getCompressedSize());
+                    clazzSize += entry.getSize();
+                    compressedClazzSize += entry.getCompressedSize();
+                } else if (!entry.isDirectory() && !JarFile.MANIFEST_NAME.equals(entry.getName())) {
+                    resourceCount++;
+                    resourceSize += entry.getSize();
+                    compressedResourceSize += entry.getCompressedSize();
+                }
+            }
+        }
+
+        assertEquals(clazzSize, unit.getClazzSize());
+        assertEquals(compressedClazzSize, unit.getCompressedClazzSize());
+        assertTrue(compressedClazzSize < clazzSize);
+        assertEquals(resourceCount, unit.getResourceCount());
+        assertTrue(resourceCount > 0);
+        assertEquals(resourceSize, unit.getResourceSize());
+        assertEquals(compressedResourceSize, unit.getCompressedResourceSize());
+        assertEquals(clazzSize + resourceSize, unit.getSize());
+        assertEquals(compressedClazzSize + compressedResourceSize, unit.getCompressedSize());
+
+        // unpacked, nothing is compressed
+        final ClazzpathUnit directory = new Clazzpath().addClazzpathUnit(Paths.get("jar1"));
+        assertEquals(clazzSize, directory.getClazzSize());
+        assertEquals(clazzSize, directory.getCompressedClazzSize());
+        assertEquals(resourceCount, directory.getResourceCount());
+        assertEquals(resourceSize, directory.getResourceSize());
+        assertEquals(resourceSize, directory.getCompressedResourceSize());
+    }
+
+    @Test
+    public void testShouldKeepSizesInTemplates() throws IOException {
+
+        final ClazzpathUnit read = new Clazzpath().addClazzpathUnit(Paths.get("jar1.jar"));
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+        for (int i = 0; i < 2; i++) {
+            final Clazzpath cp = new Clazzpath();
+            cp.setUnitCache(cache);
+            assertSizes(read, cp.addClazzpathUnit(Paths.get("jar1.jar")));
+        }
+        assertEquals(1, cache.getHitCount());
+
+        final PartialClazzpath partial = new PartialClazzpath();
+        partial.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        partial.writeTo(out);
+        final Clazzpath cp = PartialClazzpath.readFrom(new ByteArrayInputStream(out.toByteArray())).toClazzpath(false);
+        assertSizes(read, cp.getUnits()[0]);
+    }
+
+    @Test
+    public void testShouldSumUpReachableAndUnusedSizes() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit jar1 = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ClazzpathUnit main = cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        final Set<Clazz> used = main.getTransitiveDependencies();
+        used.addAll(main.getClazzes());
+
+        long size = 0;
+        long compressedSize = 0;
+        for (Clazz clazz : used) {
+            size += clazz.getSize();
+            compressedSize += clazz.getCompressedSize();
+        }
+        assertEquals(size, cp.getTransitiveSize(main.getClazzes(), false));
+        assertEquals(compressedSize, cp.getTransitiveSize(main.getClazzes(), true));
+
+        final Set<Clazz> unused = new HashSet<>(jar1.getClazzes());
+        unused.removeAll(used);
+        long unusedSize = 0;
+        for (Clazz clazz : unused) {
+            unusedSize += clazz.getSize();
+        }
+
+        final Map<ClazzpathUnit, Long> sizes = cp.getUnusedSizes(main.getClazzes(), false);
+        assertEquals(2, sizes.size());
+        assertEquals(unusedSize, (long) sizes.get(jar1));
+        assertTrue(unusedSize > 0 && unusedSize < jar1.getClazzSize());
+        assertEquals(0L, (long) sizes.get(main));
+
+        assertEquals(0L, cp.getTransitiveSize(Collections.emptySet(), false));
+    }
+}
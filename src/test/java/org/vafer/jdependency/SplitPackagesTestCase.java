@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SplitPackagesTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, Set<ClazzpathUnit>> scan( final Clazzpath pClazzpath ) {
+        final Map<String, Set<ClazzpathUnit>> packages = new HashMap<>();
+        for (Clazz clazz : pClazzpath.getClazzes()) {
+            final int dot = clazz.getName().lastIndexOf('.');
+            final String packageName = dot < 0 ? "" : clazz.getName().substring(0, dot);
+            packages.computeIfAbsent(packageName, k -> new HashSet<>()).addAll(clazz.getClazzpathUnits());
+        }
+        final Map<String, Set<ClazzpathUnit>> split = new TreeMap<>();
+        for (Map.Entry<String, Set<ClazzpathUnit>> entry : packages.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                split.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return split;
+    }
+
+    private static byte[] moduleInfo( final String pModule ) {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V9, Opcodes.ACC_MODULE, "module-info", null, null, null);
+        writer.visitModule(pModule, 0, null).visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static byte[] clazz( final String pName ) {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, pName.replace('.', '/'), null, "java/lang/Object", null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private Path jar( final String pName, final String pAutomaticModuleName, final Object... pEntries ) throws IOException {
+        final Path jar = folder.getRoot().toPath().resolve(pName);
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (pAutomaticModuleName != null) {
+            manifest.getMainAttributes().putValue("Automatic-Module-Name", pAutomaticModuleName);
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (int i = 0; i < pEntries.length; i += 2) {
+                out.putNextEntry(new JarEntry((String) pEntries[i]));
+                out.write((byte[]) pEntries[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    @Test
+    public void testShouldIndexSplitPackages() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit jar1 = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        final ClazzpathUnit jar2 = cp.addClazzpathUnit(Paths.get("jar2.jar"));
+        assertTrue(cp.getSplitPackages().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(jar2)), cp.getPackageUnits("org.apache.commons.compress.utils"));
+
+        // the same clazzes once more
+        final ClazzpathUnit dir1 = cp.addClazzpathUnit(Paths.get("jar1"));
+        final Map<String, Set<ClazzpathUnit>> split = cp.getSplitPackages();
+        assertEquals(scan(cp), split);
+        assertEquals(4, split.size());
+        assertEquals(new HashSet<>(Arrays.asList(jar1, dir1)), split.get("org.apache.commons.io"));
+        assertEquals(new HashSet<>(Arrays.asList(jar1, dir1)), cp.getPackageUnits("org.apache.commons.io.input"));
+        assertTrue(cp.getPackageUnits("no.such.package").isEmpty());
+
+        // back to one unit per package
+        cp.removeClazzpathUnit(dir1);
+        assertTrue(cp.getSplitPackages().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(jar1)), cp.getPackageUnits("org.apache.commons.io"));
+
+        cp.removeClazzpathUnit(jar1);
+        assertTrue(cp.getPackageUnits("org.apache.commons.io").isEmpty());
+    }
+
+    @Test
+    public void testShouldSplitWithoutClashing() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit a = cp.addClazzpathUnit(jar("a.jar", null, "p/A.class", clazz("p.A")));
+        final ClazzpathUnit b = cp.addClazzpathUnit(jar("b.jar", null, "p/B.class", clazz("p.B"), "Other.class", clazz("Other")));
+        cp.addClazzpathUnit(Paths.get("jar3using1.jar"));
+
+        assertTrue(cp.getClashedClazzes().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), cp.getSplitPackages().get("p"));
+        assertEquals(2, cp.getSplitPackages().get("").size());
+        assertEquals(scan(cp), cp.getSplitPackages());
+    }
+
+    @Test
+    public void testShouldIndexModuleConflicts() throws IOException {
+
+        final Path descriptor = jar("descriptor.jar", null, "module-info.class", moduleInfo("org.example"), "a/A.class", clazz("a.A"));
+        final Path automatic = jar("automatic.jar", "org.example", "b/B.class", clazz("b.B"));
+        final Path versioned = jar("versioned.jar", "ignored.name", "META-INF/versions/11/module-info.class", moduleInfo("org.other"), "c/C.class", clazz("c.C"));
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+        for (int i = 0; i < 2; i++) {
+            final Clazzpath cp = new Clazzpath();
+            cp.setUnitCache(cache);
+            final ClazzpathUnit first = cp.addClazzpathUnit(descriptor);
+            final ClazzpathUnit second = cp.addClazzpathUnit(automatic);
+            final ClazzpathUnit third = cp.addClazzpathUnit(versioned);
+            final ClazzpathUnit plain = cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+            assertEquals("org.example", first.getModuleName());
+            assertEquals("org.example", second.getModuleName());
+            assertEquals("org.other", third.getModuleName());
+            assertNull(plain.getModuleName());
+            assertEquals(1, cp.getModuleConflicts().size());
+            assertEquals(new HashSet<>(Arrays.asList(first, second)), cp.getModuleConflicts().get("org.example"));
+
+            cp.removeClazzpathUnit(first);
+            assertTrue(cp.getModuleConflicts().isEmpty());
+            cp.addClazzpathUnit(descriptor, "again");
+            assertFalse(cp.getModuleConflicts().isEmpty());
+        }
+        // re-adding in the first round already hits the cache
+        assertEquals(6, cache.getHitCount());
+    }
+
+    @Test
+    public void testShouldReadModuleNamesFromDirectories() throws IOException {
+
+        final Path directory = folder.newFolder("module").toPath();
+        Files.createDirectories(directory.resolve("a"));
+        Files.write(directory.resolve("module-info.class"), moduleInfo("org.example"));
+        Files.write(directory.resolve("a/A.class"), clazz("a.A"));
+
+        final Clazzpath cp = new Clazzpath();
+        assertEquals("org.example", cp.addClazzpathUnit(directory).getModuleName());
+        assertEquals("org.example", cp.addClazzpathUnit(jar("automatic.jar", "org.example")).getModuleName());
+        assertEquals(1, cp.getModuleConflicts().size());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.vafer.jdependency.ClazzpathAssert.assertSameGraph;
+
+public class UnitCacheTestCase {
+
+    private static Clazzpath build( final UnitCache pCache, final boolean pVersions ) throws IOException {
+        final Clazzpath cp = new Clazzpath(pVersions);
+        cp.setUnitCache(pCache);
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        cp.addClazzpathUnit(Files.newInputStream(Paths.get("jar2.jar")), "jar2.jar");
+        return cp;
+    }
+
+    @Test
+    public void testShouldReplayCachedUnits() throws IOException {
+
+        final Clazzpath expected = new Clazzpath(true);
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+        expected.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+
+        // parsed without versions, replayed with them
+        build(cache, false);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        final Clazzpath cached = build(cache, true);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertSameGraph(expected, cached);
+
+        // the same content under another id is a hit as well
+        final Clazzpath copy = new Clazzpath(true);
+        copy.setUnitCache(cache);
+        copy.addClazzpathUnit(Paths.get("jar1.jar"), "first");
+        copy.addClazzpathUnit(Paths.get("jar1.jar"), "second");
+        assertEquals(4, cache.getHitCount());
+        assertEquals(59, copy.getClashedClazzes().size());
+    }
+
+    @Test
+    public void testShouldEvictLeastRecentlyUsed() throws IOException {
+
+        final UnitCache all = new UnitCache(Long.MAX_VALUE);
+        build(all, false);
+        final long weight = all.getWeight();
+
+        // room for one of the two only
+        final UnitCache cache = new UnitCache(weight * 3 / 4);
+        build(cache, false);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // jar2 is still there, jar1 gets parsed again
+        final Clazzpath cp = new Clazzpath();
+        cp.setUnitCache(cache);
+        cp.addClazzpathUnit(Paths.get("jar2.jar"));
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testShouldBypassCacheForOtherAnalyses() throws IOException {
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+
+        final Clazzpath cp = new Clazzpath(false, true);
+        cp.setUnitCache(cache);
+        cp.addClazzpathUnit(Paths.get("jar1.jar"));
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testShouldShareCacheAcrossThreads() throws Exception {
+
+        final Clazzpath expected = new Clazzpath();
+        expected.addClazzpathUnit(Paths.get("jar1.jar"));
+        expected.addClazzpathUnit(Paths.get("jar2.jar"));
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Clazzpath>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> build(cache, false)));
+            }
+            for (Future<Clazzpath> result : results) {
+                assertSameGraph(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(32, cache.getHitCount() + cache.getMissCount());
+    }
+}
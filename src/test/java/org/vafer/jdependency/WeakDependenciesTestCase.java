@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010-2023 The jdependency developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vafer.jdependency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WeakDependenciesTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] clazz( final String pName, final String pInterface, final String... pStrings ) {
+        final ClassWriter writer = new ClassWriter(0);
+        final int access = pInterface == null && pStrings.length == 0 && pName.startsWith("svc")
+            ? Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT
+            : Opcodes.ACC_PUBLIC;
+        writer.visit(Opcodes.V1_8, access, pName.replace('.', '/'), null, "java/lang/Object",
+            pInterface == null ? null : new String[] { pInterface.replace('.', '/') });
+        if (pStrings.length > 0) {
+            writer.visitField(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "NAME", "Ljava/lang/String;", null, pStrings[0]).visitEnd();
+            final MethodVisitor method = writer.visitMethod(Opcodes.ACC_STATIC, "names", "()V", null, null);
+            method.visitCode();
+            for (int i = 1; i < pStrings.length; i++) {
+                method.visitLdcInsn(pStrings[i]);
+                method.visitInsn(Opcodes.POP);
+            }
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(1, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private Path jar( final String pName, final Object... pEntries ) throws IOException {
+        final Path jar = folder.getRoot().toPath().resolve(pName);
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < pEntries.length; i += 2) {
+                out.putNextEntry(new JarEntry((String) pEntries[i]));
+                out.write((byte[]) pEntries[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static Set<String> names( final Set<Clazz> pClazzes ) {
+        final Set<String> names = new TreeSet<>();
+        for (Clazz clazz : pClazzes) {
+            names.add(clazz.getName());
+        }
+        return names;
+    }
+
+    private Path app() throws IOException {
+        return jar("app.jar",
+            "app/Main.class", clazz("app.Main", null, "plugin.Plugin", "java.version", "not.there.Missing", "svc.Api", "a.b"),
+            "svc/Api.class", clazz("svc.Api", null),
+            "impl/ApiImpl.class", clazz("impl.ApiImpl", "svc.Api"),
+            "META-INF/services/svc.Api", "# providers\nimpl.ApiImpl\n\n  other.Provider # not there\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path plugin() throws IOException {
+        return jar("plugin.jar", "plugin/Plugin.class", clazz("plugin.Plugin", null));
+    }
+
+    @Test
+    public void testShouldRecognizeClassNames() {
+        assertTrue(isClassName("com.example.Foo"));
+        assertTrue(isClassName("com.example.Foo$Bar"));
+        assertTrue(isClassName("a.B"));
+        assertFalse(isClassName("java.version"));
+        assertFalse(isClassName("Foo"));
+        assertFalse(isClassName("com..Foo"));
+        assertFalse(isClassName("com.example.Foo."));
+        assertFalse(isClassName("Com.example.Foo"));
+        assertFalse(isClassName("com.example.Foo Bar"));
+        assertFalse(isClassName("UTF-8"));
+    }
+
+    private static boolean isClassName( final String pString ) {
+        return !names(clazzWithString(pString)).isEmpty();
+    }
+
+    private static Set<Clazz> clazzWithString( final String pString ) {
+        try {
+            final Clazzpath cp = new Clazzpath();
+            cp.addClazzpathUnit(Collections.singleton(pString), "target");
+            final ClazzpathUnit unit = cp.addClazzpathUnit(new ByteArrayInputStream(jarBytes(pString)), "strings");
+            return unit.getClazz("app.Main").getWeakDependencies().stream()
+                .filter(c -> c.getName().equals(pString))
+                .collect(Collectors.toSet());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] jarBytes( final String pString ) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            out.putNextEntry(new JarEntry("app/Main.class"));
+            out.write(clazz("app.Main", null, "x", pString));
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testShouldLinkReflectionAndServices() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        cp.addClazzpathUnit(plugin());
+        final ClazzpathUnit app = cp.addClazzpathUnit(app());
+
+        final Clazz main = cp.getClazz("app.Main");
+        final Clazz api = cp.getClazz("svc.Api");
+        final Clazz impl = cp.getClazz("impl.ApiImpl");
+        final Clazz plugin = cp.getClazz("plugin.Plugin");
+
+        // nothing made missing by a guess
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.Object", "java.lang.String")), names(cp.getMissingClazzes()));
+        assertEquals(EnumSet.of(DependencyKind.REFLECTION), main.getDependencyKinds(api));
+        assertEquals(EnumSet.of(DependencyKind.SERVICE), api.getDependencyKinds(impl));
+        assertEquals(Collections.singletonMap("svc.Api", new TreeSet<>(Arrays.asList("impl.ApiImpl", "other.Provider"))), app.getServices());
+
+        assertEquals(EnumSet.of(DependencyKind.REFLECTION), main.getDependencyKinds(plugin));
+        assertTrue(plugin.getWeakReferences().contains(main));
+        assertFalse(plugin.getReferences().contains(main));
+
+        // only followed when asked for
+        final Set<Clazz> all = main.getTransitiveDependencies(EnumSet.allOf(DependencyKind.class));
+        assertTrue(all.contains(plugin));
+        assertTrue(all.contains(impl));
+        final Set<Clazz> strong = main.getTransitiveDependencies();
+        assertFalse(strong.contains(plugin));
+        assertFalse(strong.contains(impl));
+        assertFalse(cp.reaches(Collections.singleton(main), plugin));
+        assertTrue(cp.query().from(main).dependencies().kinds(EnumSet.of(DependencyKind.REFLECTION)).execute().contains(plugin));
+        // a provider is linked once it shows up, a guess is not
+        cp.addClazzpathUnit(Arrays.asList("other.Provider", "not.there.Missing"), "late");
+        assertEquals(EnumSet.of(DependencyKind.SERVICE), api.getDependencyKinds(cp.getClazz("other.Provider")));
+        assertEquals(EnumSet.noneOf(DependencyKind.class), main.getDependencyKinds(cp.getClazz("not.there.Missing")));
+
+        assertTrue(DependencyKind.SERVICE.isWeak());
+        assertFalse(DependencyKind.CODE.isWeak());
+    }
+
+    @Test
+    public void testShouldKeepWeakDependenciesInTemplates() throws IOException {
+
+        final Clazzpath read = new Clazzpath();
+        read.addClazzpathUnit(app());
+
+        final UnitCache cache = new UnitCache(Long.MAX_VALUE);
+        for (int i = 0; i < 2; i++) {
+            final Clazzpath cp = new Clazzpath();
+            cp.setUnitCache(cache);
+            cp.addClazzpathUnit(plugin());
+            final ClazzpathUnit app = cp.addClazzpathUnit(app());
+            assertEquals(read.getUnits()[0].getServices(), app.getServices());
+            assertEquals(EnumSet.of(DependencyKind.SERVICE), cp.getClazz("svc.Api").getDependencyKinds(cp.getClazz("impl.ApiImpl")));
+            assertEquals(EnumSet.of(DependencyKind.REFLECTION), cp.getClazz("app.Main").getDependencyKinds(cp.getClazz("plugin.Plugin")));
+        }
+        assertEquals(2, cache.getHitCount());
+
+        // the waiting provider is relocated as well
+        final Clazzpath relocated = new Relocation().addRule("other", "shaded").apply(read).getClazzpath();
+        relocated.addClazzpathUnit(Collections.singleton("shaded.Provider"), "shaded");
+        assertEquals(EnumSet.of(DependencyKind.SERVICE),
+            relocated.getClazz("svc.Api").getDependencyKinds(relocated.getClazz("shaded.Provider")));
+        assertNull(relocated.getMissingNameIndex().getClazz("shaded.Provider"));
+    }
+
+    @Test
+    public void testShouldNotReportGuessesAsUnresolvedOrMissing() throws IOException {
+
+        final PartialClazzpath partial = new PartialClazzpath();
+        partial.addClazzpathUnit(app());
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.Object", "java.lang.String")), partial.getUnresolved());
+
+        final Set<String> missing = new TreeSet<>();
+        try (ExternalClazzpath ecp = new ExternalClazzpath(folder.newFolder().toPath())) {
+            ecp.addClazzpathUnit(app());
+            ecp.forEachMissingClazz(missing::add);
+        }
+        assertEquals(new TreeSet<>(Arrays.asList("java.lang.Object", "java.lang.String")), missing);
+    }
+
+    @Test
+    public void testShouldForgetWaitingProvidersOfRemovedUnits() throws IOException {
+
+        final Clazzpath cp = new Clazzpath();
+        final ClazzpathUnit app = cp.addClazzpathUnit(app());
+        cp.removeClazzpathUnit(app);
+
+        cp.addClazzpathUnit(Arrays.asList("svc.Api", "other.Provider"), "later");
+        assertTrue(cp.getClazz("svc.Api").getWeakDependencies().isEmpty());
+        assertTrue(cp.getClazz("other.Provider").getWeakReferences().isEmpty());
+    }
+
+    @Test
+    public void testShouldKeepGuessesOutOfTheDependencies() throws IOException {
+
+        final Clazzpath plain = new Clazzpath();
+        plain.addClazzpathUnit(Collections.singleton("com.acme.Foo"), "target");
+        plain.addClazzpathUnit(jar("plain.jar", "app/Main.class", clazz("app.Main", null, "x")));
+
+        final Clazzpath cp = new Clazzpath();
+        final Clazz foo = cp.addClazzpathUnit(Collections.singleton("com.acme.Foo"), "target").getClazz("com.acme.Foo");
+        cp.addClazzpathUnit(jar("ldc.jar", "app/Main.class", clazz("app.Main", null, "x", "com.acme.Foo")));
+        final Clazz main = cp.getClazz("app.Main");
+
+        assertEquals(names(plain.getClazz("app.Main").getDependencies()), names(main.getDependencies()));
+        assertEquals(Collections.singleton(foo), main.getWeakDependencies());
+        assertTrue(foo.getReferences().isEmpty());
+        assertEquals(Collections.singleton(main), foo.getWeakReferences());
+        assertEquals(EnumSet.of(DependencyKind.REFLECTION), main.getDependencyKinds(foo));
+    }
+}